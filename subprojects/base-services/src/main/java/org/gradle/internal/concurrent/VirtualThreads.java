@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.concurrent;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors running each task on its own virtual thread, when the current JVM supports them.
+ *
+ * Virtual threads are only available from Java 21 on, so they are looked up reflectively.
+ * On older JVMs, or when they are only available as a preview feature which has not been enabled, no executor is created
+ * and callers have to fall back to a pool of platform threads.
+ *
+ * Virtual threads should only be used for work which mostly blocks on I/O and which does not hold any worker lease,
+ * since the number of virtual threads is not bounded by the configured maximum number of workers.
+ */
+public class VirtualThreads {
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether virtual threads can be created in the current JVM.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each task, named after the given prefix.
+     *
+     * @return the executor, or {@code null} when virtual threads are not supported.
+     */
+    @Nullable
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        if (OF_VIRTUAL == null) {
+            return null;
+        }
+        try {
+            return createThreadPerTaskExecutor(namePrefix);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Method findOfVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            // Make sure virtual threads can actually be created, they are a preview feature before Java 21
+            createThreadPerTaskExecutor("Virtual thread probe").shutdown();
+            return ofVirtual;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createThreadPerTaskExecutor(String namePrefix) throws ReflectiveOperationException {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix + " Thread ", 1L);
+        ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+/**
+ * Hands out leases on a budget of memory, so that work which declares its expected memory usage only starts when that memory is available.
+ *
+ * Leases are granted and released while holding the state lock of the {@link ResourceLockCoordinationService}.
+ * A lease is always granted when no memory is leased, so work expected to use more memory than the whole budget can still run, just not alongside other such work.
+ */
+public class MemoryLeaseRegistry extends AbstractResourceLockRegistry<String, ResourceLock> {
+    private final ResourceLockCoordinationService coordinationService;
+    private final long availableBytes;
+    private long leasedBytes;
+
+    public MemoryLeaseRegistry(ResourceLockCoordinationService coordinationService, long availableBytes) {
+        super(coordinationService);
+        this.coordinationService = coordinationService;
+        this.availableBytes = availableBytes;
+    }
+
+    public ResourceLock getResourceLock(long bytes) {
+        String displayName = "lease for " + bytes / (1024 * 1024) + " MB of memory";
+        return new MemoryLease(displayName, bytes);
+    }
+
+    private boolean grantLease(long bytes) {
+        if (leasedBytes > 0 && bytes > availableBytes - leasedBytes) {
+            return false;
+        }
+        leasedBytes += bytes;
+        return true;
+    }
+
+    private void releaseLease(long bytes) {
+        leasedBytes -= bytes;
+    }
+
+    private class MemoryLease extends AbstractTrackedResourceLock {
+        private final long bytes;
+        private Thread ownerThread;
+
+        MemoryLease(String displayName, long bytes) {
+            super(displayName, coordinationService, MemoryLeaseRegistry.this);
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected boolean doIsLocked() {
+            return ownerThread != null;
+        }
+
+        @Override
+        protected boolean doIsLockedByCurrentThread() {
+            return Thread.currentThread() == ownerThread;
+        }
+
+        @Override
+        protected boolean acquireLock() {
+            if (grantLease(bytes)) {
+                ownerThread = Thread.currentThread();
+            }
+            return ownerThread != null;
+        }
+
+        @Override
+        protected void releaseLock() {
+            if (Thread.currentThread() != ownerThread) {
+                // Not implemented - not yet required. Please implement if required
+                throw new UnsupportedOperationException("Must complete operation from owner thread.");
+            }
+            releaseLease(bytes);
+            ownerThread = null;
+        }
+    }
+}
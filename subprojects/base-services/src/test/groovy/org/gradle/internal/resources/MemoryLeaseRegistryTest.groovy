@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources
+
+import spock.lang.Specification
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.tryLock
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock
+
+class MemoryLeaseRegistryTest extends Specification {
+    def coordinationService = new DefaultResourceLockCoordinationService()
+    def registry = new MemoryLeaseRegistry(coordinationService, 1000)
+
+    def "grants leases while they fit into the budget"() {
+        def first = registry.getResourceLock(600)
+        def second = registry.getResourceLock(400)
+        def third = registry.getResourceLock(1)
+
+        expect:
+        coordinationService.withStateLock(tryLock(first))
+        coordinationService.withStateLock(tryLock(second))
+        !coordinationService.withStateLock(tryLock(third))
+
+        when:
+        coordinationService.withStateLock(unlock(second))
+
+        then:
+        coordinationService.withStateLock(tryLock(third))
+    }
+
+    def "grants a lease larger than the budget when no memory is leased"() {
+        def small = registry.getResourceLock(100)
+        def large = registry.getResourceLock(2000)
+
+        expect:
+        coordinationService.withStateLock(tryLock(small))
+        !coordinationService.withStateLock(tryLock(large))
+
+        when:
+        coordinationService.withStateLock(unlock(small))
+
+        then:
+        coordinationService.withStateLock(tryLock(large))
+        !coordinationService.withStateLock(tryLock(registry.getResourceLock(100)))
+    }
+}
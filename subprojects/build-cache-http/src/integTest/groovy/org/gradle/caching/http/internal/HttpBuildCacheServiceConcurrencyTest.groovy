@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheServiceFactory
+import org.gradle.caching.http.HttpBuildCache
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
+import org.gradle.internal.resource.transport.http.HttpClientHelper
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.IntBinaryOperator
+
+/**
+ * Runs many concurrent requests for small entries against a stub cache server, to check how connections are used.
+ */
+class HttpBuildCacheServiceConcurrencyTest extends Specification {
+    static final int ENTRIES = 1000
+    static final int THREADS = 32
+
+    def entries = new ConcurrentHashMap<String, byte[]>()
+    def connections = ConcurrentHashMap.newKeySet()
+    def inFlightRequests = new AtomicInteger()
+    def maxInFlightRequests = new AtomicInteger()
+    def responseDelayMillis = 0
+    def server = HttpServer.create(new InetSocketAddress(InetAddress.loopbackAddress, 0), 0)
+    def executor = Executors.newFixedThreadPool(THREADS)
+    def httpBuildCacheClients = new HttpBuildCacheClients(HttpClientHelper.Factory.createFactory(new DocumentationRegistry()))
+    def config = new HttpBuildCache()
+
+    def setup() {
+        server.executor = Executors.newFixedThreadPool(THREADS)
+        server.createContext("/cache/") { HttpExchange exchange -> handle(exchange) }
+        server.start()
+        config.url = new URI("http://localhost:${server.address.port}/cache/")
+        config.allowInsecureProtocol = true
+    }
+
+    def cleanup() {
+        executor.shutdownNow()
+        httpBuildCacheClients.close()
+        server.stop(0)
+        (server.executor as ExecutorService).shutdownNow()
+    }
+
+    def "stores and loads #ENTRIES small entries concurrently over shared connections"() {
+        def cache = createCache()
+        def keys = (0..<ENTRIES).collect { key("entry-$it") }
+
+        when:
+        def storeMillis = timed {
+            concurrently(keys) { BuildCacheKey key -> cache.store(key, writer(key.hashCode.bytes)) }
+        }
+        def loaded = new ConcurrentHashMap<String, String>()
+        def loadMillis = timed {
+            concurrently(keys) { BuildCacheKey key ->
+                assert cache.load(key, { input -> loaded[key.hashCode] = input.text } as BuildCacheEntryReader)
+            }
+        }
+        println "Stored $ENTRIES entries in $storeMillis ms, loaded them in $loadMillis ms over ${connections.size()} connections"
+
+        then:
+        entries.size() == ENTRIES
+        loaded.size() == ENTRIES
+        loaded.every { hashCode, content -> content == hashCode }
+        connections.size() <= 20
+        maxInFlightRequests.get() <= 20
+    }
+
+    def "caps the number of requests in flight"() {
+        def keys = (0..<200).collect { key("entry-$it") }
+        def cache = new HttpBuildCacheService(new HttpBuildCacheClients.Client(createCache().httpClientHelper, 4), config.url, {}, false)
+        responseDelayMillis = 5
+
+        when:
+        concurrently(keys) { BuildCacheKey key -> cache.store(key, writer(key.hashCode.bytes)) }
+
+        then:
+        entries.size() == 200
+        maxInFlightRequests.get() <= 4
+    }
+
+    def "caps the number of requests in flight of all builds using the same client"() {
+        def keys = (0..<200).collect { key("entry-$it") }
+        def client = new HttpBuildCacheClients.Client(createCache().httpClientHelper, 4)
+        def firstBuildCache = new HttpBuildCacheService(client, config.url, {}, false)
+        def secondBuildCache = new HttpBuildCacheService(client, config.url, {}, false)
+        responseDelayMillis = 5
+
+        when:
+        concurrently(keys) { BuildCacheKey key ->
+            def cache = key.hashCode.hashCode() % 2 == 0 ? firstBuildCache : secondBuildCache
+            cache.store(key, writer(key.hashCode.bytes))
+        }
+
+        then:
+        entries.size() == 200
+        maxInFlightRequests.get() <= 4
+    }
+
+    def "shares clients only between caches with the same credentials"() {
+        def firstClient = createCache().httpClientHelper
+
+        expect:
+        createCache().httpClientHelper.is(firstClient)
+
+        when:
+        config.credentials.username = "user"
+        config.credentials.password = "first"
+        def authenticatedClient = createCache().httpClientHelper
+        config.credentials.password = "second"
+
+        then:
+        !authenticatedClient.is(firstClient)
+        !createCache().httpClientHelper.is(authenticatedClient)
+    }
+
+    def "closes clients not used for several build sessions"() {
+        def client = createCache().httpClientHelper
+
+        when:
+        3.times { httpBuildCacheClients.beforeComplete() }
+
+        then:
+        createCache().httpClientHelper.is(client)
+
+        when:
+        4.times { httpBuildCacheClients.beforeComplete() }
+
+        then:
+        !createCache().httpClientHelper.is(client)
+    }
+
+    def "reuses connections of earlier builds"() {
+        def keys = (0..<100).collect { key("entry-$it") }
+        def firstBuildCache = createCache()
+        concurrently(keys) { BuildCacheKey key -> firstBuildCache.store(key, writer(key.hashCode.bytes)) }
+        firstBuildCache.close()
+        def connectionsOfFirstBuild = new HashSet(connections)
+
+        when:
+        def secondBuildCache = createCache()
+        concurrently(keys) { BuildCacheKey key -> secondBuildCache.load(key, { input -> input.text } as BuildCacheEntryReader) }
+
+        then:
+        connectionsOfFirstBuild.containsAll(connections)
+    }
+
+    private HttpBuildCacheService createCache() {
+        new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), {}, httpBuildCacheClients)
+            .createBuildCacheService(config, new BuildCacheServiceFactory.Describer() {
+                @Override
+                BuildCacheServiceFactory.Describer type(String type) { this }
+
+                @Override
+                BuildCacheServiceFactory.Describer config(String name, String value) { this }
+            }) as HttpBuildCacheService
+    }
+
+    private void handle(HttpExchange exchange) {
+        connections.add(exchange.remoteAddress)
+        int inFlight = inFlightRequests.incrementAndGet()
+        maxInFlightRequests.accumulateAndGet(inFlight, { a, b -> Math.max(a, b) } as IntBinaryOperator)
+        try {
+            Thread.sleep(responseDelayMillis)
+            def name = exchange.requestURI.path.substring("/cache/".length())
+            if (exchange.requestMethod == "PUT") {
+                entries[name] = exchange.requestBody.bytes
+                exchange.sendResponseHeaders(200, -1)
+            } else if (exchange.requestMethod == "HEAD") {
+                exchange.sendResponseHeaders(entries.containsKey(name) ? 200 : 404, -1)
+            } else if (name.startsWith("broken")) {
+                exchange.sendResponseHeaders(500, -1)
+            } else {
+                def content = entries[name]
+                if (content == null) {
+                    exchange.sendResponseHeaders(404, -1)
+                } else {
+                    exchange.sendResponseHeaders(200, content.length)
+                    exchange.responseBody.write(content)
+                }
+            }
+        } finally {
+            inFlightRequests.decrementAndGet()
+            exchange.close()
+        }
+    }
+
+    private void concurrently(List<BuildCacheKey> keys, Closure action) {
+        def futures = keys.collect { key -> executor.submit { action(key) } }
+        futures*.get(1, TimeUnit.MINUTES)
+    }
+
+    private static long timed(Closure action) {
+        long start = System.nanoTime()
+        action()
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    }
+
+    private BuildCacheKey key(String name) {
+        def hashCode = Hashing.hashString(name).toString()
+        return Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+            getDisplayName() >> hashCode
+        }
+    }
+
+    private static BuildCacheEntryWriter writer(byte[] content) {
+        return new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output.write(content)
+            }
+
+            @Override
+            long getSize() {
+                return content.length
+            }
+        }
+    }
+}
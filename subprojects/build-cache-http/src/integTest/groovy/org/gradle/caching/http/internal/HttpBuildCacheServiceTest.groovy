@@ -56,7 +56,7 @@ class HttpBuildCacheServiceTest extends Specification {
     TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
 
     BuildCacheServiceFactory.Describer buildCacheDescriber
-    HttpClientHelper.Factory httpClientHelperFactory = HttpClientHelper.Factory.createFactory(new DocumentationRegistry())
+    HttpBuildCacheClients httpBuildCacheClients = new HttpBuildCacheClients(HttpClientHelper.Factory.createFactory(new DocumentationRegistry()))
 
     def key = new BuildCacheKey() {
         def hashCode = HashCode.fromString("01234567abcdef")
@@ -88,7 +88,7 @@ class HttpBuildCacheServiceTest extends Specification {
     HttpBuildCacheService getCache() {
         if (cacheRef == null) {
             buildCacheDescriber = new NoopBuildCacheDescriber()
-            cacheRef = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") }, httpClientHelperFactory)
+            cacheRef = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") }, httpBuildCacheClients)
                 .createBuildCacheService(this.config, buildCacheDescriber) as HttpBuildCacheService
         }
         cacheRef
@@ -99,6 +99,10 @@ class HttpBuildCacheServiceTest extends Specification {
         config.url = server.uri.resolve("/cache/")
     }
 
+    def cleanup() {
+        httpBuildCacheClients.close()
+    }
+
     def "can cache artifact"() {
         def destFile = tempDir.file("cached.zip")
         def content = "Data".bytes
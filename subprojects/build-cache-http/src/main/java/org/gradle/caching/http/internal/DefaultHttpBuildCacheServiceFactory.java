@@ -26,13 +26,16 @@
 import org.gradle.caching.http.HttpBuildCacheCredentials;
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
 import org.gradle.internal.deprecation.Documentation;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
-import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.resource.transport.http.HttpSettings;
 import org.gradle.internal.resource.transport.http.SslContextFactory;
 import org.gradle.internal.verifier.HttpRedirectVerifier;
 import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -45,16 +48,17 @@
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
 
     private static final int MAX_REDIRECTS = Integer.getInteger("org.gradle.cache.http.max-redirects", 10);
+    private static final int MAX_CONCURRENT_REQUESTS = Integer.getInteger("org.gradle.cache.http.max-concurrent-requests", 20);
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
-    private final HttpClientHelper.Factory httpClientHelperFactory;
+    private final HttpBuildCacheClients httpBuildCacheClients;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpBuildCacheClients httpBuildCacheClients) {
         this.sslContextFactory = sslContextFactory;
         this.requestCustomizer = requestCustomizer;
-        this.httpClientHelperFactory = httpClientHelperFactory;
+        this.httpBuildCacheClients = httpBuildCacheClients;
     }
 
     @Override
@@ -86,17 +90,27 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         HttpRedirectVerifier redirectVerifier =
             createRedirectVerifier(noUserInfoUrl, allowInsecureProtocol);
 
-        DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
-            .withAuthenticationSettings(authentications)
-            .maxRedirects(MAX_REDIRECTS)
-            .withRedirectMethodHandlingStrategy(HttpSettings.RedirectMethodHandlingStrategy.ALLOW_FOLLOW_FOR_MUTATIONS)
-            .withRedirectVerifier(redirectVerifier);
-        if (allowUntrustedServer) {
-            builder.allowUntrustedConnections();
-        } else {
-            builder.withSslContextFactory(sslContextFactory);
-        }
-        HttpClientHelper httpClientHelper = httpClientHelperFactory.create(builder.build());
+        // Share the client, and with it the open connections, with other builds using the same cache with the same configuration
+        HashCode clientConfiguration = fingerprintClientConfiguration(
+            noUserInfoUrl,
+            authenticated ? credentials : null,
+            allowUntrustedServer,
+            allowInsecureProtocol
+        );
+        Collection<Authentication> clientAuthentications = authentications;
+        HttpBuildCacheClients.Client client = httpBuildCacheClients.getClient(clientConfiguration, MAX_CONCURRENT_REQUESTS, () -> {
+            DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
+                .withAuthenticationSettings(clientAuthentications)
+                .maxRedirects(MAX_REDIRECTS)
+                .withRedirectMethodHandlingStrategy(HttpSettings.RedirectMethodHandlingStrategy.ALLOW_FOLLOW_FOR_MUTATIONS)
+                .withRedirectVerifier(redirectVerifier);
+            if (allowUntrustedServer) {
+                builder.allowUntrustedConnections();
+            } else {
+                builder.withSslContextFactory(sslContextFactory);
+            }
+            return builder.build();
+        });
 
         describer.type("HTTP")
             .config("url", noUserInfoUrl.toASCIIString())
@@ -105,7 +119,24 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
             .config("allowInsecureProtocol", Boolean.toString(allowInsecureProtocol))
             .config("useExpectContinue", Boolean.toString(useExpectContinue));
 
-        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer, useExpectContinue);
+        return new HttpBuildCacheService(client, noUserInfoUrl, requestCustomizer, useExpectContinue);
+    }
+
+    /**
+     * Hashes the configuration the HTTP client is created from, so the credentials are not kept in memory in plain text as part of the key.
+     */
+    private static HashCode fingerprintClientConfiguration(URI url, @Nullable HttpBuildCacheCredentials credentials, boolean allowUntrustedServer, boolean allowInsecureProtocol) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(url.toASCIIString());
+        if (credentials == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(credentials.getUsername());
+            hasher.putString(credentials.getPassword());
+        }
+        hasher.putBoolean(allowUntrustedServer);
+        hasher.putBoolean(allowInsecureProtocol);
+        return hasher.hash();
     }
 
     private HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecureProtocol) {
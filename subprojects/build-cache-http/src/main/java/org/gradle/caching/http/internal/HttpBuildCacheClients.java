@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.resource.transport.http.HttpSettings;
+import org.gradle.internal.session.BuildSessionLifecycleListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the HTTP clients used by HTTP build caches across builds.
+ *
+ * The connections of a client are pooled, so builds using the same build cache with the same configuration
+ * reuse the connections opened by earlier builds instead of connecting and negotiating TLS again.
+ * Pooled connections are closed after being idle for the idle connection timeout,
+ * and a client is closed once it has not been used for {@value #MAX_UNUSED_SESSIONS} build sessions.
+ */
+public class HttpBuildCacheClients implements BuildSessionLifecycleListener, Closeable {
+    private static final int MAX_UNUSED_SESSIONS = 3;
+
+    private final HttpClientHelper.Factory httpClientHelperFactory;
+    private final Map<HashCode, Client> clients = new HashMap<>();
+    private int session;
+    private boolean closed;
+
+    public HttpBuildCacheClients(HttpClientHelper.Factory httpClientHelperFactory) {
+        this.httpClientHelperFactory = httpClientHelperFactory;
+    }
+
+    /**
+     * Returns the client for the given configuration, creating it with the given settings when there is none yet.
+     *
+     * @param configuration a hash of all values the settings are derived from, so no credentials are retained as part of the key.
+     * @param maxConcurrentRequests the number of requests the client performs at the same time when created.
+     */
+    public synchronized Client getClient(HashCode configuration, int maxConcurrentRequests, Supplier<HttpSettings> settings) {
+        if (closed) {
+            throw new IllegalStateException("HTTP build cache clients have been closed.");
+        }
+        Client client = clients.computeIfAbsent(configuration, key -> new Client(httpClientHelperFactory.create(settings.get()), maxConcurrentRequests));
+        client.lastUsedSession = session;
+        return client;
+    }
+
+    @Override
+    public synchronized void beforeComplete() {
+        List<Client> unused = new ArrayList<>();
+        for (Iterator<Client> iterator = clients.values().iterator(); iterator.hasNext(); ) {
+            Client client = iterator.next();
+            if (session - client.lastUsedSession >= MAX_UNUSED_SESSIONS) {
+                unused.add(client);
+                iterator.remove();
+            }
+        }
+        session++;
+        CompositeStoppable.stoppable(unused).stop();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        CompositeStoppable.stoppable(clients.values()).stop();
+        clients.clear();
+    }
+
+    /**
+     * An HTTP client shared by the build caches with the same configuration.
+     *
+     * All requests of the build caches count towards the same limit of requests in flight,
+     * so concurrent builds do not open more connections to the cache than a single build.
+     */
+    public static class Client implements Closeable {
+        private final HttpClientHelper httpClientHelper;
+        private final Semaphore inFlightRequests;
+        private int lastUsedSession;
+
+        public Client(HttpClientHelper httpClientHelper, int maxConcurrentRequests) {
+            this.httpClientHelper = httpClientHelper;
+            this.inFlightRequests = new Semaphore(Math.max(1, maxConcurrentRequests));
+        }
+
+        public HttpClientHelper getHttpClientHelper() {
+            return httpClientHelper;
+        }
+
+        public Semaphore getInFlightRequests() {
+            return inFlightRequests;
+        }
+
+        @Override
+        public void close() throws IOException {
+            httpClientHelper.close();
+        }
+    }
+}
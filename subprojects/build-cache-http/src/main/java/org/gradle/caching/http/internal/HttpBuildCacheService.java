@@ -43,9 +43,13 @@
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
+ *
+ * The HTTP client is shared with other builds, see {@link HttpBuildCacheClients}.
+ * At most a fixed number of requests are performed at the same time by all users of the client, further requests wait for one of them to finish.
  */
 public class HttpBuildCacheService implements BuildCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
@@ -66,15 +70,17 @@ public class HttpBuildCacheService implements BuildCacheService {
     private final HttpClientHelper httpClientHelper;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final boolean useExpectContinue;
+    private final Semaphore inFlightRequests;
 
-    public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer, boolean useExpectContinue) {
+    public HttpBuildCacheService(HttpBuildCacheClients.Client client, URI url, HttpBuildCacheRequestCustomizer requestCustomizer, boolean useExpectContinue) {
         this.requestCustomizer = requestCustomizer;
         this.useExpectContinue = useExpectContinue;
+        this.inFlightRequests = client.getInFlightRequests();
         if (!url.getPath().endsWith("/")) {
             throw new IllegalArgumentException("HTTP cache root URI must end with '/'");
         }
         this.root = url;
-        this.httpClientHelper = httpClientHelper;
+        this.httpClientHelper = client.getHttpClientHelper();
     }
 
     @Override
@@ -84,6 +90,7 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
         httpGet.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_CONTENT_TYPE + ", */*");
         requestCustomizer.customize(httpGet);
 
+        inFlightRequests.acquireUninterruptibly();
         try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpGet)) {
             StatusLine statusLine = response.getStatusLine();
             if (LOGGER.isDebugEnabled()) {
@@ -101,6 +108,8 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
             }
         } catch (IOException e) {
             throw wrap(e);
+        } finally {
+            inFlightRequests.release();
         }
     }
 
@@ -140,6 +149,7 @@ public boolean isStreaming() {
                 return false;
             }
         });
+        inFlightRequests.acquireUninterruptibly();
         try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpPut)) {
             StatusLine statusLine = response.getStatusLine();
             if (LOGGER.isDebugEnabled()) {
@@ -154,6 +164,8 @@ public boolean isStreaming() {
             throw wrap(e.getCause());
         } catch (IOException e) {
             throw wrap(e);
+        } finally {
+            inFlightRequests.release();
         }
     }
 
@@ -178,8 +190,8 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
     }
 
     @Override
-    public void close() throws IOException {
-        httpClientHelper.close();
+    public void close() {
+        // The client is kept open for other builds
     }
 
     /**
@@ -19,12 +19,25 @@
 import org.gradle.caching.configuration.internal.BuildCacheServiceRegistration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheServiceRegistration;
 import org.gradle.caching.http.HttpBuildCache;
+import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
 import org.gradle.util.GradleVersion;
 
 public class HttpBuildCacheServiceServices extends AbstractPluginServiceRegistry {
 
+    @Override
+    public void registerGlobalServices(ServiceRegistration registration) {
+        registration.addProvider(new Object() {
+            HttpBuildCacheClients createHttpBuildCacheClients(HttpClientHelper.Factory httpClientHelperFactory, ListenerManager listenerManager) {
+                HttpBuildCacheClients clients = new HttpBuildCacheClients(httpClientHelperFactory);
+                listenerManager.addListener(clients);
+                return clients;
+            }
+        });
+    }
+
     @Override
     public void registerBuildServices(ServiceRegistration registration) {
         registration.add(BuildCacheServiceRegistration.class, new DefaultBuildCacheServiceRegistration(HttpBuildCache.class, DefaultHttpBuildCacheServiceFactory.class));
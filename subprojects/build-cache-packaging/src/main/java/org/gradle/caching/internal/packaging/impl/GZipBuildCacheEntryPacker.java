@@ -16,12 +16,16 @@
 
 package org.gradle.caching.internal.packaging.impl;
 
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.gradle.caching.internal.CacheableEntity;
 import org.gradle.caching.internal.origin.OriginReader;
 import org.gradle.caching.internal.origin.OriginWriter;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -43,10 +47,32 @@ public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemS
         }
     }
 
+    /**
+     * Unpacks the given entry, which may also be an uncompressed tar archive, as entries assembled by the content-addressed local build cache are.
+     *
+     * @throws IOException when the entry is neither gzip compressed nor an uncompressed tar archive.
+     */
     @Override
     public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
-        try (GZIPInputStream gzipInput = new GZIPInputStream(input)) {
-            return delegate.unpack(entity, gzipInput, readOrigin);
+        InputStream bufferedInput = input.markSupported() ? input : new BufferedInputStream(input);
+        byte[] header = new byte[TarConstants.DEFAULT_RCDSIZE];
+        bufferedInput.mark(header.length);
+        int headerLength = ByteStreams.read(bufferedInput, header, 0, header.length);
+        bufferedInput.reset();
+        if (isGzipped(header, headerLength)) {
+            try (GZIPInputStream gzipInput = new GZIPInputStream(bufferedInput)) {
+                return delegate.unpack(entity, gzipInput, readOrigin);
+            }
         }
+        if (TarArchiveInputStream.matches(header, headerLength)) {
+            return delegate.unpack(entity, bufferedInput, readOrigin);
+        }
+        throw new IOException("Build cache entry is neither gzip compressed nor an uncompressed tar archive.");
+    }
+
+    private static boolean isGzipped(byte[] header, int headerLength) {
+        return headerLength >= 2
+            && (header[0] & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff)
+            && (header[1] & 0xff) == (GZIPInputStream.GZIP_MAGIC >> 8);
     }
 }
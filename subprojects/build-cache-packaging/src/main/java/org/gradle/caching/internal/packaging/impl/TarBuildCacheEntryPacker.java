@@ -20,6 +20,8 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -51,6 +53,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -64,8 +67,12 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -97,17 +104,29 @@ private interface UnixPermissions {
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    private final UnpackFileWriterPool fileWriterPool;
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
         FilePermissionAccess filePermissionAccess,
         StreamHasher streamHasher,
         Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, UnpackFileWriterPool.SEQUENTIAL);
+    }
+
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        UnpackFileWriterPool fileWriterPool
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.fileWriterPool = fileWriterPool;
     }
 
     @Override
@@ -263,7 +282,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -273,41 +292,125 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
         }
     }
 
+    /**
+     * Reads the contents of small files into memory and lets the file writer pool write and hash them, while the archive is read further.
+     */
+    private Future<RegularFileSnapshot> unpackFileInBackgroundIfPossible(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+        long size = entry.getSize();
+        if (!fileWriterPool.canWriteInBackground(size)) {
+            return Futures.immediateFuture(unpackFile(input, entry, file, fileName));
+        }
+        int bufferSize = (int) size;
+        fileWriterPool.reserveBuffer(bufferSize);
+        byte[] contents;
+        try {
+            contents = IOUtils.readFully(input, bufferSize);
+        } catch (IOException | RuntimeException e) {
+            fileWriterPool.releaseBuffer(bufferSize);
+            throw e;
+        }
+        return fileWriterPool.writeInBackground(bufferSize, () -> unpackFile(new ByteArrayInputStream(contents), entry, file, fileName));
+    }
+
     @Nullable
     private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
 
-        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS);
+        UnpackedDirectoryTree tree = new UnpackedDirectoryTree();
+        tree.enterDirectory(stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()));
 
         TarArchiveEntry entry;
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, builder::leaveDirectory);
-            if (outsideOfRoot) {
-                break;
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, tree::leaveDirectory);
+                if (outsideOfRoot) {
+                    break;
+                }
+                entries.incrementAndGet();
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedName = stringInterner.intern(parser.getName());
+                    tree.enterDirectory(internedAbsolutePath, internedName);
+                } else {
+                    tree.visitFile(unpackFileInBackgroundIfPossible(input, entry, file, parser.getName()));
+                }
             }
-            entries.incrementAndGet();
+        } finally {
+            // Don't leave files being written behind, even when unpacking fails
+            tree.awaitFiles();
+        }
 
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedName = stringInterner.intern(parser.getName());
-                builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitLeafElement(fileSnapshot);
+        parser.exitToRoot(tree::leaveDirectory);
+        tree.leaveDirectory();
+
+        snapshots.put(treeName, tree.snapshot());
+        return entry;
+    }
+
+    /**
+     * Records the structure of an unpacked directory tree until all its files have been written,
+     * and then builds the snapshot of the tree.
+     */
+    private static class UnpackedDirectoryTree {
+        private final List<SnapshotBuilderAction> actions = new ArrayList<>();
+        private final List<Future<RegularFileSnapshot>> files = new ArrayList<>();
+
+        public void enterDirectory(String absolutePath, String name) {
+            actions.add(builder -> builder.enterDirectory(DIRECT, absolutePath, name, INCLUDE_EMPTY_DIRS));
+        }
+
+        public void visitFile(Future<RegularFileSnapshot> file) {
+            files.add(file);
+            actions.add(builder -> builder.visitLeafElement(getUnpackedFile(file)));
+        }
+
+        public void leaveDirectory() {
+            actions.add(DirectorySnapshotBuilder::leaveDirectory);
+        }
+
+        public void awaitFiles() {
+            for (Future<RegularFileSnapshot> file : files) {
+                try {
+                    Uninterruptibles.getUninterruptibly(file);
+                } catch (ExecutionException ignored) {
+                    // Reported when building the snapshot
+                }
             }
         }
 
-        parser.exitToRoot(builder::leaveDirectory);
-        builder.leaveDirectory();
+        public FileSystemLocationSnapshot snapshot() throws IOException {
+            DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            for (SnapshotBuilderAction action : actions) {
+                action.applyTo(builder);
+            }
+            return builder.getResult();
+        }
 
-        snapshots.put(treeName, builder.getResult());
-        return entry;
+        private static RegularFileSnapshot getUnpackedFile(Future<RegularFileSnapshot> file) throws IOException {
+            try {
+                return Uninterruptibles.getUninterruptibly(file);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private interface SnapshotBuilderAction {
+            void applyTo(DirectorySnapshotBuilder builder) throws IOException;
+        }
     }
 
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads {@link TarBuildCacheEntryPacker} writes small unpacked files with, while it continues reading the archive.
+ *
+ * The contents of the files waiting to be written are kept in memory, so both the size of the files written in the background
+ * and the total size of the contents waiting to be written are limited.
+ * With a parallelism of less than two, no threads are created and files are written on the unpacking thread.
+ */
+public class UnpackFileWriterPool implements Closeable {
+    public static final UnpackFileWriterPool SEQUENTIAL = new UnpackFileWriterPool(null);
+
+    private static final int MAX_BACKGROUND_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+
+    private UnpackFileWriterPool(@Nullable ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public static UnpackFileWriterPool withParallelism(int parallelism) {
+        if (parallelism < 2) {
+            return SEQUENTIAL;
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        return new UnpackFileWriterPool(Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "Build cache unpack Thread " + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Whether a file of the given size should be written in the background.
+     */
+    public boolean canWriteInBackground(long size) {
+        return executor != null && size <= MAX_BACKGROUND_FILE_SIZE;
+    }
+
+    /**
+     * Blocks until the contents of a file of the given size can be kept in memory until it is written.
+     *
+     * The reserved memory is released when the write {@linkplain #writeInBackground(int, Callable) submitted} for the file finishes.
+     */
+    public void reserveBuffer(int size) {
+        bufferedBytes.acquireUninterruptibly(size);
+    }
+
+    /**
+     * Releases a reserved buffer for which no write has been submitted.
+     */
+    public void releaseBuffer(int size) {
+        bufferedBytes.release(size);
+    }
+
+    /**
+     * Runs the write for a file with a previously {@linkplain #reserveBuffer(int) reserved} buffer in the background.
+     */
+    public <T> Future<T> writeInBackground(int bufferSize, Callable<T> write) {
+        try {
+            return executor.submit(() -> {
+                try {
+                    return write.call();
+                } finally {
+                    bufferedBytes.release(bufferSize);
+                }
+            });
+        } catch (RuntimeException e) {
+            bufferedBytes.release(bufferSize);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
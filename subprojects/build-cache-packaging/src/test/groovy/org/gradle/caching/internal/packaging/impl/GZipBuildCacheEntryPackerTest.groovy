@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+
+import java.util.zip.GZIPOutputStream
+
+class GZipBuildCacheEntryPackerTest extends Specification {
+    def delegate = Mock(BuildCacheEntryPacker)
+    def packer = new GZipBuildCacheEntryPacker(delegate)
+    def entity = Stub(CacheableEntity)
+    def readOrigin = Stub(OriginReader)
+    def unpackResult = new BuildCacheEntryPacker.UnpackResult(null, 1, [:])
+
+    def "unpacks gzip compressed archive"() {
+        def tar = tarArchive()
+        def compressed = new ByteArrayOutputStream()
+        new GZIPOutputStream(compressed).withStream { it.write(tar) }
+
+        when:
+        def result = packer.unpack(entity, new ByteArrayInputStream(compressed.toByteArray()), readOrigin)
+
+        then:
+        result == unpackResult
+        1 * delegate.unpack(entity, _, readOrigin) >> { CacheableEntity entity, InputStream input, OriginReader readOrigin ->
+            assert input.bytes == tar
+            unpackResult
+        }
+    }
+
+    def "unpacks uncompressed tar archive"() {
+        def tar = tarArchive()
+
+        when:
+        def result = packer.unpack(entity, new ByteArrayInputStream(tar), readOrigin)
+
+        then:
+        result == unpackResult
+        1 * delegate.unpack(entity, _, readOrigin) >> { CacheableEntity entity, InputStream input, OriginReader readOrigin ->
+            assert input.bytes == tar
+            unpackResult
+        }
+    }
+
+    def "fails to unpack #description"() {
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(content), readOrigin)
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Build cache entry is neither gzip compressed nor an uncompressed tar archive."
+        0 * delegate._
+
+        where:
+        description        | content
+        "empty input"      | new byte[0]
+        "unknown format"   | ("not an archive" * 100).bytes
+    }
+
+    private static byte[] tarArchive() {
+        def output = new ByteArrayOutputStream()
+        new TarArchiveOutputStream(output).withStream { tarOutput ->
+            def content = "content".bytes
+            def entry = new TarArchiveEntry("METADATA")
+            entry.size = content.length
+            tarOutput.putArchiveEntry(entry)
+            tarOutput.write(content)
+            tarOutput.closeArchiveEntry()
+        }
+        return output.toByteArray()
+    }
+}
@@ -237,4 +237,33 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         then:
         targetDir.assertIsEmptyDir()
     }
+
+    def "can unpack files in the background"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        20.times { index ->
+            sourceDir.file("dir${index % 3}/sub${index % 2}/file${index}.txt") << "content ${index}"
+        }
+        sourceDir.file("large.bin").bytes = new byte[2 * 1024 * 1024]
+        sourceDir.file("empty").createDir()
+        def targetDir = temporaryFolder.file("target")
+        def writerPool = UnpackFileWriterPool.withParallelism(4)
+        packer = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, writerPool)
+
+        when:
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceDir)
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, targetDir)
+
+        then:
+        20.times { index ->
+            assert targetDir.file("dir${index % 3}/sub${index % 2}/file${index}.txt").text == "content ${index}"
+        }
+        targetDir.file("large.bin").length() == 2 * 1024 * 1024
+        targetDir.file("empty").assertIsEmptyDir()
+        result.snapshots["test"].hash == fileSystemAccess.read(sourceDir.absolutePath).hash
+        result.snapshots["test"].hash == fileSystemAccess.read(targetDir.absolutePath).hash
+
+        cleanup:
+        writerPool.close()
+    }
 }
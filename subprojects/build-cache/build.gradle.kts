@@ -23,6 +23,8 @@ dependencies {
     implementation(libs.slf4jApi)
     implementation(libs.guava)
     implementation(libs.inject)
+    implementation(libs.commonsCompress)
+    implementation(libs.aircompressor)
 
     jmhImplementation(platform(project(":distributions-dependencies")))
     jmhImplementation(libs.ant)
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
+import org.gradle.internal.snapshot.impl.DirectoryWalkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares walking and hashing a directory hierarchy sequentially and in parallel.
+ * Files are hashed on every invocation, there is no file hash cache involved.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class DirectorySnapshotterBenchmark {
+    private static final int DIRECTORIES_PER_LEVEL = 4;
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    Path tempDirPath;
+    File tempDirFile;
+    DirectoryWalkerPool walkerPool;
+    DirectorySnapshotter snapshotter;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    @Param({"3", "5"})
+    int depth;
+
+    @Param({"1024", "65536"})
+    int fileSize;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.tempDirPath = Files.createTempDirectory("directory-snapshotter");
+        this.tempDirFile = tempDirPath.toFile();
+        createTree(tempDirPath, depth, new Random(1234L));
+
+        this.walkerPool = DirectoryWalkerPool.withParallelism(parallelism);
+        this.snapshotter = new DirectorySnapshotter(
+            new DefaultFileHasher(new DefaultStreamHasher()),
+            Interners.newWeakInterner(),
+            ImmutableList.of(),
+            new DirectorySnapshotterStatistics.Collector(),
+            walkerPool
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        walkerPool.close();
+        FileUtils.forceDelete(tempDirFile);
+    }
+
+    private void createTree(Path dir, int depth, Random random) throws IOException {
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+            random.nextBytes(content);
+            Files.write(dir.resolve("file" + i + ".bin"), content);
+        }
+        if (depth > 0) {
+            for (int i = 0; i < DIRECTORIES_PER_LEVEL; i++) {
+                createTree(Files.createDirectory(dir.resolve("dir" + i)), depth - 1, random);
+            }
+        }
+    }
+
+    @Benchmark
+    public void snapshot(Blackhole blackhole) {
+        blackhole.consume(snapshotter.snapshot(tempDirPath.toString(), null, blackhole::consume));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
+import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
+import org.gradle.caching.internal.packaging.impl.UnpackFileWriterPool;
+import org.gradle.internal.file.TreeType;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Compares unpacking a build cache entry with the production tar packer with different numbers of file writer threads.
+ * Each invocation cleans the output directory, writes and hashes the unpacked files and assembles the snapshot of the output tree.
+ * File permissions are not applied.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 7)
+@State(Scope.Benchmark)
+public class TarBuildCacheEntryPackerBenchmark {
+    private static final String TREE_NAME = "output";
+    private static final int DIRECTORY_COUNT = 16;
+    private static final OriginMetadata ORIGIN = new OriginMetadata("benchmark", Duration.ZERO);
+
+    Path tempDir;
+    File outputDir;
+    File sample;
+    CacheableEntity entity;
+    UnpackFileWriterPool fileWriterPool;
+    TarBuildCacheEntryPacker packer;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    int fileCount = 273;
+    int minFileSize = 273;
+    int maxFileSize = 273 * 1024;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.tempDir = Files.createTempDirectory("tar-build-cache-entry-packer-");
+        Path inputDir = Files.createDirectory(tempDir.resolve("input"));
+        createInputFiles(inputDir, new Random(1234L));
+        this.outputDir = tempDir.resolve("output").toFile();
+        this.sample = tempDir.resolve("sample.tar").toFile();
+        this.entity = new OutputDirectoryEntity(outputDir);
+
+        this.fileWriterPool = UnpackFileWriterPool.withParallelism(parallelism);
+        DefaultStreamHasher streamHasher = new DefaultStreamHasher();
+        this.packer = new TarBuildCacheEntryPacker(new CleaningFileSystemSupport(), new DefaultPermissionAccess(), streamHasher, Interners.newWeakInterner(), fileWriterPool);
+
+        FileSystemLocationSnapshot inputSnapshot = new DirectorySnapshotter(
+            new DefaultFileHasher(streamHasher),
+            Interners.newWeakInterner(),
+            ImmutableList.of(),
+            new DirectorySnapshotterStatistics.Collector()
+        ).snapshot(inputDir.toString(), null, snapshot -> {});
+        try (OutputStream output = Files.newOutputStream(sample.toPath())) {
+            packer.pack(entity, ImmutableMap.of(TREE_NAME, inputSnapshot), output, originOutput -> {});
+        }
+        System.out.printf(">>> %s is %d bytes long%n", sample.getName(), sample.length());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileWriterPool.close();
+        FileUtils.forceDelete(tempDir.toFile());
+    }
+
+    private void createInputFiles(Path inputDir, Random random) throws IOException {
+        for (int idx = 0; idx < DIRECTORY_COUNT; idx++) {
+            Files.createDirectory(inputDir.resolve("dir-" + idx));
+        }
+        for (int idx = 0; idx < fileCount; idx++) {
+            int fileSize = minFileSize + random.nextInt(maxFileSize - minFileSize);
+            byte[] buffer = new byte[fileSize];
+            random.nextBytes(buffer);
+            Files.write(inputDir.resolve("dir-" + (idx % DIRECTORY_COUNT)).resolve("input-" + idx + ".bin"), buffer);
+        }
+    }
+
+    @Benchmark
+    public void unpack(Blackhole blackhole) throws IOException {
+        try (InputStream input = Files.newInputStream(sample.toPath())) {
+            blackhole.consume(packer.unpack(entity, input, originInput -> ORIGIN).getSnapshots());
+        }
+    }
+
+    private static class OutputDirectoryEntity implements CacheableEntity {
+        private final File root;
+
+        public OutputDirectoryEntity(File root) {
+            this.root = root;
+        }
+
+        @Override
+        public String getIdentity() {
+            return ":benchmark";
+        }
+
+        @Override
+        public Class<?> getType() {
+            return getClass();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "benchmark";
+        }
+
+        @Override
+        public void visitOutputTrees(CacheableTreeVisitor visitor) {
+            visitor.visitOutputTree(TREE_NAME, TreeType.DIRECTORY, root);
+        }
+    }
+
+    private static class CleaningFileSystemSupport implements TarPackerFileSystemSupport {
+        @Override
+        public void ensureFileIsMissing(File entry) throws IOException {
+            FileUtils.forceMkdirParent(entry);
+            Files.deleteIfExists(entry.toPath());
+        }
+
+        @Override
+        public void ensureDirectoryForTree(TreeType type, File root) throws IOException {
+            FileUtils.forceMkdir(root);
+            FileUtils.cleanDirectory(root);
+        }
+    }
+
+    private static class DefaultPermissionAccess implements FilePermissionAccess {
+        @Override
+        public int getUnixMode(File f) {
+            return f.isDirectory() ? 0755 : 0644;
+        }
+
+        @Override
+        public void chmod(File file, int mode) {
+        }
+    }
+}
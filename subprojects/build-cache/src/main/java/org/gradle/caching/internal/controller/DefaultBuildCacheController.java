@@ -51,6 +51,7 @@
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
 import org.gradle.internal.operations.CallableBuildOperation;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
@@ -71,6 +72,8 @@
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final int MAX_QUEUED_UPLOADS_PER_THREAD = 8;
+
     @VisibleForTesting
     final RemoteBuildCacheServiceHandle remote;
 
@@ -80,6 +83,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    private final RemoteBuildCacheUploader uploader;
 
     private boolean closed;
 
@@ -94,6 +98,24 @@ public DefaultBuildCacheController(
         BuildCacheEntryPacker packer,
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner
+    ) {
+        this(config, buildOperationExecutor, temporaryFileProvider, logStackTraces, emitDebugLogging, disableRemoteOnError, fileSystemAccess, packer, originMetadataFactory, stringInterner, 0, false, null);
+    }
+
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        TemporaryFileProvider temporaryFileProvider,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        boolean disableRemoteOnError,
+        FileSystemAccess fileSystemAccess,
+        BuildCacheEntryPacker packer,
+        OriginMetadataFactory originMetadataFactory,
+        StringInterner stringInterner,
+        int uploadParallelism,
+        boolean uploadOnVirtualThreads,
+        @Nullable BuildOperationRef uploadParentOperation
     ) {
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
@@ -106,6 +128,7 @@ public DefaultBuildCacheController(
             originMetadataFactory,
             stringInterner
         );
+        this.uploader = createUploader(remote, temporaryFileProvider, uploadParallelism, uploadOnVirtualThreads, uploadParentOperation);
     }
 
     @Override
@@ -162,7 +185,12 @@ public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSys
         }
         tmp.withTempFile(key, file -> {
             packExecutor.pack(file, key, entity, snapshots, executionTime);
-            remote.maybeStore(key, file);
+            if (uploader != null) {
+                // Queued before storing locally, which can move the file
+                uploader.upload(key, file);
+            } else {
+                remote.maybeStore(key, file);
+            }
             local.maybeStore(key, file);
         });
     }
@@ -174,6 +202,10 @@ public void close() throws IOException {
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
+            // Registered last to be closed first
+            if (uploader != null) {
+                closer.register(uploader);
+            }
             closer.close();
         }
     }
@@ -281,6 +313,21 @@ public BuildOperationDescriptor.Builder description() {
         }
     }
 
+    @Nullable
+    private static RemoteBuildCacheUploader createUploader(
+        RemoteBuildCacheServiceHandle remote,
+        TemporaryFileProvider temporaryFileProvider,
+        int parallelism,
+        boolean useVirtualThreads,
+        @Nullable BuildOperationRef parentOperation
+    ) {
+        if (parallelism <= 0 || !remote.canStore()) {
+            return null;
+        }
+        File queueDirectory = temporaryFileProvider.createTemporaryDirectory("build-cache-uploads", null);
+        return new RemoteBuildCacheUploader(remote, queueDirectory, parallelism, parallelism * MAX_QUEUED_UPLOADS_PER_THREAD, useVirtualThreads, parentOperation);
+    }
+
     private static RemoteBuildCacheServiceHandle toRemoteHandle(@Nullable BuildCacheService service, boolean push, BuildOperationExecutor buildOperationExecutor, boolean logStackTraces, boolean disableOnError) {
         return service == null
             ? NullRemoteBuildCacheServiceHandle.INSTANCE
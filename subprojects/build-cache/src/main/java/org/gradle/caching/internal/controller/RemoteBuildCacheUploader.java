@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
+import org.gradle.internal.concurrent.VirtualThreads;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.util.internal.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads entries to the remote build cache in the background, so the work that produced them does not wait for the upload.
+ *
+ * Entries are copied to a queue directory and uploaded from there by a fixed number of threads.
+ * At most a fixed number of entries are queued or being uploaded at the same time.
+ * When the queue is full, queueing another entry waits until an upload has finished.
+ * The queue is drained when the build finishes.
+ * Uploads are reported as children of the given parent operation, as the operation storing an entry usually finishes before the entry is uploaded.
+ * Uploads can run on virtual threads instead of a fixed number of platform threads when the JVM supports them.
+ */
+class RemoteBuildCacheUploader implements Closeable {
+    private static final Logger LOGGER = Logging.getLogger(RemoteBuildCacheUploader.class);
+
+    private final RemoteBuildCacheServiceHandle remote;
+    private final File queueDirectory;
+    private final Semaphore queueSlots;
+    private final ExecutorService executor;
+    private final BuildOperationRef parentOperation;
+
+    private final AtomicInteger queuedEntries = new AtomicInteger();
+    private final AtomicInteger pendingUploads = new AtomicInteger();
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger notUploaded = new AtomicInteger();
+    private final AtomicInteger waitedForQueue = new AtomicInteger();
+
+    RemoteBuildCacheUploader(
+        RemoteBuildCacheServiceHandle remote,
+        File queueDirectory,
+        int parallelism,
+        int maxQueuedUploads,
+        boolean useVirtualThreads,
+        @Nullable BuildOperationRef parentOperation
+    ) {
+        this.remote = remote;
+        this.parentOperation = parentOperation;
+        this.queueDirectory = queueDirectory;
+        this.queueSlots = new Semaphore(maxQueuedUploads);
+        this.executor = createExecutor(parallelism, useVirtualThreads);
+        GFileUtils.mkdirs(queueDirectory);
+    }
+
+    private static ExecutorService createExecutor(int parallelism, boolean useVirtualThreads) {
+        if (useVirtualThreads) {
+            // Uploads mostly wait for the network, and the number of queued uploads is bounded already
+            ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("Build cache upload");
+            if (executor != null) {
+                return executor;
+            }
+            LOGGER.debug("Virtual threads are not supported by the current JVM, uploading with {} platform threads", parallelism);
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "Build cache upload Thread " + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the given entry for upload, waiting for a free slot when the queue is full.
+     *
+     * The entry is copied, so the given file can be moved or deleted once this method returns.
+     */
+    public void upload(BuildCacheKey key, File file) {
+        if (!remote.canStore()) {
+            return;
+        }
+        if (!queueSlots.tryAcquire()) {
+            waitedForQueue.incrementAndGet();
+            queueSlots.acquireUninterruptibly();
+        }
+        // The same entry can be stored by more than one work item at a time
+        File queuedFile = new File(queueDirectory, key.getHashCode() + "-" + queuedEntries.incrementAndGet());
+        try {
+            Files.copy(file.toPath(), queuedFile.toPath());
+        } catch (IOException e) {
+            queueSlots.release();
+            throw new UncheckedIOException(e);
+        }
+        pendingUploads.incrementAndGet();
+        executor.execute(() -> {
+            CurrentBuildOperationRef.instance().set(parentOperation);
+            try {
+                if (remote.maybeStore(key, queuedFile)) {
+                    uploaded.incrementAndGet();
+                } else {
+                    notUploaded.incrementAndGet();
+                }
+            } finally {
+                GFileUtils.deleteQuietly(queuedFile);
+                pendingUploads.decrementAndGet();
+                queueSlots.release();
+                CurrentBuildOperationRef.instance().clear();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        int pending = pendingUploads.get();
+        if (pending > 0) {
+            LOGGER.lifecycle("Waiting for {} pending uploads to the remote build cache to finish.", pending);
+        }
+        executor.shutdown();
+        // Let the queued uploads finish before the remote cache is closed
+        Uninterruptibles.awaitTerminationUninterruptibly(executor);
+        GFileUtils.deleteQuietly(queueDirectory);
+        LOGGER.info("Build cache upload: {} uploaded, {} not uploaded, waited {} times for the queue",
+            uploaded.get(), notUploaded.get(), waitedForQueue.get());
+    }
+}
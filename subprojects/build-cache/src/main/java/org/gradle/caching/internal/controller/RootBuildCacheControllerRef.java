@@ -19,16 +19,31 @@
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.internal.CacheableEntity;
 import org.gradle.caching.internal.controller.service.BuildCacheLoadResult;
+import org.gradle.internal.operations.BuildOperationRef;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 
 public class RootBuildCacheControllerRef {
 
+    private final BuildOperationRef buildTreeOperation;
     private BuildCacheController buildCacheController;
 
+    public RootBuildCacheControllerRef(@Nullable BuildOperationRef buildTreeOperation) {
+        this.buildTreeOperation = buildTreeOperation;
+    }
+
+    /**
+     * The build operation running while the build tree exists, which background work of the build cache is reported under.
+     */
+    @Nullable
+    public BuildOperationRef getBuildTreeOperation() {
+        return buildTreeOperation;
+    }
+
     public void set(BuildCacheController buildCacheController) {
         // This instance ends up in build/gradle scoped services for nesteds
         // We don't want to invoke close at that time.
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.gradle.util.internal.GFileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A local build cache which stores the files of the cache entries by their contents, so files shared between entries are only stored once.
+ *
+ * Each entry is stored as a manifest, and the larger files in it as blobs in a separate directory, see {@link ContentAddressedEntryFormat}.
+ * When an entry is loaded, its archive is assembled from the manifest and the blobs.
+ * The manifests are tracked for cleanup like the entries of the {@link DirectoryBuildCacheService},
+ * blobs are removed once no manifest refers to them anymore, see {@link UnreferencedBlobsCleanup}.
+ */
+public class ContentAddressedBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+
+    private final PathKeyFileStore manifestStore;
+    private final File blobDirectory;
+    private final PersistentCache persistentCache;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final FileAccessTracker fileAccessTracker;
+    private final String failedFileSuffix;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ContentAddressedBuildCacheService(PathKeyFileStore manifestStore, File blobDirectory, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this.manifestStore = manifestStore;
+        this.blobDirectory = blobDirectory;
+        this.persistentCache = persistentCache;
+        this.tempFileStore = tempFileStore;
+        this.fileAccessTracker = fileAccessTracker;
+        this.failedFileSuffix = failedFileSuffix;
+        GFileUtils.mkdirs(blobDirectory);
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        boolean[] loaded = new boolean[1];
+        loadLocally(key, file -> {
+            try (InputStream input = new FileInputStream(file)) {
+                reader.readFrom(input);
+                loaded[0] = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return loaded[0];
+    }
+
+    @Override
+    public void loadLocally(BuildCacheKey key, Action<? super File> reader) {
+        // We need to lock other processes out here because garbage collection can be under way in another process
+        persistentCache.withFileLock(() -> {
+            lock.readLock().lock();
+            try {
+                loadInsideLock(key, reader);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
+        LocallyAvailableResource resource = manifestStore.get(key.getHashCode());
+        if (resource == null) {
+            return;
+        }
+
+        File manifest = resource.getFile();
+        fileAccessTracker.markAccessed(manifest);
+
+        tempFileStore.withTempFile(key, archive -> {
+            try {
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(archive))) {
+                    ContentAddressedEntryFormat.assemble(manifest, blobDirectory, output);
+                }
+                reader.execute(archive);
+            } catch (Exception e) {
+                // Try to move the manifest out of the way in case its permanently corrupt
+                // Don't delete, so that it can be potentially used for debugging
+                File failedFile = new File(manifest.getAbsolutePath() + failedFileSuffix);
+                GFileUtils.deleteQuietly(failedFile);
+                //noinspection ResultOfMethodCallIgnored
+                manifest.renameTo(failedFile);
+
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        });
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter result) throws BuildCacheException {
+        tempFileStore.withTempFile(key, file -> {
+            try (OutputStream output = new FileOutputStream(file)) {
+                result.writeTo(output);
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+
+            storeLocally(key, file);
+        });
+    }
+
+    @Override
+    public void storeLocally(BuildCacheKey key, File file) {
+        persistentCache.withFileLock(() -> {
+            lock.writeLock().lock();
+            try {
+                storeInsideLock(key, file);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void storeInsideLock(BuildCacheKey key, File file) {
+        LocallyAvailableResource resource = manifestStore.add(key.getHashCode(), manifest -> {
+            try {
+                ContentAddressedEntryFormat.split(file, manifest, blobDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        fileAccessTracker.markAccessed(resource.getFile());
+    }
+
+    @Override
+    public void withTempFile(BuildCacheKey key, Action<? super File> action) {
+        persistentCache.withFileLock(() -> tempFileStore.withTempFile(key, action));
+    }
+
+    @Override
+    public void close() {
+        persistentCache.close();
+    }
+}
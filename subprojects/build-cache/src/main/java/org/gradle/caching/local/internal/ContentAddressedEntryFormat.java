@@ -0,0 +1,209 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.ByteStreams;
+import io.airlift.compress.snappy.SnappyFramedInputStream;
+import io.airlift.compress.snappy.SnappyFramedOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.HashingOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts between the gzipped tar archives of build cache entries and the manifests stored by the {@link ContentAddressedBuildCacheService}.
+ *
+ * A manifest lists the entries of the archive in order.
+ * The contents of small files are kept in the manifest, larger files are stored as Snappy compressed blobs named after the hash of their contents,
+ * so identical files in different cache entries are stored only once.
+ * Archives are assembled from a manifest uncompressed, as they are only read locally.
+ */
+final class ContentAddressedEntryFormat {
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_INLINE_SIZE = 1024;
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+
+    private static final byte END = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte INLINE_FILE = 2;
+    private static final byte BLOB_FILE = 3;
+
+    private ContentAddressedEntryFormat() {
+    }
+
+    /**
+     * Writes the manifest for the given gzipped archive, storing the blobs missing from the blob directory.
+     */
+    static void split(File archive, File manifest, File blobDirectory) throws IOException {
+        try (
+            TarArchiveInputStream tarInput = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(archive))), ENCODING);
+            DataOutputStream manifestOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifest)))
+        ) {
+            manifestOutput.writeInt(FORMAT_VERSION);
+            TarArchiveEntry entry;
+            while ((entry = tarInput.getNextTarEntry()) != null) {
+                if (entry.isDirectory()) {
+                    writeEntryHeader(manifestOutput, DIRECTORY, entry);
+                } else if (entry.isFile()) {
+                    long size = entry.getSize();
+                    if (size <= MAX_INLINE_SIZE) {
+                        writeEntryHeader(manifestOutput, INLINE_FILE, entry);
+                        byte[] contents = new byte[(int) size];
+                        ByteStreams.readFully(tarInput, contents);
+                        manifestOutput.writeInt(contents.length);
+                        manifestOutput.write(contents);
+                    } else {
+                        writeEntryHeader(manifestOutput, BLOB_FILE, entry);
+                        manifestOutput.writeLong(size);
+                        manifestOutput.writeUTF(storeBlob(tarInput, blobDirectory).toString());
+                    }
+                } else {
+                    throw new IOException(String.format("Unsupported entry '%s' in build cache entry.", entry.getName()));
+                }
+            }
+            manifestOutput.writeByte(END);
+        }
+    }
+
+    /**
+     * Writes the uncompressed archive described by the given manifest.
+     */
+    static void assemble(File manifest, File blobDirectory, OutputStream output) throws IOException {
+        try (
+            DataInputStream manifestInput = openManifest(manifest);
+            TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output, ENCODING)
+        ) {
+            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            tarOutput.setAddPaxHeadersForNonAsciiNames(true);
+            byte kind;
+            while ((kind = manifestInput.readByte()) != END) {
+                TarArchiveEntry entry = new TarArchiveEntry(readString(manifestInput), true);
+                entry.setMode(manifestInput.readInt());
+                switch (kind) {
+                    case DIRECTORY:
+                        tarOutput.putArchiveEntry(entry);
+                        break;
+                    case INLINE_FILE:
+                        byte[] contents = new byte[manifestInput.readInt()];
+                        manifestInput.readFully(contents);
+                        entry.setSize(contents.length);
+                        tarOutput.putArchiveEntry(entry);
+                        tarOutput.write(contents);
+                        break;
+                    case BLOB_FILE:
+                        entry.setSize(manifestInput.readLong());
+                        tarOutput.putArchiveEntry(entry);
+                        try (InputStream blobInput = new SnappyFramedInputStream(new FileInputStream(blobFile(blobDirectory, manifestInput.readUTF())))) {
+                            ByteStreams.copy(blobInput, tarOutput);
+                        }
+                        break;
+                    default:
+                        throw new IOException(String.format("Unknown entry kind %d in build cache manifest %s.", kind, manifest));
+                }
+                tarOutput.closeArchiveEntry();
+            }
+        }
+    }
+
+    /**
+     * Visits the names of the blobs the given manifest refers to.
+     */
+    static void visitBlobs(File manifest, Consumer<String> visitor) throws IOException {
+        try (DataInputStream manifestInput = openManifest(manifest)) {
+            byte kind;
+            while ((kind = manifestInput.readByte()) != END) {
+                readString(manifestInput);
+                manifestInput.readInt();
+                if (kind == INLINE_FILE) {
+                    ByteStreams.skipFully(manifestInput, manifestInput.readInt());
+                } else if (kind == BLOB_FILE) {
+                    manifestInput.readLong();
+                    visitor.accept(manifestInput.readUTF());
+                }
+            }
+        }
+    }
+
+    private static HashCode storeBlob(InputStream contents, File blobDirectory) throws IOException {
+        File tempFile = File.createTempFile("blob", ".tmp", blobDirectory);
+        try {
+            HashCode hash;
+            try (HashingOutputStream hashingOutput = new HashingOutputStream(Hashing.defaultFunction(), new SnappyFramedOutputStream(new FileOutputStream(tempFile)))) {
+                ByteStreams.copy(contents, hashingOutput);
+                hash = hashingOutput.hash();
+            }
+            File blob = blobFile(blobDirectory, hash.toString());
+            if (!blob.isFile() && !tempFile.renameTo(blob)) {
+                throw new IOException(String.format("Could not move blob to %s.", blob));
+            }
+            return hash;
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    private static File blobFile(File blobDirectory, String name) throws FileNotFoundException {
+        File blob = new File(blobDirectory, name);
+        if (!blob.isFile()) {
+            throw new FileNotFoundException(String.format("Missing blob %s in build cache.", blob));
+        }
+        return blob;
+    }
+
+    private static DataInputStream openManifest(File manifest) throws IOException {
+        DataInputStream manifestInput = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+        int version = manifestInput.readInt();
+        if (version != FORMAT_VERSION) {
+            manifestInput.close();
+            throw new IOException(String.format("Unsupported format version %d of build cache manifest %s.", version, manifest));
+        }
+        return manifestInput;
+    }
+
+    private static void writeEntryHeader(DataOutputStream manifestOutput, byte kind, TarArchiveEntry entry) throws IOException {
+        manifestOutput.writeByte(kind);
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        manifestOutput.writeInt(name.length);
+        manifestOutput.write(name);
+        manifestOutput.writeInt(entry.getMode());
+    }
+
+    private static String readString(DataInputStream manifestInput) throws IOException {
+        byte[] bytes = new byte[manifestInput.readInt()];
+        manifestInput.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -20,8 +20,10 @@
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.CleanupAction;
 import org.gradle.cache.internal.CleanupActionDecorator;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.CompositeCleanupAction;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.scopes.GlobalScopedCache;
@@ -43,8 +45,17 @@
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    /**
+     * Whether the local build cache stores the files of its entries by their contents, so files shared between entries are only stored once.
+     *
+     * Entries are kept in the "entries" and "blobs" directories of the cache directory, see {@link ContentAddressedBuildCacheService}.
+     * The default cache directory is separate from the one used for the regular layout.
+     */
+    public static final String CONTENT_ADDRESSED_PROPERTY = "org.gradle.unsafe.build-cache.local-content-addressed";
+
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
+    private static final String CONTENT_ADDRESSED_BUILD_CACHE_KEY = "build-cache-content-addressed-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
     private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 1;
 
@@ -70,12 +81,13 @@ public DirectoryBuildCacheServiceFactory(CacheRepository cacheRepository, Global
 
     @Override
     public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
+        boolean contentAddressed = Boolean.getBoolean(CONTENT_ADDRESSED_PROPERTY);
         Object cacheDirectory = configuration.getDirectory();
         File target;
         if (cacheDirectory != null) {
             target = resolver.resolve(cacheDirectory);
         } else {
-            target = globalScopedCache.baseDirForCrossVersionCache(BUILD_CACHE_KEY);
+            target = globalScopedCache.baseDirForCrossVersionCache(contentAddressed ? CONTENT_ADDRESSED_BUILD_CACHE_KEY : BUILD_CACHE_KEY);
         }
         checkDirectory(target);
 
@@ -84,18 +96,43 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
+        if (contentAddressed) {
+            describer.config("layout", "content-addressed");
+            return createContentAddressedBuildCacheService(target, removeUnusedEntriesAfterDays);
+        }
+
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
-        PersistentCache persistentCache = cacheRepository
+        PersistentCache persistentCache = openCache(target, createCleanupAction(removeUnusedEntriesAfterDays));
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+    }
+
+    private BuildCacheService createContentAddressedBuildCacheService(File target, int removeUnusedEntriesAfterDays) {
+        File manifestDirectory = new File(target, "entries");
+        File blobDirectory = new File(target, "blobs");
+
+        PathKeyFileStore manifestStore = fileStoreFactory.createFileStore(manifestDirectory);
+        CleanupAction cleanupAction = CompositeCleanupAction.builder()
+            .add(manifestDirectory, createCleanupAction(removeUnusedEntriesAfterDays))
+            .add(new UnreferencedBlobsCleanup(manifestDirectory, blobDirectory))
+            .build();
+        PersistentCache persistentCache = openCache(target, cleanupAction);
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, manifestDirectory, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+
+        return new ContentAddressedBuildCacheService(manifestStore, blobDirectory, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+    }
+
+    private PersistentCache openCache(File target, CleanupAction cleanupAction) {
+        return cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionDecorator.decorate(createCleanupAction(removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionDecorator.decorate(cleanupAction))
             .withDisplayName("Build cache")
             .withLockOptions(mode(OnDemand))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
-        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
-        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
-
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
     }
 
     private LeastRecentlyUsedCacheCleanup createCleanupAction(int removeUnusedEntriesAfterDays) {
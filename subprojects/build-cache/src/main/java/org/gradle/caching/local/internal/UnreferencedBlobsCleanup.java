@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.util.internal.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Removes the blobs of the {@link ContentAddressedBuildCacheService} which are not referenced by any manifest anymore.
+ *
+ * Has to run after the manifests have been cleaned up, and while no entries are stored.
+ * Manifests which cannot be read keep no blobs alive, loading them fails anyway.
+ */
+class UnreferencedBlobsCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedBlobsCleanup.class);
+
+    private final File manifestDirectory;
+    private final File blobDirectory;
+
+    UnreferencedBlobsCleanup(File manifestDirectory, File blobDirectory) {
+        this.manifestDirectory = manifestDirectory;
+        this.blobDirectory = blobDirectory;
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        Set<String> referencedBlobs = new HashSet<>();
+        for (File manifest : listFiles(manifestDirectory)) {
+            try {
+                ContentAddressedEntryFormat.visitBlobs(manifest, referencedBlobs::add);
+            } catch (IOException e) {
+                LOGGER.debug("Could not read build cache manifest {}.", manifest, e);
+            }
+        }
+
+        int filesDeleted = 0;
+        for (File blob : listFiles(blobDirectory)) {
+            if (referencedBlobs.contains(blob.getName())) {
+                progressMonitor.incrementSkipped();
+            } else {
+                progressMonitor.incrementDeleted();
+                if (GFileUtils.deleteQuietly(blob)) {
+                    filesDeleted++;
+                }
+            }
+        }
+        LOGGER.info("{} cleanup deleted {} unreferenced blobs.", cleanableStore.getDisplayName(), filesDeleted);
+    }
+
+    private static File[] listFiles(File directory) {
+        File[] files = directory.listFiles(File::isFile);
+        return files == null ? new File[0] : files;
+    }
+}
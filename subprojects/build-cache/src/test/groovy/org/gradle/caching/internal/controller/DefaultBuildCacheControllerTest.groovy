@@ -28,14 +28,19 @@ import org.gradle.caching.internal.controller.service.BuildCacheServicesConfigur
 import org.gradle.caching.internal.origin.OriginMetadataFactory
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.VirtualThreads
+import org.gradle.internal.operations.BuildOperationRef
+import org.gradle.internal.operations.CurrentBuildOperationRef
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.vfs.FileSystemAccess
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
+import spock.lang.Requires
 import spock.lang.Specification
 
 import java.time.Duration
+import java.util.concurrent.CountDownLatch
 
 class DefaultBuildCacheControllerTest extends Specification {
 
@@ -70,7 +75,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
-    BuildCacheController getController(boolean disableRemoteOnError = true) {
+    BuildCacheController getController(boolean disableRemoteOnError = true, int uploadParallelism = 0, boolean uploadOnVirtualThreads = false, BuildOperationRef uploadParentOperation = null) {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
                 local,
@@ -86,7 +91,10 @@ class DefaultBuildCacheControllerTest extends Specification {
             fileSystemAccess,
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            uploadParallelism,
+            uploadOnVirtualThreads,
+            uploadParentOperation
         )
     }
 
@@ -276,4 +284,105 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "uploads entries to remote in the background"() {
+        def uploadStarted = new CountDownLatch(1)
+        def uploadReleased = new CountDownLatch(1)
+        def controller = getController(true, 1)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        uploadStarted.await()
+
+        then:
+        1 * remote.store(key, _) >> {
+            uploadStarted.countDown()
+            uploadReleased.await()
+        }
+        1 * local.storeLocally(key, _)
+
+        when:
+        uploadReleased.countDown()
+        controller.close()
+
+        then:
+        1 * remote.close()
+        1 * local.close()
+        !tmpDir.root.listFiles().any { it.name.startsWith("build-cache-uploads") }
+    }
+
+    def "waits for an upload to finish when the upload queue is full"() {
+        def uploadStarted = new CountDownLatch(1)
+        def uploadReleased = new CountDownLatch(1)
+        def controller = getController(true, 1)
+        9 * remote.store(key, _) >> {
+            uploadStarted.countDown()
+            uploadReleased.await()
+        }
+
+        when:
+        // One upload running and seven queued fill the eight slots of a single upload thread
+        8.times { controller.store(key, cacheableEntity, snapshots, executionTime) }
+        uploadStarted.await()
+        def blockedStore = Thread.start { controller.store(key, cacheableEntity, snapshots, executionTime) }
+        blockedStore.join(200)
+
+        then:
+        blockedStore.alive
+
+        when:
+        uploadReleased.countDown()
+        blockedStore.join()
+        controller.close()
+
+        then:
+        !blockedStore.alive
+    }
+
+    def "reports uploads as part of the given parent operation"() {
+        def parentOperation = Stub(BuildOperationRef)
+        def uploadParentOperation = null
+        def controller = getController(true, 1, false, parentOperation)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> {
+            uploadParentOperation = CurrentBuildOperationRef.instance().get()
+        }
+        uploadParentOperation.is(parentOperation)
+    }
+
+    @Requires({ VirtualThreads.supported })
+    def "uploads entries to remote on virtual threads"() {
+        def uploadThread = null
+        def controller = getController(true, 1, true)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> {
+            uploadThread = Thread.currentThread()
+        }
+        1 * local.storeLocally(key, _)
+        uploadThread.virtual
+        uploadThread.name.startsWith("Build cache upload Thread")
+    }
+
+    def "does not queue uploads when remote push is disabled"() {
+        remotePush = false
+        def controller = getController(true, 1)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        0 * remote.store(_, _)
+        1 * local.storeLocally(key, _)
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.TestUtil
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.GZIPOutputStream
+
+@UsesNativeServices
+@CleanupTestDirectory
+class ContentAddressedBuildCacheServiceTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def manifestDir = cacheDir.file("entries")
+    def blobDir = cacheDir.file("blobs")
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_) >> { Runnable r -> r.run() }
+    }
+    def tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> temporaryFolder.createDir("tmp")))
+    def fileAccessTracker = Mock(FileAccessTracker)
+    def service = new ContentAddressedBuildCacheService(new DefaultPathKeyFileStore(TestUtil.checksumService, manifestDir), blobDir, persistentCache, tempFileStore, fileAccessTracker, ".failed")
+
+    def sharedContents = "shared" * 1000
+    def firstEntry = [
+        "METADATA": "first",
+        "tree-classes/": null,
+        "tree-classes/Shared.class": sharedContents,
+        "tree-classes/First.class": "first" * 1000
+    ]
+    def secondEntry = [
+        "METADATA": "second",
+        "tree-classes/": null,
+        "tree-classes/Shared.class": sharedContents,
+        "tree-classes/Second.class": "second" * 1000
+    ]
+
+    def "stores files shared between entries once"() {
+        when:
+        store("first", firstEntry)
+        store("second", secondEntry)
+
+        then:
+        blobDir.listFiles().size() == 3
+
+        and:
+        load("first") == firstEntry
+        load("second") == secondEntry
+    }
+
+    def "marks manifest accessed when storing and loading"() {
+        File manifest = null
+
+        when:
+        store("first", firstEntry)
+
+        then:
+        1 * fileAccessTracker.markAccessed(_) >> { File file -> manifest = file }
+        manifest.parentFile == manifestDir
+
+        when:
+        load("first")
+
+        then:
+        1 * fileAccessTracker.markAccessed(manifest)
+    }
+
+    def "does not load missing entry"() {
+        expect:
+        load("missing") == null
+    }
+
+    def "moves manifest out of the way when a blob is missing"() {
+        store("first", firstEntry)
+        blobDir.listFiles()*.delete()
+
+        when:
+        load("first")
+
+        then:
+        def e = thrown(RuntimeException)
+        e.cause instanceof FileNotFoundException
+        manifestDir.file("first.failed").exists()
+        load("first") == null
+    }
+
+    def "cleanup removes blobs which are no longer referenced"() {
+        store("first", firstEntry)
+        store("second", secondEntry)
+        def cleanableStore = Stub(CleanableStore) {
+            getDisplayName() >> "build cache"
+        }
+
+        when:
+        manifestDir.file("first").delete()
+        new UnreferencedBlobsCleanup(manifestDir, blobDir).clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        blobDir.listFiles().size() == 2
+        load("second") == secondEntry
+    }
+
+    private void store(String hashCode, Map<String, String> entries) {
+        def archive = temporaryFolder.file("${hashCode}.tar.gz")
+        new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(archive)), "UTF-8").withCloseable { tarOutput ->
+            entries.each { name, contents ->
+                def entry = new TarArchiveEntry(name, true)
+                entry.mode = contents == null ? 040755 : 0100644
+                if (contents != null) {
+                    entry.size = contents.bytes.length
+                }
+                tarOutput.putArchiveEntry(entry)
+                if (contents != null) {
+                    tarOutput.write(contents.bytes)
+                }
+                tarOutput.closeArchiveEntry()
+            }
+        }
+        service.storeLocally(key(hashCode), archive)
+    }
+
+    private Map<String, String> load(String hashCode) {
+        Map<String, String> entries = null
+        service.loadLocally(key(hashCode)) { File archive ->
+            entries = [:]
+            new TarArchiveInputStream(new FileInputStream(archive), "UTF-8").withCloseable { tarInput ->
+                TarArchiveEntry entry
+                while ((entry = tarInput.nextTarEntry) != null) {
+                    assert entry.mode == (entry.directory ? 040755 : 0100644)
+                    entries[entry.name] = entry.directory ? null : new String(tarInput.bytes)
+                }
+            }
+        }
+        return entries
+    }
+
+    private BuildCacheKey key(String hashCode) {
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+        }
+    }
+}
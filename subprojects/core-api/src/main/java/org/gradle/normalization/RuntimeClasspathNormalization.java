@@ -17,6 +17,7 @@
 package org.gradle.normalization;
 
 import org.gradle.api.Action;
+import org.gradle.api.Incubating;
 import org.gradle.internal.HasInternalProtocol;
 
 /**
@@ -88,4 +89,16 @@ public interface RuntimeClasspathNormalization extends InputNormalization {
      * @since 6.6
      */
     void metaInf(Action<? super MetaInfNormalization> configuration);
+
+    /**
+     * Fingerprint the entries of archives by the CRC-32 checksum and size recorded in the central directory of the archive, instead of by their contents.
+     *
+     * <p>This avoids decompressing archives which haven't been fingerprinted before, which makes a difference for large archives.
+     * Entries normalized by other rules, like properties files and manifests, are still fingerprinted by their normalized contents.
+     * CRC-32 is not a cryptographic hash, so in rare cases a change to an entry may go unnoticed.</p>
+     *
+     * @since 8.0
+     */
+    @Incubating
+    void useArchiveEntryChecksums();
 }
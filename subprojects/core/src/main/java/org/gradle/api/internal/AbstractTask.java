@@ -62,8 +62,10 @@
 import org.gradle.api.tasks.TaskInstantiationException;
 import org.gradle.api.tasks.TaskLocalState;
 import org.gradle.configuration.internal.UserCodeApplicationContext;
+import org.gradle.execution.plan.DefaultPlanExecutor;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factory;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.history.changes.InputChangesInternal;
 import org.gradle.internal.extensibility.ExtensibleDynamicObject;
@@ -75,11 +77,14 @@
 import org.gradle.internal.logging.slf4j.ContextAwareTaskLogger;
 import org.gradle.internal.logging.slf4j.DefaultContextAwareTaskLogger;
 import org.gradle.internal.metaobject.DynamicObject;
+import org.gradle.internal.resources.MemoryLeaseRegistry;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.SharedResource;
 import org.gradle.internal.scripts.ScriptOriginUtil;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.health.memory.MemoryAmount;
 import org.gradle.util.Path;
 import org.gradle.util.internal.ConfigureUtil;
 import org.gradle.work.DisableCachingByDefault;
@@ -163,6 +168,8 @@ public abstract class AbstractTask implements TaskInternal, DynamicObjectAware {
 
     private Set<Provider<? extends BuildService<?>>> requiredServices;
 
+    private long expectedMemoryUsage;
+
     protected AbstractTask() {
         this(taskInfo());
     }
@@ -1048,16 +1055,45 @@ public Set<Provider<? extends BuildService<?>>> getRequiredServices() {
     }
 
     @Override
-    public List<ResourceLock> getSharedResources() {
-        if (requiredServices == null) {
-            return Collections.emptyList();
+    public long getExpectedMemoryUsage() {
+        if (expectedMemoryUsage == 0 && this instanceof JavaForkOptions) {
+            // A task that forks JVMs, such as Test or JavaExec, uses at least the maximum heap of each of them
+            long maxHeapSize = MemoryAmount.parseNotation(((JavaForkOptions) this).getMaxHeapSize());
+            return maxHeapSize > 0 ? maxHeapSize * maxConcurrentForks() : 0;
         }
+        return expectedMemoryUsage;
+    }
+
+    /**
+     * The number of JVMs a task that forks JVMs runs at the same time, used to derive its {@link #getExpectedMemoryUsage() expected memory usage}.
+     */
+    protected int maxConcurrentForks() {
+        return 1;
+    }
+
+    @Override
+    public void setExpectedMemoryUsage(long bytes) {
+        taskMutator.mutate("Task.setExpectedMemoryUsage(long)", () -> {
+            expectedMemoryUsage = bytes;
+        });
+    }
+
+    @Override
+    public List<ResourceLock> getSharedResources() {
         ImmutableList.Builder<ResourceLock> locks = ImmutableList.builder();
-        BuildServiceRegistryInternal serviceRegistry = getServices().get(BuildServiceRegistryInternal.class);
-        for (Provider<? extends BuildService<?>> service : requiredServices) {
-            SharedResource resource = serviceRegistry.forService(service);
-            if (resource.getMaxUsages() > 0) {
-                locks.add(resource.getResourceLock());
+        if (requiredServices != null) {
+            BuildServiceRegistryInternal serviceRegistry = getServices().get(BuildServiceRegistryInternal.class);
+            for (Provider<? extends BuildService<?>> service : requiredServices) {
+                SharedResource resource = serviceRegistry.forService(service);
+                if (resource.getMaxUsages() > 0) {
+                    locks.add(resource.getResourceLock());
+                }
+            }
+        }
+        if (getServices().get(InternalOptions.class).getOption(DefaultPlanExecutor.MEMORY_AWARE_SCHEDULING).get()) {
+            long expectedMemoryUsage = getExpectedMemoryUsage();
+            if (expectedMemoryUsage > 0) {
+                locks.add(getServices().get(MemoryLeaseRegistry.class).getResourceLock(expectedMemoryUsage));
             }
         }
         return locks.build();
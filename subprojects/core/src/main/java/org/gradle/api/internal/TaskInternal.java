@@ -117,6 +117,14 @@ public interface TaskInternal extends Task, Configurable<Task> {
     @Internal
     List<? extends ResourceLock> getSharedResources();
 
+    /**
+     * <p>Gets the amount of memory in bytes this task is expected to use while executing, including the memory of any processes it uses, or 0 when not known.</p>
+     */
+    @Internal
+    long getExpectedMemoryUsage();
+
+    void setExpectedMemoryUsage(long bytes);
+
     /**
      * "Lifecycle dependencies" are dependencies of this task declared via an explicit {@link Task#dependsOn(Object...)} call,
      * as opposed to the recommended approach of connecting producer tasks' outputs to consumer tasks' inputs.
@@ -20,6 +20,7 @@
 import org.gradle.cache.scopes.ScopedCache;
 import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
@@ -28,8 +29,16 @@ public class DefaultExecutionHistoryCacheAccess implements ExecutionHistoryCache
     private final PersistentCache cache;
 
     public DefaultExecutionHistoryCacheAccess(ScopedCache cacheRepository) {
+        this(cacheRepository, null);
+    }
+
+    /**
+     * @param contentHashIdentifier identifies how file contents are hashed when not hashed the default way.
+     * The execution history contains content hashes, so it is kept apart per way of hashing.
+     */
+    public DefaultExecutionHistoryCacheAccess(ScopedCache cacheRepository, @Nullable String contentHashIdentifier) {
         this.cache = cacheRepository
-            .cache("executionHistory")
+            .cache(contentHashIdentifier == null ? "executionHistory" : "executionHistory-" + contentHashIdentifier)
             .withDisplayName("execution history cache")
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
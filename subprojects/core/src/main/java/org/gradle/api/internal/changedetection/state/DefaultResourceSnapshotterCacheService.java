@@ -16,10 +16,14 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.ImmutableMap;
+import org.gradle.api.internal.file.archive.ZipEntry;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.fingerprint.hashing.FileSystemLocationSnapshotHasher;
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContextHasher;
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext;
+import org.gradle.internal.fingerprint.hashing.ZipEntryContext;
+import org.gradle.internal.fingerprint.hashing.ZipEntryContextHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.hash.Hashing;
@@ -28,13 +32,28 @@
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DefaultResourceSnapshotterCacheService implements ResourceSnapshotterCacheService {
     private static final HashCode NO_HASH = Hashing.signature(CachingResourceHasher.class.getName() + " : no hash");
     private final PersistentIndexedCache<HashCode, HashCode> persistentCache;
+    @Nullable
+    private final PersistentIndexedCache<HashCode, Map<HashCode, HashCode>> zipEntryCache;
+    private final ConcurrentMap<HashCode, ArchiveEntryHashes> archivesBeingHashed = new ConcurrentHashMap<>();
 
     public DefaultResourceSnapshotterCacheService(PersistentIndexedCache<HashCode, HashCode> persistentCache) {
+        this(persistentCache, null);
+    }
+
+    /**
+     * @param zipEntryCache the cache for the hashes of zip entries, or {@code null} if zip entries should not be cached.
+     * The hashes of all entries of an archive are stored together, so hashing an archive looks up and stores them once instead of once per entry.
+     */
+    public DefaultResourceSnapshotterCacheService(PersistentIndexedCache<HashCode, HashCode> persistentCache, @Nullable PersistentIndexedCache<HashCode, Map<HashCode, HashCode>> zipEntryCache) {
         this.persistentCache = persistentCache;
+        this.zipEntryCache = zipEntryCache;
     }
 
     @Nullable
@@ -46,13 +65,44 @@ public HashCode hashFile(FileSystemLocationSnapshot snapshot, FileSystemLocation
     @Nullable
     @Override
     public HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, RegularFileSnapshotContextHasher hasher, HashCode configurationHash) throws IOException {
-        return hashFile(fileSnapshotContext.getSnapshot(), () -> hasher.hash(fileSnapshotContext), configurationHash);
+        FileSystemLocationSnapshot snapshot = fileSnapshotContext.getSnapshot();
+        if (zipEntryCache == null) {
+            return hashFile(snapshot, () -> hasher.hash(fileSnapshotContext), configurationHash);
+        }
+        // The file may be an archive, so its entries are hashed while the file is being hashed
+        return hashFile(snapshot, () -> hashArchive(snapshot.getHash(), () -> hasher.hash(fileSnapshotContext)), configurationHash);
+    }
+
+    @Nullable
+    @Override
+    public HashCode hashZipEntry(ZipEntryContext zipEntryContext, ZipEntryContextHasher hasher, HashCode configurationHash) throws IOException {
+        HashCode rootParentHash = zipEntryContext.getRootParentHash();
+        ArchiveEntryHashes archive = rootParentHash == null ? null : archivesBeingHashed.get(rootParentHash);
+        if (archive == null || zipEntryContext.getEntry().getCrc() == -1) {
+            return hasher.hash(zipEntryContext);
+        }
+        return archive.hashEntry(zipEntryContext, hasher, configurationHash);
+    }
+
+    @Nullable
+    private HashCode hashArchive(HashCode archiveHash, IoSupplier<HashCode> hashCodeSupplier) throws IOException {
+        ArchiveEntryHashes archive = archivesBeingHashed.compute(archiveHash, (key, existing) -> existing == null ? new ArchiveEntryHashes(key) : existing.retain());
+        try {
+            return hashCodeSupplier.get();
+        } finally {
+            if (archivesBeingHashed.computeIfPresent(archiveHash, (key, existing) -> existing.release()) == null) {
+                archive.store();
+            }
+        }
     }
 
     @Nullable
     private HashCode hashFile(FileSystemLocationSnapshot snapshot, IoSupplier<HashCode> hashCodeSupplier, HashCode configurationHash) throws IOException {
-        HashCode resourceHashCacheKey = resourceHashCacheKey(snapshot.getHash(), configurationHash);
+        return hashWithCache(persistentCache, resourceHashCacheKey(snapshot.getHash(), configurationHash), hashCodeSupplier);
+    }
 
+    @Nullable
+    private static HashCode hashWithCache(PersistentIndexedCache<HashCode, HashCode> persistentCache, HashCode resourceHashCacheKey, IoSupplier<HashCode> hashCodeSupplier) throws IOException {
         HashCode resourceHash = persistentCache.getIfPresent(resourceHashCacheKey);
         if (resourceHash != null) {
             if (resourceHash.equals(NO_HASH)) {
@@ -77,4 +127,74 @@ private static HashCode resourceHashCacheKey(HashCode contentHash, HashCode conf
         hasher.putHash(contentHash);
         return hasher.hash();
     }
+
+    /**
+     * The entry hashes of an archive which is being hashed, by the configuration of the hasher used for the entries.
+     * They are loaded from the persistent cache when the first entry is hashed and stored again once no one is hashing the archive anymore.
+     */
+    private class ArchiveEntryHashes {
+        private final HashCode archiveHash;
+        private final ConcurrentMap<HashCode, EntryHashes> entryHashesByConfiguration = new ConcurrentHashMap<>();
+        // Guarded by archivesBeingHashed
+        private int users = 1;
+
+        public ArchiveEntryHashes(HashCode archiveHash) {
+            this.archiveHash = archiveHash;
+        }
+
+        public ArchiveEntryHashes retain() {
+            users++;
+            return this;
+        }
+
+        @Nullable
+        public ArchiveEntryHashes release() {
+            return --users == 0 ? null : this;
+        }
+
+        @Nullable
+        public HashCode hashEntry(ZipEntryContext zipEntryContext, ZipEntryContextHasher hasher, HashCode configurationHash) throws IOException {
+            EntryHashes entryHashes = entryHashesByConfiguration.computeIfAbsent(configurationHash, this::load);
+            ZipEntry entry = zipEntryContext.getEntry();
+            Hasher keyHasher = Hashing.newHasher();
+            keyHasher.putString(zipEntryContext.getFullName());
+            // An archive can contain several entries with the same name, which only differ in their contents
+            keyHasher.putLong(entry.getCrc());
+            keyHasher.putInt(entry.size());
+            HashCode entryKey = keyHasher.hash();
+
+            HashCode entryHash = entryHashes.hashes.get(entryKey);
+            if (entryHash == null) {
+                HashCode hash = hasher.hash(zipEntryContext);
+                entryHash = hash == null ? NO_HASH : hash;
+                entryHashes.hashes.put(entryKey, entryHash);
+                entryHashes.changed = true;
+            }
+            return entryHash.equals(NO_HASH) ? null : entryHash;
+        }
+
+        private EntryHashes load(HashCode configurationHash) {
+            assert zipEntryCache != null;
+            Map<HashCode, HashCode> storedHashes = zipEntryCache.getIfPresent(resourceHashCacheKey(archiveHash, configurationHash));
+            return new EntryHashes(storedHashes == null ? ImmutableMap.of() : storedHashes);
+        }
+
+        public void store() {
+            assert zipEntryCache != null;
+            entryHashesByConfiguration.forEach((configurationHash, entryHashes) -> {
+                if (entryHashes.changed) {
+                    zipEntryCache.put(resourceHashCacheKey(archiveHash, configurationHash), ImmutableMap.copyOf(entryHashes.hashes));
+                }
+            });
+        }
+    }
+
+    private static class EntryHashes {
+        private final ConcurrentMap<HashCode, HashCode> hashes;
+        private volatile boolean changed;
+
+        public EntryHashes(Map<HashCode, HashCode> storedHashes) {
+            this.hashes = new ConcurrentHashMap<>(storedHashes);
+        }
+    }
 }
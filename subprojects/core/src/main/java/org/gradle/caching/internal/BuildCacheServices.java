@@ -34,6 +34,7 @@
 import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
+import org.gradle.caching.internal.packaging.impl.UnpackFileWriterPool;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
@@ -47,6 +48,8 @@
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.nativeintegration.network.HostnameLookup;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.resource.local.DefaultPathKeyFileStore;
@@ -59,6 +62,7 @@
 import org.gradle.util.GradleVersion;
 import org.gradle.util.Path;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 
@@ -67,15 +71,28 @@
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    /**
+     * The number of threads writing the files unpacked from build cache entries.
+     *
+     * Unpacking writes all files on the unpacking thread when less than two threads are configured, which is the default.
+     */
+    public static final String UNPACK_PARALLELISM_PROPERTY = "org.gradle.caching.unpack.parallelism";
+
     @Override
-    public void registerBuildTreeServices(ServiceRegistration registration) {
+    public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
-            RootBuildCacheControllerRef createRootBuildCacheControllerRef() {
-                return new RootBuildCacheControllerRef();
+            UnpackFileWriterPool createUnpackFileWriterPool() {
+                return UnpackFileWriterPool.withParallelism(Integer.getInteger(UNPACK_PARALLELISM_PROPERTY, 0));
             }
         });
     }
 
+    @Override
+    public void registerBuildTreeServices(ServiceRegistration registration) {
+        // Created eagerly while the build tree is being set up, which happens in the build operation of the build tree
+        registration.add(RootBuildCacheControllerRef.class, new RootBuildCacheControllerRef(CurrentBuildOperationRef.instance().get()));
+    }
+
     @Override
     public void registerBuildServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -117,10 +134,11 @@ BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                UnpackFileWriterPool fileWriterPool
             ) {
                 return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, fileWriterPool));
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -151,7 +169,7 @@ BuildCacheController createBuildCacheController(
                 StringInterner stringInterner
             ) {
                 if (isRoot(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner);
+                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner, rootControllerRef.getBuildTreeOperation());
                 } else {
                     // must be an included build or buildSrc
                     return rootControllerRef.getForNonRootBuild();
@@ -174,7 +192,7 @@ private boolean isRoot(GradleInternal gradle) {
             private BuildCacheController doCreateBuildCacheController(
                 ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory,
                 GradleInternal gradle, TemporaryFileProvider temporaryFileProvider, FileSystemAccess fileSystemAccess, BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner, @Nullable BuildOperationRef buildTreeOperation
             ) {
                 StartParameter startParameter = gradle.getStartParameter();
                 Path buildIdentityPath = gradle.getIdentityPath();
@@ -196,7 +214,8 @@ private BuildCacheController doCreateBuildCacheController(
                     fileSystemAccess,
                     packer,
                     originMetadataFactory,
-                    stringInterner
+                    stringInterner,
+                    buildTreeOperation
                 );
             }
         });
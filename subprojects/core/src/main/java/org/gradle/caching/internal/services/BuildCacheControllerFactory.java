@@ -39,6 +39,7 @@
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
 import org.gradle.internal.operations.CallableBuildOperation;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.vfs.FileSystemAccess;
@@ -56,6 +57,24 @@ public final class BuildCacheControllerFactory {
 
     public static final String REMOTE_CONTINUE_ON_ERROR_PROPERTY = "org.gradle.unsafe.build-cache.remote-continue-on-error";
 
+    /**
+     * The number of entries uploaded to the remote build cache in the background at the same time.
+     *
+     * Entries are uploaded synchronously, after packing them, unless this is set to a positive number.
+     * Entries waiting to be uploaded are queued on disk, and storing an entry waits when the queue is full.
+     * The build waits for the queued uploads to finish at the end.
+     */
+    public static final String REMOTE_ASYNC_UPLOAD_PARALLELISM_PROPERTY = "org.gradle.unsafe.build-cache.remote-async-upload-parallelism";
+
+    /**
+     * Whether entries are uploaded to the remote build cache in the background on virtual threads instead of a pool of {@link #REMOTE_ASYNC_UPLOAD_PARALLELISM_PROPERTY} platform threads.
+     *
+     * Each queued entry is then uploaded on its own virtual thread, so the number of uploads running at the same time is only bounded by the size of the queue,
+     * which holds at most eight entries per thread of the upload parallelism.
+     * Platform threads are used when the daemon runs on a JVM without support for virtual threads.
+     */
+    public static final String REMOTE_ASYNC_UPLOAD_VIRTUAL_THREADS_PROPERTY = "org.gradle.unsafe.build-cache.remote-async-upload-virtual-threads";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
     public enum BuildCacheMode {
@@ -79,7 +98,8 @@ public static BuildCacheController create(
         final FileSystemAccess fileSystemAccess,
         final BuildCacheEntryPacker packer,
         final OriginMetadataFactory originMetadataFactory,
-        final StringInterner stringInterner
+        final StringInterner stringInterner,
+        @Nullable final BuildOperationRef uploadParentOperation
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -135,7 +155,10 @@ public BuildCacheController call(BuildOperationContext context) {
                         fileSystemAccess,
                         packer,
                         originMetadataFactory,
-                        stringInterner
+                        stringInterner,
+                        Integer.getInteger(REMOTE_ASYNC_UPLOAD_PARALLELISM_PROPERTY, 0),
+                        Boolean.getBoolean(REMOTE_ASYNC_UPLOAD_VIRTUAL_THREADS_PROPERTY),
+                        uploadParentOperation
                     );
                 }
             }
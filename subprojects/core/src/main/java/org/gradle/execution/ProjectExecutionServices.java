@@ -39,6 +39,8 @@
 import org.gradle.execution.plan.MissingTaskDependencyDetector;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
 import org.gradle.execution.taskgraph.TaskListenerInternal;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.ExecutionEngine;
@@ -64,6 +66,10 @@
 
 @SuppressWarnings("deprecation")
 public class ProjectExecutionServices extends DefaultServiceRegistry {
+    /**
+     * When set, the input file properties of a task are fingerprinted concurrently on the build operation worker threads.
+     */
+    public static final InternalFlag PARALLEL_INPUT_FINGERPRINTING = new InternalFlag("org.gradle.internal.execution.parallel-input-fingerprinting");
 
     public ProjectExecutionServices(ProjectInternal project) {
         super("Configured project services for '" + project.getPath() + "'", project.getServices());
@@ -146,7 +152,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
             resourceSnapshotterCacheService,
             inputNormalizationHandler.getRuntimeClasspath().getClasspathResourceFilter(),
             inputNormalizationHandler.getRuntimeClasspath().getManifestAttributeResourceEntryFilter(),
-            inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters()
+            inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters(),
+            inputNormalizationHandler.getRuntimeClasspath().isUsingArchiveEntryChecksums()
         );
     }
 
@@ -157,9 +164,16 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Fi
     InputFingerprinter createInputFingerprinter(
         FileCollectionSnapshotter snapshotter,
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
-        ValueSnapshotter valueSnapshotter
+        ValueSnapshotter valueSnapshotter,
+        BuildOperationExecutor buildOperationExecutor,
+        InternalOptions internalOptions
     ) {
-        return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter);
+        return new DefaultInputFingerprinter(
+            snapshotter,
+            fingerprinterRegistry,
+            valueSnapshotter,
+            internalOptions.getOption(PARALLEL_INPUT_FINGERPRINTING).get() ? buildOperationExecutor : null
+        );
     }
 
     TaskExecutionModeResolver createExecutionModeResolver(
@@ -21,6 +21,7 @@
 import org.gradle.api.Action;
 import org.gradle.api.BuildCancelledException;
 import org.gradle.api.NonNullApi;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.internal.MutableBoolean;
 import org.gradle.internal.Pair;
 import org.gradle.internal.resources.ResourceLock;
@@ -40,6 +41,7 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -67,7 +69,9 @@ public int compare(Node node1, Node node2) {
     };
 
     private final Set<Node> waitingToStartNodes = new HashSet<>();
-    private final ExecutionQueue readyNodes = new ExecutionQueue();
+    private final ExecutionQueue readyNodes;
+    // Ready nodes whose project is locked by another thread. They are added back to the ready queue when the lock is released, instead of being scanned over by each selection
+    private final SetMultimap<ResourceLock, Node> readyNodesWaitingForProjectLock = LinkedHashMultimap.create();
     private final List<Throwable> failures = new ArrayList<>();
     private final String displayName;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
@@ -83,6 +87,10 @@ public int compare(Node node1, Node node2) {
     private final Map<Pair<Node, Node>, Boolean> reachableCache = new HashMap<>();
     private final OrdinalNodeAccess ordinalNodeAccess;
     private final Consumer<LocalTaskNode> completionHandler;
+    private final TaskDurationHistory durationHistory;
+    // The expected duration of the longest path from each node to the end of the plan, when scheduling by task duration history
+    private final Map<Node, Long> remainingDurations = new HashMap<>();
+    private final Map<Node, Long> startTimes = new HashMap<>();
 
     // When true, there may be nodes that are both ready and "selectable", which means their project and resources are able to be locked
     // When false, there are definitely no nodes that are "selectable"
@@ -99,7 +107,8 @@ public DefaultFinalizedExecutionPlan(
         List<Node> scheduledNodes,
         boolean continueOnFailure,
         QueryableExecutionPlan contents,
-        Consumer<LocalTaskNode> completionHandler
+        Consumer<LocalTaskNode> completionHandler,
+        TaskDurationHistory durationHistory
     ) {
         this.displayName = displayName;
         this.outputHierarchy = outputHierarchy;
@@ -109,6 +118,14 @@ public DefaultFinalizedExecutionPlan(
         this.continueOnFailure = continueOnFailure;
         this.contents = contents;
         this.completionHandler = completionHandler;
+        this.durationHistory = durationHistory;
+
+        if (durationHistory != TaskDurationHistory.NONE) {
+            calculateRemainingDurations(scheduledNodes);
+            this.readyNodes = new ExecutionQueue(longestRemainingDurationFirst(remainingDurations));
+        } else {
+            this.readyNodes = new ExecutionQueue(NODE_EXECUTION_ORDER);
+        }
 
         SetMultimap<FinalizerGroup, FinalizerGroup> reachableGroups = LinkedHashMultimap.create();
         for (Node node : scheduledNodes) {
@@ -130,6 +147,46 @@ public DefaultFinalizedExecutionPlan(
         lockCoordinator.addLockReleaseListener(resourceUnlockListener);
     }
 
+    /**
+     * Calculates the expected duration of the longest path from each node through the nodes that depend on it.
+     * The scheduled nodes are ordered so that the nodes that depend on a node come after it.
+     */
+    private void calculateRemainingDurations(List<Node> scheduledNodes) {
+        for (int i = scheduledNodes.size() - 1; i >= 0; i--) {
+            Node node = scheduledNodes.get(i);
+            long longestDependentDuration = 0;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                longestDependentDuration = Math.max(longestDependentDuration, remainingDurations.getOrDefault(dependent, 0L));
+            }
+            long duration = node instanceof LocalTaskNode
+                ? durationHistory.getExpectedDurationMillis((LocalTaskNode) node)
+                : 0;
+            remainingDurations.put(node, duration + longestDependentDuration);
+        }
+    }
+
+    private static Comparator<Node> longestRemainingDurationFirst(Map<Node, Long> remainingDurations) {
+        return (node1, node2) -> {
+            if (node1.isPriority() == node2.isPriority()) {
+                int result = Long.compare(remainingDurations.getOrDefault(node2, 0L), remainingDurations.getOrDefault(node1, 0L));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return NODE_EXECUTION_ORDER.compare(node1, node2);
+        };
+    }
+
+    /**
+     * Nodes added to the plan while executing it are scheduled like the node they were added for.
+     */
+    private void inheritRemainingDuration(Node node, Node addedNode) {
+        Long remainingDuration = remainingDurations.get(node);
+        if (remainingDuration != null) {
+            remainingDurations.putIfAbsent(addedNode, remainingDuration);
+        }
+    }
+
     @Override
     public String getDisplayName() {
         return displayName;
@@ -150,12 +207,24 @@ public void close() {
         lockCoordinator.removeLockReleaseListener(resourceUnlockListener);
         waitingToStartNodes.clear();
         readyNodes.clear();
+        readyNodesWaitingForProjectLock.clear();
+        remainingDurations.clear();
+        startTimes.clear();
         runningNodes.clear();
         reachableCache.clear();
     }
 
     private void resourceUnlocked(ResourceLock resourceLock) {
-        if (!(resourceLock instanceof WorkerLeaseRegistry.WorkerLease) && !readyNodes.isEmpty()) {
+        if (resourceLock instanceof WorkerLeaseRegistry.WorkerLease) {
+            return;
+        }
+        for (Node node : readyNodesWaitingForProjectLock.removeAll(resourceLock)) {
+            // The node may have been started, cancelled or given new dependencies in the meantime
+            if (node.isReady() && node.allDependenciesComplete()) {
+                readyNodes.insert(node);
+            }
+        }
+        if (!readyNodes.isEmpty()) {
             maybeNodesSelectable = true;
         }
     }
@@ -255,6 +324,7 @@ public Selection<Node> selectNext() {
                     // The node is ready to execute and its pre-execution nodes have not been scheduled, so do this now
                     node.visitPreExecutionNodes(prepareNode -> {
                         prepareNode.setIndex(node.getIndex());
+                        inheritRemainingDuration(node, prepareNode);
                         prepareNode.require();
                         prepareNode.updateAllDependenciesComplete();
                         node.addDependencySuccessor(prepareNode);
@@ -269,6 +339,13 @@ public Selection<Node> selectNext() {
                 }
 
                 // Node is ready to execute and all dependencies and pre-execution nodes have completed
+                ResourceLock projectLock = node.getProjectToLock();
+                if (projectLock != null && projectLock.isLocked() && !projectLock.isLockedByCurrentThread()) {
+                    // Cannot start until the project lock is released, so stop considering the node until then
+                    readyNodes.remove();
+                    readyNodesWaitingForProjectLock.put(projectLock, node);
+                    continue;
+                }
                 if (attemptToStart(node, resources)) {
                     readyNodes.remove();
                     waitingToStartNodes.remove(node);
@@ -501,6 +578,17 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (durationHistory != TaskDurationHistory.NONE && node instanceof LocalTaskNode) {
+            startTimes.put(node, System.nanoTime());
+        }
+    }
+
+    private void recordNodeDuration(Node node) {
+        Long startTime = startTimes.remove(node);
+        // Up-to-date, cached or skipped executions say nothing about how long the task takes to run
+        if (startTime != null && !node.isFailed() && ((LocalTaskNode) node).getTask().getState().getOutcome() == TaskExecutionOutcome.EXECUTED) {
+            durationHistory.recordDuration((LocalTaskNode) node, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
     }
 
     private void recordNodeCompleted(Node node) {
@@ -555,6 +643,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
             }
 
             node.finishExecution(this::recordNodeCompleted);
+            recordNodeDuration(node);
             if (node.isFailed()) {
                 LOGGER.debug("Node {} failed", node);
                 handleFailure(node);
@@ -562,6 +651,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                 LOGGER.debug("Node {} finished executing", node);
                 node.visitPostExecutionNodes(postNode -> {
                     postNode.setIndex(node.getIndex());
+                    inheritRemainingDuration(node, postNode);
                     postNode.require();
                     postNode.updateAllDependenciesComplete();
                     addNodeToPlan(postNode);
@@ -570,6 +660,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                         predecessor.forceAllDependenciesCompleteUpdate();
                         if (!predecessor.allDependenciesComplete()) {
                             readyNodes.removeAndRestart(predecessor);
+                            readyNodesWaitingForProjectLock.values().remove(predecessor);
                         }
                     }
                 });
@@ -656,12 +747,16 @@ public boolean allExecutionComplete() {
     }
 
     /**
-     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER}.
+     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER} or by the longest remaining duration.
      */
     static class ExecutionQueue {
-        private final Set<Node> nodes = new TreeSet<>(NODE_EXECUTION_ORDER);
+        private final Set<Node> nodes;
         private Iterator<Node> current;
 
+        public ExecutionQueue(Comparator<Node> order) {
+            this.nodes = new TreeSet<>(order);
+        }
+
         public void clear() {
             nodes.clear();
             current = null;
@@ -61,6 +61,8 @@
 @NonNullApi
 public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
     public static final InternalFlag STATS = new InternalFlag("org.gradle.internal.executor.stats");
+    // Admits tasks that declare their expected memory usage only when enough of the free memory at the start of the build is left
+    public static final InternalFlag MEMORY_AWARE_SCHEDULING = new InternalFlag("org.gradle.internal.executor.memory-aware-scheduling");
     private static final Logger LOGGER = Logging.getLogger(DefaultPlanExecutor.class);
     private final int executorCount;
     private final WorkerLeaseService workerLeaseService;
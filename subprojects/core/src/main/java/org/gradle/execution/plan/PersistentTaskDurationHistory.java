@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.scopes.ScopedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Keeps the durations of tasks by their identity path in a file in the build scoped cache.
+ *
+ * The history is read when the build starts and written when the build finishes.
+ * Only the durations of tasks which executed their actions are recorded.
+ * The expected duration of a task is the average of its previous expected duration and its latest duration,
+ * so that a single slow or fast execution does not change the schedule too much.
+ */
+public class PersistentTaskDurationHistory implements TaskDurationHistory, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentTaskDurationHistory.class);
+    private static final int FORMAT_VERSION = 1;
+
+    private final PersistentCache cache;
+    private final File historyFile;
+    private final Map<String, Long> expectedDurations;
+    private final Map<String, Long> recordedDurations = new ConcurrentHashMap<>();
+
+    public PersistentTaskDurationHistory(ScopedCache cacheRepository) {
+        this.cache = cacheRepository
+            .cache("taskDurations")
+            .withDisplayName("task duration history")
+            .withLockOptions(mode(FileLockManager.LockMode.OnDemand))
+            .open();
+        this.historyFile = new File(cache.getBaseDir(), "taskDurations.bin");
+        this.expectedDurations = cache.withFileLock(this::readHistory);
+    }
+
+    @Override
+    public long getExpectedDurationMillis(LocalTaskNode node) {
+        return expectedDurations.getOrDefault(pathOf(node), 0L);
+    }
+
+    @Override
+    public void recordDuration(LocalTaskNode node, long durationMillis) {
+        recordedDurations.put(pathOf(node), durationMillis);
+    }
+
+    private static String pathOf(LocalTaskNode node) {
+        return node.getTask().getIdentityPath().getPath();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!recordedDurations.isEmpty()) {
+                cache.withFileLock(this::writeHistory);
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    private Map<String, Long> readHistory() {
+        Map<String, Long> durations = new HashMap<>();
+        if (!historyFile.isFile()) {
+            return durations;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(historyFile)))) {
+            if (input.readInt() != FORMAT_VERSION) {
+                return durations;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = input.readUTF();
+                durations.put(path, input.readLong());
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read task duration history from {}, ignoring it.", historyFile, e);
+            durations.clear();
+        }
+        return durations;
+    }
+
+    private void writeHistory() {
+        // Merge with the history written by other builds in the meantime
+        Map<String, Long> durations = readHistory();
+        recordedDurations.forEach((path, duration) -> {
+            durations.merge(path, duration, (previousDuration, latestDuration) -> (previousDuration + latestDuration) / 2);
+        });
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(historyFile)))) {
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(durations.size());
+            for (Map.Entry<String, Long> entry : durations.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue());
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not write task duration history to {}.", historyFile, e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+/**
+ * The durations of the tasks of previous builds, used to start the tasks on the longest remaining path through the plan first.
+ */
+public interface TaskDurationHistory {
+    /**
+     * Keeps no history, so that nodes are started in plan order.
+     */
+    TaskDurationHistory NONE = new TaskDurationHistory() {
+        @Override
+        public long getExpectedDurationMillis(LocalTaskNode node) {
+            return 0;
+        }
+
+        @Override
+        public void recordDuration(LocalTaskNode node, long durationMillis) {
+        }
+    };
+
+    /**
+     * Returns how long the given task is expected to take, or 0 when it has not been executed before.
+     */
+    long getExpectedDurationMillis(LocalTaskNode node);
+
+    /**
+     * Records how long the given task took to execute its actions.
+     */
+    void recordDuration(LocalTaskNode node, long durationMillis);
+}
@@ -39,9 +39,12 @@
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.DefaultListenerManager;
 import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.resources.MemoryLeaseRegistry;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.PluginServiceRegistry;
 import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.process.internal.health.memory.OsMemoryInfo;
 
 import java.util.List;
 
@@ -79,6 +82,11 @@ protected InternalOptions createInternalOptions(StartParameter startParameter) {
         return new DefaultInternalOptions(startParameter.getSystemPropertiesArgs());
     }
 
+    protected MemoryLeaseRegistry createMemoryLeaseRegistry(ResourceLockCoordinationService coordinationService, OsMemoryInfo osMemoryInfo) {
+        // Only used when memory aware scheduling is enabled, so the free memory is only queried then
+        return new MemoryLeaseRegistry(coordinationService, osMemoryInfo.getOsSnapshot().getFreePhysicalMemory());
+    }
+
     protected TaskSelector createTaskSelector(ProjectConfigurer projectConfigurer) {
         return new DefaultTaskSelector(new TaskNameResolver(), projectConfigurer);
     }
@@ -39,6 +39,19 @@ public DefaultClasspathFingerprinter(
         Map<String, ResourceEntryFilter> propertiesFileFilters,
         StringInterner stringInterner,
         LineEndingSensitivity lineEndingSensitivity
+    ) {
+        this(cacheService, fileCollectionSnapshotter, classpathResourceFilter, manifestAttributeResourceEntryFilter, propertiesFileFilters, stringInterner, lineEndingSensitivity, false);
+    }
+
+    public DefaultClasspathFingerprinter(
+        ResourceSnapshotterCacheService cacheService,
+        FileCollectionSnapshotter fileCollectionSnapshotter,
+        ResourceFilter classpathResourceFilter,
+        ResourceEntryFilter manifestAttributeResourceEntryFilter,
+        Map<String, ResourceEntryFilter> propertiesFileFilters,
+        StringInterner stringInterner,
+        LineEndingSensitivity lineEndingSensitivity,
+        boolean useArchiveEntryChecksums
     ) {
         super(
             ClasspathFingerprintingStrategy.runtimeClasspath(
@@ -48,7 +61,8 @@ public DefaultClasspathFingerprinter(
                 new RuntimeClasspathResourceHasher(),
                 cacheService,
                 stringInterner,
-                lineEndingSensitivity
+                lineEndingSensitivity,
+                useArchiveEntryChecksums
             ),
             fileCollectionSnapshotter
         );
@@ -43,50 +43,66 @@ public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, Stat
 
     @Override
     public Result snapshot(FileCollection fileCollection) {
-        SnapshottingVisitor visitor = new SnapshottingVisitor();
+        return resolveRoots(fileCollection).snapshot();
+    }
+
+    @Override
+    public ResolvedRoots resolveRoots(FileCollection fileCollection) {
+        RootsCollectingVisitor visitor = new RootsCollectingVisitor();
         ((FileCollectionInternal) fileCollection).visitStructure(visitor);
-        FileSystemSnapshot snapshot = CompositeFileSystemSnapshot.of(visitor.getRoots());
+        List<Root> roots = visitor.getRoots();
         boolean containsArchiveTrees = visitor.containsArchiveTrees();
-        return new Result() {
-            @Override
-            public FileSystemSnapshot getSnapshot() {
-                return snapshot;
+        return () -> {
+            List<FileSystemSnapshot> snapshots = new ArrayList<>(roots.size());
+            for (Root root : roots) {
+                root.snapshot(snapshots);
             }
+            FileSystemSnapshot snapshot = CompositeFileSystemSnapshot.of(snapshots);
+            return new Result() {
+                @Override
+                public FileSystemSnapshot getSnapshot() {
+                    return snapshot;
+                }
 
-            @Override
-            public boolean containsArchiveTrees() {
-                return containsArchiveTrees;
-            }
+                @Override
+                public boolean containsArchiveTrees() {
+                    return containsArchiveTrees;
+                }
+            };
         };
     }
 
-    private class SnapshottingVisitor implements FileCollectionStructureVisitor {
-        private final List<FileSystemSnapshot> roots = new ArrayList<>();
+    private interface Root {
+        void snapshot(List<FileSystemSnapshot> snapshots);
+    }
+
+    private class RootsCollectingVisitor implements FileCollectionStructureVisitor {
+        private final List<Root> roots = new ArrayList<>();
         private boolean containsArchiveTrees;
 
         @Override
         public void visitCollection(FileCollectionInternal.Source source, Iterable<File> contents) {
             for (File file : contents) {
-                roots.add(fileSystemAccess.read(file.getAbsolutePath()));
+                String absolutePath = file.getAbsolutePath();
+                roots.add(snapshots -> snapshots.add(fileSystemAccess.read(absolutePath)));
             }
         }
 
         @Override
         public void visitFileTree(File root, PatternSet patterns, FileTreeInternal fileTree) {
-            fileSystemAccess.read(
-                root.getAbsolutePath(),
-                new PatternSetSnapshottingFilter(patterns, stat)
-            )
-                .map(roots::add);
+            String absolutePath = root.getAbsolutePath();
+            PatternSetSnapshottingFilter filter = new PatternSetSnapshottingFilter(patterns, stat);
+            roots.add(snapshots -> fileSystemAccess.read(absolutePath, filter).map(snapshots::add));
         }
 
         @Override
         public void visitFileTreeBackedByFile(File file, FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            roots.add(fileSystemAccess.read(file.getAbsolutePath()));
+            String absolutePath = file.getAbsolutePath();
+            roots.add(snapshots -> snapshots.add(fileSystemAccess.read(absolutePath)));
             containsArchiveTrees = true;
         }
 
-        public List<FileSystemSnapshot> getRoots() {
+        public List<Root> getRoots() {
             return roots;
         }
 
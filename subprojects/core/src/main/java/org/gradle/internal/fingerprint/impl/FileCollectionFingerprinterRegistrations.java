@@ -53,8 +53,19 @@ public FileCollectionFingerprinterRegistrations(
         ResourceFilter resourceFilter,
         ResourceEntryFilter metaInfFilter,
         Map<String, ResourceEntryFilter> propertiesFileFilters
-        ) {
+    ) {
+        this(stringInterner, fileCollectionSnapshotter, resourceSnapshotterCacheService, resourceFilter, metaInfFilter, propertiesFileFilters, false);
+    }
 
+    public FileCollectionFingerprinterRegistrations(
+        StringInterner stringInterner,
+        FileCollectionSnapshotter fileCollectionSnapshotter,
+        ResourceSnapshotterCacheService resourceSnapshotterCacheService,
+        ResourceFilter resourceFilter,
+        ResourceEntryFilter metaInfFilter,
+        Map<String, ResourceEntryFilter> propertiesFileFilters,
+        boolean useArchiveEntryChecksums
+    ) {
         List<? extends FileCollectionFingerprinter> insensitiveFingerprinters = insensitiveFingerprinters(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner);
         this.registrants =
             withAllLineEndingSensitivities(lineEndingSensitivity -> {
@@ -68,6 +79,7 @@ public FileCollectionFingerprinterRegistrations(
                     resourceFilter,
                     metaInfFilter,
                     propertiesFileFilters,
+                    useArchiveEntryChecksums,
                     stringInterner
                 );
 
@@ -117,6 +129,7 @@ private static List<? extends FileCollectionFingerprinter> directoryInsensitiveF
         ResourceFilter resourceFilter,
         ResourceEntryFilter metaInfFilter,
         Map<String, ResourceEntryFilter> propertiesFileFilters,
+        boolean useArchiveEntryChecksums,
         StringInterner stringInterner
     ) {
         return Lists.newArrayList(
@@ -128,7 +141,8 @@ private static List<? extends FileCollectionFingerprinter> directoryInsensitiveF
                 metaInfFilter,
                 propertiesFileFilters,
                 stringInterner,
-                lineEndingSensitivity
+                lineEndingSensitivity,
+                useArchiveEntryChecksums
             )
         );
     }
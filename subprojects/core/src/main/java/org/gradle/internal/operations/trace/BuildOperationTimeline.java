@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations.trace;
+
+import org.gradle.StartParameter;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.BuildOperationListenerManager;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.operations.OperationStartEvent;
+import org.gradle.util.internal.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a timeline of the build operations of a build in the Chrome Trace Event format,
+ * which can be opened with Perfetto (https://ui.perfetto.dev) or chrome://tracing.
+ * Can be enabled for any build with `-Dorg.gradle.internal.operations.timeline=«path-base»`.
+ *
+ * Imposes no overhead when not enabled.
+ *
+ * The timeline is written to «path-base»-timeline.json.
+ * Each build operation is shown as a slice on the thread it started on, so the gaps between operations on
+ * the worker threads and the time spent waiting for locks or the build cache become visible.
+ *
+ * The events are streamed to the file as operations finish, so only the operations currently running are kept in memory.
+ * The file is a JSON array, which is closed when the build session finishes.
+ * Should the build not get that far, the timeline can still be opened, as the format allows the array to be left open.
+ *
+ * The «path-base» param is optional.
+ * If invoked as `-Dorg.gradle.internal.operations.timeline`, a base value of "operations" will be used.
+ *
+ * Unlike {@link BuildOperationTrace}, the details and results of the operations are not recorded.
+ */
+public class BuildOperationTimeline implements Stoppable {
+
+    public static final String SYSPROP = "org.gradle.internal.operations.timeline";
+
+    private static final int PROCESS_ID = 1;
+
+    private final BuildOperationListenerManager buildOperationListenerManager;
+    private final Writer writer;
+    private final long startNanos = System.nanoTime();
+    private final Map<OperationIdentifier, RunningOperation> runningOperations = new ConcurrentHashMap<>();
+    private final Set<Long> seenThreads = ConcurrentHashMap.newKeySet();
+    private boolean firstEvent = true;
+
+    private final BuildOperationListener listener = new BuildOperationListener() {
+        @Override
+        public void started(BuildOperationDescriptor buildOperation, OperationStartEvent startEvent) {
+            Thread thread = Thread.currentThread();
+            long threadId = thread.getId();
+            if (seenThreads.add(threadId)) {
+                writeThreadName(threadId, thread.getName());
+            }
+            runningOperations.put(buildOperation.getId(), new RunningOperation(threadId, currentMicros()));
+        }
+
+        @Override
+        public void progress(OperationIdentifier buildOperationId, OperationProgressEvent progressEvent) {
+        }
+
+        @Override
+        public void finished(BuildOperationDescriptor buildOperation, OperationFinishEvent finishEvent) {
+            RunningOperation operation = runningOperations.remove(buildOperation.getId());
+            if (operation != null) {
+                writeOperation(buildOperation, operation, currentMicros() - operation.startMicros, finishEvent.getFailure() != null);
+            }
+        }
+    };
+
+    public BuildOperationTimeline(StartParameter startParameter, BuildOperationListenerManager buildOperationListenerManager) {
+        this.buildOperationListenerManager = buildOperationListenerManager;
+
+        String basePath = startParameter.getSystemPropertiesArgs().get(SYSPROP);
+        if (basePath == null) {
+            basePath = System.getProperty(SYSPROP);
+        }
+        if (basePath == null || basePath.equals(Boolean.FALSE.toString())) {
+            this.writer = null;
+            return;
+        }
+
+        try {
+            File timelineFile = new File((basePath.trim().isEmpty() ? "operations" : basePath) + "-timeline.json").getAbsoluteFile();
+            GFileUtils.mkdirs(timelineFile.getParentFile());
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(timelineFile), StandardCharsets.UTF_8));
+            writer.write("[");
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+
+        buildOperationListenerManager.addListener(listener);
+    }
+
+    @Override
+    public void stop() {
+        buildOperationListenerManager.removeListener(listener);
+        if (writer != null) {
+            try {
+                synchronized (writer) {
+                    writer.write("\n]\n");
+                    writer.close();
+                }
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    private long currentMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    private void writeThreadName(long threadId, String threadName) {
+        StringBuilder event = new StringBuilder(128);
+        event.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":").append(PROCESS_ID)
+            .append(",\"tid\":").append(threadId)
+            .append(",\"args\":{\"name\":");
+        appendString(event, threadName);
+        event.append("}}");
+        write(event);
+    }
+
+    private void writeOperation(BuildOperationDescriptor buildOperation, RunningOperation operation, long durationMicros, boolean failed) {
+        StringBuilder event = new StringBuilder(256);
+        event.append("{\"name\":");
+        appendString(event, buildOperation.getDisplayName());
+        event.append(",\"cat\":");
+        appendString(event, category(buildOperation.getDetails()));
+        event.append(",\"ph\":\"X\",\"ts\":").append(operation.startMicros)
+            .append(",\"dur\":").append(durationMicros)
+            .append(",\"pid\":").append(PROCESS_ID)
+            .append(",\"tid\":").append(operation.threadId)
+            .append(",\"args\":{\"id\":").append(buildOperation.getId().getId());
+        OperationIdentifier parentId = buildOperation.getParentId();
+        if (parentId != null) {
+            event.append(",\"parentId\":").append(parentId.getId());
+        }
+        if (failed) {
+            event.append(",\"failed\":true");
+        }
+        event.append("}}");
+        write(event);
+    }
+
+    private void write(CharSequence event) {
+        try {
+            synchronized (writer) {
+                if (firstEvent) {
+                    firstEvent = false;
+                } else {
+                    writer.write(",");
+                }
+                writer.write("\n");
+                writer.append(event);
+            }
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static String category(@Nullable Object details) {
+        if (details == null) {
+            return "operation";
+        }
+        Class<?> detailsType = details.getClass();
+        return detailsType.getSimpleName().isEmpty() ? detailsType.getName() : detailsType.getSimpleName();
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+    private static class RunningOperation {
+        final long threadId;
+        final long startMicros;
+
+        RunningOperation(long threadId, long startMicros) {
+            this.threadId = threadId;
+            this.startMicros = startMicros;
+        }
+    }
+}
@@ -25,6 +25,9 @@
 import org.gradle.cache.scopes.BuildScopedCache;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
@@ -40,6 +43,7 @@
 import org.gradle.internal.execution.history.changes.ExecutionStateChangeDetector;
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultOutputFilesRepository;
+import org.gradle.internal.execution.history.impl.LogStructuredExecutionHistoryStore;
 import org.gradle.internal.execution.impl.DefaultExecutionEngine;
 import org.gradle.internal.execution.steps.AssignWorkspaceStep;
 import org.gradle.internal.execution.steps.BuildCacheStep;
@@ -60,6 +64,7 @@
 import org.gradle.internal.execution.steps.ResolveInputChangesStep;
 import org.gradle.internal.execution.steps.SkipEmptyWorkStep;
 import org.gradle.internal.execution.steps.SkipUpToDateStep;
+import org.gradle.internal.execution.steps.StepTimings;
 import org.gradle.internal.execution.steps.StoreExecutionStateStep;
 import org.gradle.internal.execution.steps.TimeoutStep;
 import org.gradle.internal.execution.steps.ValidateStep;
@@ -68,7 +73,9 @@
 import org.gradle.internal.execution.timeout.TimeoutHandler;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.LargeFileHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationProgressEventEmitter;
 import org.gradle.internal.operations.CurrentBuildOperationRef;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.SharedResourceLeaseRegistry;
@@ -82,16 +89,32 @@
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class ExecutionGradleServices {
-    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCache cacheRepository) {
-        return new DefaultExecutionHistoryCacheAccess(cacheRepository);
-    }
+    /**
+     * When set, the execution history is kept in an append-only log with an in-memory index instead of an indexed cache.
+     * The system property is read when the daemon starts.
+     */
+    public static final String LOG_STRUCTURED_EXECUTION_HISTORY_PROPERTY = "org.gradle.internal.execution.history.log-structured";
 
-    ExecutionHistoryStore createExecutionHistoryStore(
+    /**
+     * When set, the time spent in each step of the execution engine is measured, reported for each unit of work and summarized at the end of the build.
+     */
+    public static final InternalFlag STEP_TIMINGS = new InternalFlag("org.gradle.internal.execution.step-timings");
+
+    public static ExecutionHistoryStore createDefaultExecutionHistoryStore(
         ExecutionHistoryCacheAccess executionHistoryCacheAccess,
         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
         StringInterner stringInterner,
-        ClassLoaderHierarchyHasher classLoaderHasher
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        ExecutorFactory executorFactory
     ) {
+        if (Boolean.getBoolean(LOG_STRUCTURED_EXECUTION_HISTORY_PROPERTY)) {
+            return new LogStructuredExecutionHistoryStore(
+                executionHistoryCacheAccess,
+                stringInterner,
+                classLoaderHasher,
+                executorFactory
+            );
+        }
         return new DefaultExecutionHistoryStore(
             executionHistoryCacheAccess,
             inMemoryCacheDecoratorFactory,
@@ -100,6 +123,26 @@ ExecutionHistoryStore createExecutionHistoryStore(
         );
     }
 
+    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCache cacheRepository, LargeFileHasher largeFileHasher) {
+        return new DefaultExecutionHistoryCacheAccess(cacheRepository, largeFileHasher.getContentHashIdentifier());
+    }
+
+    ExecutionHistoryStore createExecutionHistoryStore(
+        ExecutionHistoryCacheAccess executionHistoryCacheAccess,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
+        StringInterner stringInterner,
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        ExecutorFactory executorFactory
+    ) {
+        return createDefaultExecutionHistoryStore(
+            executionHistoryCacheAccess,
+            inMemoryCacheDecoratorFactory,
+            stringInterner,
+            classLoaderHasher,
+            executorFactory
+        );
+    }
+
     OutputFilesRepository createOutputFilesRepository(BuildScopedCache cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         PersistentCache cacheAccess = cacheRepository
             .crossVersionCache("buildOutputCleanup")
@@ -115,6 +158,12 @@ OutputChangeListener createOutputChangeListener(ListenerManager listenerManager)
         return listenerManager.getBroadcaster(OutputChangeListener.class);
     }
 
+    StepTimings createStepTimings(InternalOptions internalOptions, BuildOperationProgressEventEmitter progressEventEmitter) {
+        return internalOptions.getOption(STEP_TIMINGS).get()
+            ? new StepTimings(progressEventEmitter)
+            : StepTimings.DISABLED;
+    }
+
     public ExecutionEngine createExecutionEngine(
         BuildCacheController buildCacheController,
         BuildCancellationToken cancellationToken,
@@ -133,36 +182,38 @@ public ExecutionEngine createExecutionEngine(
         TimeoutHandler timeoutHandler,
         ValidateStep.ValidationWarningRecorder validationWarningRecorder,
         VirtualFileSystem virtualFileSystem,
-        DocumentationRegistry documentationRegistry
+        DocumentationRegistry documentationRegistry,
+        LargeFileHasher largeFileHasher,
+        StepTimings timings
     ) {
         Supplier<OutputsCleaner> skipEmptyWorkOutputsCleanerSupplier = () -> new OutputsCleaner(deleter, buildOutputCleanupRegistry::isOutputOwnedByBuild, buildOutputCleanupRegistry::isOutputOwnedByBuild);
         // @formatter:off
         return new DefaultExecutionEngine(documentationRegistry,
-            new IdentifyStep<>(
-            new IdentityCacheStep<>(
-            new AssignWorkspaceStep<>(
-            new CleanupStaleOutputsStep<>(buildOperationExecutor, buildOutputCleanupRegistry,  deleter, outputChangeListener, outputFilesRepository,
-            new LoadPreviousExecutionStateStep<>(
-            new MarkSnapshottingInputsStartedStep<>(
-            new RemoveUntrackedExecutionStateStep<>(
-            new SkipEmptyWorkStep(outputChangeListener, workInputListeners, skipEmptyWorkOutputsCleanerSupplier,
-            new CaptureStateBeforeExecutionStep<>(buildOperationExecutor, classLoaderHierarchyHasher, outputSnapshotter, overlappingOutputDetector,
-            new ValidateStep<>(virtualFileSystem, validationWarningRecorder,
-            new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(),
-            new MarkSnapshottingInputsFinishedStep<>(
-            new ResolveChangesStep<>(changeDetector,
-            new SkipUpToDateStep<>(
-            new RecordOutputsStep<>(outputFilesRepository,
-            new StoreExecutionStateStep<>(
-            new BuildCacheStep(buildCacheController, deleter, outputChangeListener,
-            new ResolveInputChangesStep<>(
-            new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildInvocationScopeId.getId(), outputSnapshotter, outputChangeListener,
-            new CreateOutputsStep<>(
-            new TimeoutStep<>(timeoutHandler, currentBuildOperationRef,
-            new CancelExecutionStep<>(cancellationToken,
-            new RemovePreviousOutputsStep<>(deleter, outputChangeListener,
-            new ExecuteStep<>(buildOperationExecutor
-        )))))))))))))))))))))))));
+            timings.timed(new IdentifyStep<>(
+            timings.timed(new IdentityCacheStep<>(
+            timings.timed(new AssignWorkspaceStep<>(
+            timings.timed(new CleanupStaleOutputsStep<>(buildOperationExecutor, buildOutputCleanupRegistry,  deleter, outputChangeListener, outputFilesRepository,
+            timings.timed(new LoadPreviousExecutionStateStep<>(
+            timings.timed(new MarkSnapshottingInputsStartedStep<>(
+            timings.timed(new RemoveUntrackedExecutionStateStep<>(
+            timings.timed(new SkipEmptyWorkStep(outputChangeListener, workInputListeners, skipEmptyWorkOutputsCleanerSupplier,
+            timings.timed(new CaptureStateBeforeExecutionStep<>(buildOperationExecutor, classLoaderHierarchyHasher, outputSnapshotter, overlappingOutputDetector,
+            timings.timed(new ValidateStep<>(virtualFileSystem, validationWarningRecorder,
+            timings.timed(new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(), largeFileHasher.getContentHashIdentifier(),
+            timings.timed(new MarkSnapshottingInputsFinishedStep<>(
+            timings.timed(new ResolveChangesStep<>(changeDetector,
+            timings.timed(new SkipUpToDateStep<>(
+            timings.timed(new RecordOutputsStep<>(outputFilesRepository,
+            timings.timed(new StoreExecutionStateStep<>(
+            timings.timed(new BuildCacheStep(buildCacheController, deleter, outputChangeListener,
+            timings.timed(new ResolveInputChangesStep<>(
+            timings.timed(new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildInvocationScopeId.getId(), outputSnapshotter, outputChangeListener,
+            timings.timed(new CreateOutputsStep<>(
+            timings.timed(new TimeoutStep<>(timeoutHandler, currentBuildOperationRef,
+            timings.timed(new CancelExecutionStep<>(cancellationToken,
+            timings.timed(new RemovePreviousOutputsStep<>(deleter, outputChangeListener,
+            timings.timed(new ExecuteStep<>(buildOperationExecutor
+        )))))))))))))))))))))))))))))))))))))))))))))))));
         // @formatter:on
     }
 
@@ -69,16 +69,21 @@
 import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.LargeFileHasher;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.internal.serialize.MapSerializer;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.snapshot.CaseSensitivity;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
+import org.gradle.internal.snapshot.impl.DirectoryWalkerPool;
 import org.gradle.internal.vfs.FileSystemAccess;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.internal.vfs.impl.DefaultFileSystemAccess;
@@ -89,15 +94,21 @@
 import org.gradle.internal.watch.registry.impl.WindowsFileWatcherRegistryFactory;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.FileChangeListeners;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.DefaultWatchableFileSystemDetector;
+import org.gradle.internal.watch.vfs.impl.FileBasedVirtualFileSystemStateStore;
+import org.gradle.internal.watch.vfs.impl.LeastRecentlyUsedHierarchyEviction;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
 
@@ -116,6 +127,40 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     public static final InternalFlag VFS_DROP_PROPERTY = new InternalFlag("org.gradle.vfs.drop");
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     public static final IntegerInternalOption MAX_HIERARCHIES_TO_WATCH_PROPERTY = new IntegerInternalOption("org.gradle.vfs.watch.hierarchies.max", DEFAULT_MAX_HIERARCHIES_TO_WATCH);
+    /**
+     * The number of threads used to snapshot directory hierarchies in parallel.
+     * Hierarchies are walked sequentially when the value is less than 2, which is the default.
+     * The system property is read when the daemon starts.
+     */
+    public static final String DIRECTORY_WALKER_PARALLELISM_PROPERTY = "org.gradle.vfs.snapshotting.parallelism";
+    /**
+     * Files of at least this many bytes are hashed via memory mapping. Disabled by default.
+     * The system property is read when the daemon starts.
+     */
+    public static final String LARGE_FILE_THRESHOLD_PROPERTY = "org.gradle.internal.hash.large-file.threshold";
+    /**
+     * When set, large files are split into chunks of this many bytes which are hashed in parallel.
+     * The system property is read when the daemon starts.
+     */
+    public static final String LARGE_FILE_CHUNK_SIZE_PROPERTY = "org.gradle.internal.hash.large-file.chunk-size";
+    /**
+     * When file system watching is enabled, this system property makes the daemon persist the virtual file system when it stops,
+     * so the next daemon can start from it instead of snapshotting everything again.
+     * The system property is read when the daemon starts.
+     */
+    public static final String VFS_PERSIST_PROPERTY = "org.gradle.vfs.persist";
+    /**
+     * The number of files, directories and missing files the virtual file system retains between builds.
+     * When exceeded, the least recently used watched hierarchies are dropped at the end of a build. Unlimited by default.
+     * The system property is read when the daemon starts.
+     */
+    public static final String VFS_RETENTION_MAX_ENTRIES_PROPERTY = "org.gradle.vfs.retention.max-entries";
+    /**
+     * When set, the content hashes of the entries in runtime classpath archives are cached persistently,
+     * so a changed runtime classpath normalization doesn't require reading all the archives again.
+     * The system property is read when the daemon starts.
+     */
+    public static final String ZIP_ENTRY_HASH_CACHE_PROPERTY = "org.gradle.internal.fingerprint.zip-entry-cache";
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
     public static boolean isDropVfs(InternalOptions options) {
@@ -126,6 +171,42 @@ public static int getMaximumNumberOfWatchedHierarchies(InternalOptions options)
         return options.getOption(MAX_HIERARCHIES_TO_WATCH_PROPERTY).get();
     }
 
+    /**
+     * Persistent caches storing content hashes are versioned by the content hash algorithm, so hashes created by different algorithms never mix.
+     * The caches for the default algorithm keep their original name.
+     */
+    @VisibleForTesting
+    static String contentHashCacheName(String cacheName, StreamHasher streamHasher) {
+        HashFunction hashFunction = streamHasher.getHashFunction();
+        if (hashFunction == Hashing.defaultFunction()) {
+            return cacheName;
+        }
+        return cacheName + "-" + hashFunction.getAlgorithm().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Chunked hashing of large files produces different hashes, so the file hash cache is versioned by the chunk size, too.
+     */
+    @VisibleForTesting
+    static String fileHashCacheName(String cacheName, LargeFileHasher largeFileHasher) {
+        String contentHashIdentifier = largeFileHasher.getContentHashIdentifier();
+        return contentHashIdentifier == null
+            ? cacheName
+            : cacheName + "-" + contentHashIdentifier;
+    }
+
+    @Nullable
+    private static PersistentIndexedCache<HashCode, Map<HashCode, HashCode>> createZipEntryHashesCache(CrossBuildFileHashCache store, StreamHasher streamHasher, int maxEntriesToKeepInMemory) {
+        if (!Boolean.getBoolean(ZIP_ENTRY_HASH_CACHE_PROPERTY)) {
+            return null;
+        }
+        // Each entry holds the hashes of all entries of one archive
+        return store.createCache(
+            PersistentIndexedCacheParameters.of(contentHashCacheName("archiveEntryHashesCache", streamHasher), HashCode.class, new MapSerializer<>(new HashCodeSerializer(), new HashCodeSerializer())),
+            maxEntriesToKeepInMemory,
+            true);
+    }
+
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new GlobalScopeServices());
@@ -149,6 +230,18 @@ FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
         }
+
+        LargeFileHasher createLargeFileHasher(StreamHasher streamHasher) {
+            Long threshold = Long.getLong(LARGE_FILE_THRESHOLD_PROPERTY);
+            if (threshold == null) {
+                return LargeFileHasher.disabled(streamHasher.getHashFunction());
+            }
+            return new LargeFileHasher(streamHasher.getHashFunction(), threshold, Long.getLong(LARGE_FILE_CHUNK_SIZE_PROPERTY, 0));
+        }
+
+        DirectoryWalkerPool createDirectoryWalkerPool() {
+            return DirectoryWalkerPool.withParallelism(Integer.getInteger(DIRECTORY_WALKER_PARALLELISM_PROPERTY, 0));
+        }
     }
 
     @VisibleForTesting
@@ -164,9 +257,10 @@ FileHasher createCachingFileHasher(
             FileSystem fileSystem,
             GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
             StreamHasher streamHasher,
+            LargeFileHasher largeFileHasher,
             StringInterner stringInterner
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, largeFileHasher), fileStore, stringInterner, fileTimeStampInspector, fileHashCacheName("fileHashes", largeFileHasher), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -191,7 +285,22 @@ WatchableFileSystemDetector createWatchableFileSystemDetector(FileSystems fileSy
             return new DefaultWatchableFileSystemDetector(fileSystems);
         }
 
+        VirtualFileSystemStateStore createVirtualFileSystemStateStore(
+            GlobalScopedCache scopedCache,
+            Stat stat,
+            StringInterner stringInterner,
+            LargeFileHasher largeFileHasher
+        ) {
+            if (!Boolean.getBoolean(VFS_PERSIST_PROPERTY)) {
+                return VirtualFileSystemStateStore.NONE;
+            }
+            // The persisted snapshots contain file hashes, so they are only valid for the same way of hashing files
+            File stateFile = new File(scopedCache.baseDirForCache("vfs"), fileHashCacheName("vfs-state", largeFileHasher) + ".bin");
+            return new FileBasedVirtualFileSystemStateStore(stateFile, stat, stringInterner);
+        }
+
         BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
+            VirtualFileSystemStateStore stateStore,
             LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
             DocumentationRegistry documentationRegistry,
             NativeCapabilities nativeCapabilities,
@@ -217,7 +326,9 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
                     locationsWrittenByCurrentBuild,
                     watchableFileSystemDetector,
-                    fileChangeListeners
+                    fileChangeListeners,
+                    stateStore,
+                    new LeastRecentlyUsedHierarchyEviction(Integer.getInteger(VFS_RETENTION_MAX_ENTRIES_PROPERTY, Integer.MAX_VALUE))
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(root));
             listenerManager.addListener((BuildAddedListener) buildState -> {
@@ -236,7 +347,8 @@ FileSystemAccess createFileSystemAccess(
             ListenerManager listenerManager,
             PatternSpecFactory patternSpecFactory,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            DirectoryWalkerPool directoryWalkerPool
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
                 hasher,
@@ -245,6 +357,7 @@ FileSystemAccess createFileSystemAccess(
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                directoryWalkerPool,
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -298,12 +411,12 @@ FileCollectionSnapshotter createFileCollectionSnapshotter(FileSystemAccess fileS
             return new DefaultFileCollectionSnapshotter(fileSystemAccess, stat);
         }
 
-        ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuildFileHashCache store) {
+        ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuildFileHashCache store, StreamHasher streamHasher) {
             PersistentIndexedCache<HashCode, HashCode> resourceHashesCache = store.createCache(
-                PersistentIndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()),
+                PersistentIndexedCacheParameters.of(contentHashCacheName("resourceHashesCache", streamHasher), HashCode.class, new HashCodeSerializer()),
                 400000,
                 true);
-            return new DefaultResourceSnapshotterCacheService(resourceHashesCache);
+            return new DefaultResourceSnapshotterCacheService(resourceHashesCache, createZipEntryHashesCache(store, streamHasher, 200));
         }
 
         ClasspathFingerprinter createClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
@@ -333,10 +446,11 @@ FileHasher createFileHasher(
             FileHasher globalHasher,
             FileSystem fileSystem,
             StreamHasher streamHasher,
+            LargeFileHasher largeFileHasher,
             StringInterner stringInterner,
             FileHasherStatistics.Collector statisticsCollector
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, largeFileHasher), cacheAccess, stringInterner, fileTimeStampInspector, fileHashCacheName("fileHashes", largeFileHasher), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -347,7 +461,8 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            DirectoryWalkerPool directoryWalkerPool
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -356,6 +471,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                directoryWalkerPool,
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -404,10 +520,11 @@ InputFingerprinter createInputFingerprinter(
         ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             GlobalCacheLocations globalCacheLocations,
             CrossBuildFileHashCache store,
+            StreamHasher streamHasher,
             ResourceSnapshotterCacheService globalCache
         ) {
-            PersistentIndexedCache<HashCode, HashCode> resourceHashesCache = store.createCache(PersistentIndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()), 800000, true);
-            DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache);
+            PersistentIndexedCache<HashCode, HashCode> resourceHashesCache = store.createCache(PersistentIndexedCacheParameters.of(contentHashCacheName("resourceHashesCache", streamHasher), HashCode.class, new HashCodeSerializer()), 800000, true);
+            DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache, createZipEntryHashesCache(store, streamHasher, 400));
             return new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
         }
     }
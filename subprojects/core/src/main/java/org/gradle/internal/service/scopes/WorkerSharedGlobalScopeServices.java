@@ -39,6 +39,7 @@
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.impl.DefaultDeleter;
 import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.logging.events.OutputEventListener;
@@ -67,6 +68,12 @@
 
 public class WorkerSharedGlobalScopeServices extends BasicGlobalScopeServices {
 
+    /**
+     * Selects the hash function used for hashing file contents, e.g. {@code MURMUR3-128}.
+     * Defaults to the default hash function. The property is read once, when the process starts.
+     */
+    public static final String CONTENT_HASH_ALGORITHM_PROPERTY = "org.gradle.internal.hash.content.algorithm";
+
     protected CacheFactory createCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory) {
         return new DefaultCacheFactory(fileLockManager, executorFactory, progressLoggerFactory);
     }
@@ -104,7 +111,10 @@ DefaultFilePropertyFactory createFilePropertyFactory(PropertyHost propertyHost,
     }
 
     StreamHasher createStreamHasher() {
-        return new DefaultStreamHasher();
+        String algorithm = System.getProperty(CONTENT_HASH_ALGORITHM_PROPERTY);
+        return algorithm == null
+            ? new DefaultStreamHasher()
+            : new DefaultStreamHasher(Hashing.forAlgorithm(algorithm));
     }
 
     Deleter createDeleter(Clock clock, FileSystem fileSystem, OperatingSystem os) {
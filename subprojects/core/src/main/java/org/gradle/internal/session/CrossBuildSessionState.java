@@ -39,6 +39,7 @@
 import org.gradle.internal.operations.logging.LoggingBuildOperationProgressBroadcaster;
 import org.gradle.internal.operations.notify.BuildOperationNotificationBridge;
 import org.gradle.internal.operations.notify.BuildOperationNotificationValve;
+import org.gradle.internal.operations.trace.BuildOperationTimeline;
 import org.gradle.internal.operations.trace.BuildOperationTrace;
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
 import org.gradle.internal.service.ServiceRegistration;
@@ -74,6 +75,7 @@ public CrossBuildSessionState(ServiceRegistry parent, StartParameter startParame
             .build();
         // Trigger listener to wire itself in
         services.get(BuildOperationTrace.class);
+        services.get(BuildOperationTimeline.class);
     }
 
     public ServiceRegistry getServices() {
@@ -146,6 +148,10 @@ BuildOperationTrace createBuildOperationTrace(BuildOperationListenerManager buil
             return new BuildOperationTrace(startParameter, buildOperationListenerManager);
         }
 
+        BuildOperationTimeline createBuildOperationTimeline(BuildOperationListenerManager buildOperationListenerManager) {
+            return new BuildOperationTimeline(startParameter, buildOperationListenerManager);
+        }
+
         BuildOperationNotificationBridge createBuildOperationNotificationBridge(BuildOperationListenerManager buildOperationListenerManager, ListenerManager generalListenerManager) {
             return new BuildOperationNotificationBridge(buildOperationListenerManager, generalListenerManager);
         }
@@ -42,6 +42,8 @@ public class DefaultRuntimeClasspathNormalization implements RuntimeClasspathNor
     private final EvaluatableFilter<ResourceFilter> resourceFilter = filter(IgnoringResourceFilter::new, ResourceFilter.FILTER_NOTHING);
     private final EvaluatableFilter<ResourceEntryFilter> manifestAttributeResourceFilter = filter(IgnoringResourceEntryFilter::new, ResourceEntryFilter.FILTER_NOTHING);
     private final DefaultPropertiesFileFilter propertyFileFilters = new DefaultPropertiesFileFilter();
+    private boolean useArchiveEntryChecksums;
+    private boolean archiveEntryChecksumsEvaluated;
 
     @Override
     public void ignore(String pattern) {
@@ -63,6 +65,14 @@ public void properties(Action<? super PropertiesFileNormalization> configuration
         properties(PropertiesFileFilter.ALL_PROPERTIES, configuration);
     }
 
+    @Override
+    public void useArchiveEntryChecksums() {
+        if (archiveEntryChecksumsEvaluated) {
+            throw new GradleException("Cannot configure runtime classpath normalization after execution started.");
+        }
+        useArchiveEntryChecksums = true;
+    }
+
     @Override
     public ResourceFilter getClasspathResourceFilter() {
         return resourceFilter.evaluate();
@@ -78,6 +88,12 @@ public Map<String, ResourceEntryFilter> getPropertiesFileFilters() {
         return propertyFileFilters.getFilters();
     }
 
+    @Override
+    public boolean isUsingArchiveEntryChecksums() {
+        archiveEntryChecksumsEvaluated = true;
+        return useArchiveEntryChecksums;
+    }
+
     public class RuntimeMetaInfNormalization implements MetaInfNormalization {
         @Override
         public void ignoreCompletely() {
@@ -102,7 +118,7 @@ public void ignoreProperty(String name) {
 
     @Override
     public CachedState computeCachedState() {
-        DefaultCachedState cachedState = new DefaultCachedState(resourceFilter, manifestAttributeResourceFilter, propertyFileFilters);
+        DefaultCachedState cachedState = new DefaultCachedState(resourceFilter, manifestAttributeResourceFilter, propertyFileFilters, isUsingArchiveEntryChecksums());
         if (cachedState.isTrivial()) {
             return null;
         }
@@ -120,6 +136,9 @@ public void configureFromCachedState(CachedState state) {
         defaultCachedState.propertiesFileFiltersState.forEach((pattern, ignores) -> {
             propertyFileFilters.configure(pattern, normalization -> ignores.forEach(normalization::ignoreProperty));
         });
+        if (defaultCachedState.useArchiveEntryChecksums) {
+            useArchiveEntryChecksums();
+        }
     }
 
     private static <T> EvaluatableFilter<T> filter(Function<ImmutableSet<String>, T> initializer, T emptyValue) {
@@ -210,15 +229,17 @@ private static class DefaultCachedState implements CachedState {
         final Set<String> resourceFilterState;
         final Set<String> manifestAttributesFilterState;
         final Map<String, Set<String>> propertiesFileFiltersState;
+        final boolean useArchiveEntryChecksums;
 
-        DefaultCachedState(EvaluatableFilter<?> resourceFilter, EvaluatableFilter<?> manifestAttributesFilter, DefaultPropertiesFileFilter propertiesFileFilters) {
+        DefaultCachedState(EvaluatableFilter<?> resourceFilter, EvaluatableFilter<?> manifestAttributesFilter, DefaultPropertiesFileFilter propertiesFileFilters, boolean useArchiveEntryChecksums) {
             resourceFilterState = resourceFilter.getState();
             manifestAttributesFilterState = manifestAttributesFilter.getState();
             propertiesFileFiltersState = propertiesFileFilters.getState();
+            this.useArchiveEntryChecksums = useArchiveEntryChecksums;
         }
 
         boolean isTrivial() {
-            return resourceFilterState.isEmpty() && manifestAttributesFilterState.isEmpty() && propertiesFileFiltersState.values().stream().allMatch(Set::isEmpty);
+            return resourceFilterState.isEmpty() && manifestAttributesFilterState.isEmpty() && propertiesFileFiltersState.values().stream().allMatch(Set::isEmpty) && !useArchiveEntryChecksums;
         }
     }
 }
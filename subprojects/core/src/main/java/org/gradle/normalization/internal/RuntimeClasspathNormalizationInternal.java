@@ -30,6 +30,8 @@ public interface RuntimeClasspathNormalizationInternal extends RuntimeClasspathN
 
     Map<String, ResourceEntryFilter> getPropertiesFileFilters();
 
+    boolean isUsingArchiveEntryChecksums();
+
     /**
      * Returns the configuration of runtime classpath normalization in a configuration-cache friendly form.
      * The normalization cannot be further configured after this call.
@@ -16,13 +16,18 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import org.gradle.api.internal.file.archive.ZipEntry
+import org.gradle.cache.PersistentIndexedCache
 import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext
+import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContextHasher
 import org.gradle.internal.fingerprint.hashing.ResourceHasher
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.Hashing
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.serialize.HashCodeSerializer
+import org.gradle.internal.serialize.MapSerializer
 import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.testfixtures.internal.TestInMemoryPersistentIndexedCache
 import spock.lang.Specification
@@ -78,6 +83,124 @@ class DefaultResourceSnapshotterCacheServiceTest extends Specification {
         0 * _
     }
 
+    def "caches zip entries by the hash of the archive"() {
+        def expectedHash = TestHashCodes.hashCodeFrom(123)
+        def zipEntryCachingService = new DefaultResourceSnapshotterCacheService(new TestInMemoryPersistentIndexedCache(new HashCodeSerializer()), zipEntryCache())
+        def zipEntryContext = new DefaultZipEntryContext(zipEntry(1), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+        def changedArchive = new RegularFileSnapshot(path, "path", TestHashCodes.hashCodeFrom(457), DefaultFileMetadata.file(3456, 456, FileMetadata.AccessType.DIRECT))
+        def zipEntryContextInChangedArchive = new DefaultZipEntryContext(zipEntry(1), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(457))
+        HashCode actualHash = null
+
+        when:
+        hashArchive(zipEntryCachingService, snapshot, TestHashCodes.hashCodeFrom(1)) {
+            actualHash = zipEntryCachingService.hashZipEntry(zipEntryContext, delegate, configurationHash)
+        }
+        then:
+        1 * delegate.hash(zipEntryContext) >> expectedHash
+        actualHash == expectedHash
+        0 * _
+
+        when:
+        hashArchive(zipEntryCachingService, snapshot, TestHashCodes.hashCodeFrom(2)) {
+            actualHash = zipEntryCachingService.hashZipEntry(zipEntryContext, delegate, configurationHash)
+        }
+        then:
+        actualHash == expectedHash
+        0 * _
+
+        when:
+        hashArchive(zipEntryCachingService, changedArchive, TestHashCodes.hashCodeFrom(1)) {
+            zipEntryCachingService.hashZipEntry(zipEntryContextInChangedArchive, delegate, configurationHash)
+        }
+        then:
+        1 * delegate.hash(zipEntryContextInChangedArchive) >> expectedHash
+        0 * _
+    }
+
+    def "looks up and stores the entry hashes of an archive once"() {
+        def zipEntryCache = Mock(PersistentIndexedCache)
+        def zipEntryCachingService = new DefaultResourceSnapshotterCacheService(new TestInMemoryPersistentIndexedCache(new HashCodeSerializer()), zipEntryCache)
+        def zipEntryContext = new DefaultZipEntryContext(zipEntry(1), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+        def otherZipEntryContext = new DefaultZipEntryContext(zipEntry(2), "foo/Baz.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+
+        when:
+        hashArchive(zipEntryCachingService, snapshot, TestHashCodes.hashCodeFrom(1)) {
+            zipEntryCachingService.hashZipEntry(zipEntryContext, delegate, configurationHash)
+            zipEntryCachingService.hashZipEntry(otherZipEntryContext, delegate, configurationHash)
+        }
+        then:
+        1 * zipEntryCache.getIfPresent(_) >> null
+        1 * delegate.hash(zipEntryContext) >> TestHashCodes.hashCodeFrom(123)
+        1 * delegate.hash(otherZipEntryContext) >> TestHashCodes.hashCodeFrom(124)
+        1 * zipEntryCache.put(_, { Map hashes -> hashes.values() as Set == [TestHashCodes.hashCodeFrom(123), TestHashCodes.hashCodeFrom(124)] as Set })
+        0 * _
+    }
+
+    def "does not mix up zip entries with the same name in one archive"() {
+        def zipEntryCachingService = new DefaultResourceSnapshotterCacheService(new TestInMemoryPersistentIndexedCache(new HashCodeSerializer()), zipEntryCache())
+        def zipEntryContext = new DefaultZipEntryContext(zipEntry(1), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+        def duplicateZipEntryContext = new DefaultZipEntryContext(zipEntry(2), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+        HashCode hash = null
+        HashCode duplicateHash = null
+
+        when:
+        hashArchive(zipEntryCachingService, snapshot, TestHashCodes.hashCodeFrom(1)) {
+            hash = zipEntryCachingService.hashZipEntry(zipEntryContext, delegate, configurationHash)
+            duplicateHash = zipEntryCachingService.hashZipEntry(duplicateZipEntryContext, delegate, configurationHash)
+        }
+        then:
+        1 * delegate.hash(zipEntryContext) >> TestHashCodes.hashCodeFrom(123)
+        1 * delegate.hash(duplicateZipEntryContext) >> TestHashCodes.hashCodeFrom(124)
+        hash == TestHashCodes.hashCodeFrom(123)
+        duplicateHash == TestHashCodes.hashCodeFrom(124)
+        0 * _
+    }
+
+    def "does not cache zip entries outside of hashing their archive"() {
+        def zipEntryCachingService = new DefaultResourceSnapshotterCacheService(new TestInMemoryPersistentIndexedCache(new HashCodeSerializer()), zipEntryCache())
+        def zipEntryContext = new DefaultZipEntryContext(zipEntry(1), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+
+        when:
+        zipEntryCachingService.hashZipEntry(zipEntryContext, delegate, configurationHash)
+        zipEntryCachingService.hashZipEntry(zipEntryContext, delegate, configurationHash)
+        then:
+        2 * delegate.hash(zipEntryContext) >> TestHashCodes.hashCodeFrom(123)
+        0 * _
+    }
+
+    def "does not cache zip entries without a zip entry cache"() {
+        def zipEntryContext = new DefaultZipEntryContext(zipEntry(1), "foo/Bar.class", "foo.jar", TestHashCodes.hashCodeFrom(456))
+
+        when:
+        hashArchive(snapshotterCache, snapshot, TestHashCodes.hashCodeFrom(1)) {
+            snapshotterCache.hashZipEntry(zipEntryContext, delegate, configurationHash)
+            snapshotterCache.hashZipEntry(zipEntryContext, delegate, configurationHash)
+        }
+        then:
+        2 * delegate.hash(zipEntryContext) >> TestHashCodes.hashCodeFrom(123)
+        0 * _
+    }
+
+    private static void hashArchive(DefaultResourceSnapshotterCacheService service, RegularFileSnapshot archive, HashCode archiveHasherConfigurationHash, Closure hashEntries) {
+        def archiveContext = new DefaultRegularFileSnapshotContext({ archive.absolutePath }, archive)
+        def archiveHasher = { RegularFileSnapshotContext context ->
+            hashEntries()
+            TestHashCodes.hashCodeFrom(999)
+        } as RegularFileSnapshotContextHasher
+        service.hashFile(archiveContext, archiveHasher, archiveHasherConfigurationHash)
+    }
+
+    private static TestInMemoryPersistentIndexedCache<HashCode, Map<HashCode, HashCode>> zipEntryCache() {
+        new TestInMemoryPersistentIndexedCache(new MapSerializer(new HashCodeSerializer(), new HashCodeSerializer()))
+    }
+
+    private ZipEntry zipEntry(long crc) {
+        Stub(ZipEntry) {
+            size() >> 1024
+            getCrc() >> crc
+        }
+    }
+
     private HashCode getConfigurationHash() {
         def hasher = Hashing.newHasher()
         hasher.putString(delegate.getClass().getName())
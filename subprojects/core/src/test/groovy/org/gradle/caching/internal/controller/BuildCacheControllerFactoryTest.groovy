@@ -74,7 +74,8 @@ class BuildCacheControllerFactoryTest extends Specification {
             Stub(FileSystemAccess),
             Stub(BuildCacheEntryPacker),
             Stub(OriginMetadataFactory),
-            Stub(StringInterner)
+            Stub(StringInterner),
+            null
         )
         assert controllerType.isInstance(controller)
         controllerType.cast(controller)
@@ -23,6 +23,7 @@ import org.gradle.api.internal.DocumentationRegistry
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.project.taskfactory.TaskIdentity
 import org.gradle.api.internal.tasks.NodeExecutionContext
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.InputDirectory
@@ -35,6 +36,7 @@ import org.gradle.api.tasks.TaskAction
 import org.gradle.composite.internal.BuildTreeWorkGraphController
 import org.gradle.internal.file.Stat
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resources.MemoryLeaseRegistry
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.util.Path
 import org.gradle.util.Requires
@@ -1051,6 +1053,85 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         secondTask == b
     }
 
+    def "a task that declares more memory than is left is not started until memory is released"() {
+        given:
+        def memoryLeases = new MemoryLeaseRegistry(coordinator, 1000)
+        def a = task("a", type: Async, resources: [memoryLeases.getResourceLock(600)])
+        def b = task("b", type: Async, resources: [memoryLeases.getResourceLock(600)])
+        def c = task("c", type: Async, resources: [memoryLeases.getResourceLock(400)])
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+        then:
+        firstTaskNode.task == a
+        secondTaskNode.task == c
+        assertNoWorkReadyToStartAfterSelect()
+
+        when:
+        finishedExecuting(firstTaskNode)
+        def thirdTask = selectNextTask()
+        then:
+        thirdTask == b
+    }
+
+    def "starts ready tasks on the longest remaining path first when scheduling by task duration history"() {
+        given:
+        def expectedDurations = [a: 10L, b: 100L, c: 1000L]
+        def durationHistory = Mock(TaskDurationHistory)
+        _ * durationHistory.getExpectedDurationMillis(_) >> { LocalTaskNode node -> expectedDurations[node.task.name] }
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.outputHierarchy, accessHierarchies.destroyableHierarchy, coordinator, durationHistory)
+
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, c)
+
+        then:
+        executionPlan.tasks as List == [a, b, c]
+
+        when:
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+
+        then:
+        firstTaskNode.task == b
+        secondTaskNode.task == a
+
+        when:
+        finishedExecuting(firstTaskNode)
+
+        then:
+        _ * b.state.outcome >> TaskExecutionOutcome.EXECUTED
+        1 * durationHistory.recordDuration(firstTaskNode, _)
+        selectNextTask() == c
+    }
+
+    def "does not record the duration of tasks which did not execute their actions"() {
+        given:
+        def durationHistory = Mock(TaskDurationHistory)
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.outputHierarchy, accessHierarchies.destroyableHierarchy, coordinator, durationHistory)
+
+        Task a = task("a", type: Async)
+
+        when:
+        addToGraphAndPopulate(a)
+        def taskNode = selectNextTaskNode()
+        finishedExecuting(taskNode)
+
+        then:
+        _ * a.state.outcome >> outcome
+        0 * durationHistory.recordDuration(_, _)
+
+        where:
+        outcome << [TaskExecutionOutcome.UP_TO_DATE, TaskExecutionOutcome.FROM_CACHE, TaskExecutionOutcome.NO_SOURCE, TaskExecutionOutcome.SKIPPED]
+    }
+
     def "task is not available for execution until all of its dependencies that are executed in parallel complete"() {
         given:
         Task a = task("a", type: Async)
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.scopes.ScopedCache
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Path
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class PersistentTaskDurationHistoryTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheDir = temporaryFolder.createDir("taskDurations")
+    def cache = Stub(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+    }
+    def cacheBuilder = Stub(CacheBuilder)
+    def cacheRepository = Stub(ScopedCache)
+
+    def setup() {
+        cacheRepository.cache("taskDurations") >> cacheBuilder
+        cacheBuilder.withDisplayName(_) >> cacheBuilder
+        cacheBuilder.withLockOptions(_) >> cacheBuilder
+        cacheBuilder.open() >> cache
+    }
+
+    def "remembers the durations of tasks across builds"() {
+        def history = new PersistentTaskDurationHistory(cacheRepository)
+
+        expect:
+        history.getExpectedDurationMillis(taskNode(":a")) == 0
+
+        when:
+        history.recordDuration(taskNode(":a"), 100)
+        history.recordDuration(taskNode(":b"), 50)
+        history.close()
+        history = new PersistentTaskDurationHistory(cacheRepository)
+
+        then:
+        history.getExpectedDurationMillis(taskNode(":a")) == 100
+        history.getExpectedDurationMillis(taskNode(":b")) == 50
+        history.getExpectedDurationMillis(taskNode(":c")) == 0
+
+        when:
+        history.recordDuration(taskNode(":a"), 200)
+        history.close()
+        history = new PersistentTaskDurationHistory(cacheRepository)
+
+        then:
+        history.getExpectedDurationMillis(taskNode(":a")) == 150
+        history.getExpectedDurationMillis(taskNode(":b")) == 50
+    }
+
+    def "averages the latest duration with the history written by other builds in the meantime"() {
+        def history = new PersistentTaskDurationHistory(cacheRepository)
+        def otherHistory = new PersistentTaskDurationHistory(cacheRepository)
+
+        when:
+        otherHistory.recordDuration(taskNode(":a"), 100)
+        otherHistory.close()
+        history.recordDuration(taskNode(":a"), 200)
+        history.close()
+        history = new PersistentTaskDurationHistory(cacheRepository)
+
+        then:
+        history.getExpectedDurationMillis(taskNode(":a")) == 150
+    }
+
+    def "ignores history in an unknown format"() {
+        new File(cacheDir, "taskDurations.bin").text = "unknown format"
+
+        when:
+        def history = new PersistentTaskDurationHistory(cacheRepository)
+
+        then:
+        history.getExpectedDurationMillis(taskNode(":a")) == 0
+    }
+
+    private LocalTaskNode taskNode(String path) {
+        def task = Stub(TaskInternal) {
+            getIdentityPath() >> Path.path(path)
+        }
+        return Stub(LocalTaskNode) {
+            getTask() >> task
+        }
+    }
+}
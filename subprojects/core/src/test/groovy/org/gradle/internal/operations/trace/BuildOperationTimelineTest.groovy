@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.operations.trace
+
+import groovy.json.JsonSlurper
+import org.gradle.StartParameter
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.DefaultBuildOperationListenerManager
+import org.gradle.internal.operations.OperationFinishEvent
+import org.gradle.internal.operations.OperationIdentifier
+import org.gradle.internal.operations.OperationStartEvent
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class BuildOperationTimelineTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def buildOperationListenerManager = new DefaultBuildOperationListenerManager()
+    def broadcast = buildOperationListenerManager.broadcaster
+
+    def "writes finished operations as complete events on the thread they started on"() {
+        def basePath = temporaryFolder.file("build").absolutePath
+        def timeline = new BuildOperationTimeline(startParameter(basePath), buildOperationListenerManager)
+        def parent = descriptor(1, null, "Run \"build\"")
+        def child = descriptor(2, 1, "Task :compileJava")
+
+        when:
+        broadcast.started(parent, new OperationStartEvent(0))
+        broadcast.started(child, new OperationStartEvent(0))
+        broadcast.finished(child, new OperationFinishEvent(0, 0, new RuntimeException(), null))
+        broadcast.finished(parent, new OperationFinishEvent(0, 0, null, null))
+        timeline.stop()
+
+        then:
+        def events = new JsonSlurper().parse(new File(basePath + "-timeline.json")) as List<Map>
+        def threadNames = events.findAll { it.ph == "M" }
+        threadNames.size() == 1
+        threadNames[0].args.name == Thread.currentThread().name
+
+        def operations = events.findAll { it.ph == "X" }
+        operations*.name == ["Task :compileJava", "Run \"build\""]
+        operations*.tid.unique() == [threadNames[0].tid]
+        operations[0].args == [id: 2, parentId: 1, failed: true]
+        operations[1].args == [id: 1]
+        operations[0].ts >= operations[1].ts
+        operations[0].ts + operations[0].dur <= operations[1].ts + operations[1].dur
+    }
+
+    def "does not listen to operations when not enabled"() {
+        def listenerManager = Mock(DefaultBuildOperationListenerManager)
+
+        when:
+        new BuildOperationTimeline(new StartParameter(), listenerManager).stop()
+
+        then:
+        0 * listenerManager.addListener(_)
+    }
+
+    private static StartParameter startParameter(String basePath) {
+        def startParameter = new StartParameter()
+        startParameter.systemPropertiesArgs = [(BuildOperationTimeline.SYSPROP): basePath]
+        return startParameter
+    }
+
+    private static BuildOperationDescriptor descriptor(long id, Long parentId, String displayName) {
+        BuildOperationDescriptor.displayName(displayName).build(
+            new OperationIdentifier(id),
+            parentId == null ? null : new OperationIdentifier(parentId)
+        )
+    }
+}
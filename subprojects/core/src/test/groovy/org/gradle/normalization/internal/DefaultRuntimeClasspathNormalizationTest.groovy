@@ -179,6 +179,31 @@ class DefaultRuntimeClasspathNormalizationTest extends Specification {
         thrown(GradleException.class)
     }
 
+    def "archive entry checksums can be restored from the cached state"() {
+        given:
+        def originalNormalization = new DefaultRuntimeClasspathNormalization()
+        originalNormalization.useArchiveEntryChecksums()
+
+        when:
+        def restoredNormalization = new DefaultRuntimeClasspathNormalization()
+        restoredNormalization.configureFromCachedState(originalNormalization.computeCachedState())
+
+        then:
+        restoredNormalization.usingArchiveEntryChecksums
+    }
+
+    def "exception is thrown if archive entry checksums are enabled after caching"() {
+        given:
+        def normalization = new DefaultRuntimeClasspathNormalization()
+
+        when:
+        normalization.computeCachedState()
+        normalization.useArchiveEntryChecksums()
+
+        then:
+        thrown(GradleException.class)
+    }
+
     private static Supplier<String[]> asPathFactory(String... segments) {
         return () -> segments
     }
@@ -50,6 +50,7 @@ import org.gradle.internal.execution.impl.DefaultFileCollectionFingerprinterRegi
 import org.gradle.internal.execution.impl.DefaultInputFingerprinter
 import org.gradle.internal.execution.impl.DefaultOutputSnapshotter
 import org.gradle.internal.execution.impl.FingerprinterRegistration
+import org.gradle.internal.execution.steps.StepTimings
 import org.gradle.internal.execution.steps.ValidateStep
 import org.gradle.internal.execution.timeout.TimeoutHandler
 import org.gradle.internal.fingerprint.AbsolutePathInputNormalizer
@@ -150,7 +151,8 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
         Mock(TimeoutHandler),
         validationWarningRecorder,
         virtualFileSystem,
-        documentationRegistry
+        documentationRegistry,
+        StepTimings.DISABLED
     )
 
     def invoker = new DefaultTransformerInvocationFactory(
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = "Execution engine that takes a unit of work and makes it happen"
@@ -36,6 +37,8 @@ dependencies {
     testImplementation(testFixtures(project(":core")))
     testImplementation(testFixtures(project(":model-core")))
 
+    jmhImplementation(testFixtures(project(":core")))
+
     testFixturesImplementation(libs.guava)
     testFixturesImplementation(project(":base-services"))
     testFixturesImplementation(project(":build-cache"))
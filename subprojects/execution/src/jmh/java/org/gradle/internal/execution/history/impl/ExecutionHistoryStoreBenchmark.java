@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.CacheBuilder;
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.DefaultCacheFactory;
+import org.gradle.cache.internal.DefaultFileLockManagerTestHelper;
+import org.gradle.cache.internal.DefaultInMemoryCacheDecoratorFactory;
+import org.gradle.cache.internal.TestCrossBuildInMemoryCacheFactory;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.fingerprint.impl.AbsolutePathFingerprintingStrategy;
+import org.gradle.internal.fingerprint.impl.DefaultCurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.progress.NoOpProgressLoggerFactory;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+import org.gradle.internal.snapshot.impl.StringValueSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Compares the indexed cache based execution history store with the log-structured one,
+ * for a history of many units of work which are loaded and stored concurrently like during a large build.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ExecutionHistoryStoreBenchmark {
+    private static final ClassLoaderHierarchyHasher CLASS_LOADER_HASHER = classLoader -> Hashing.signature("classLoader");
+
+    @Param({"btree", "log"})
+    String store;
+
+    @Param({"100000"})
+    int units;
+
+    @Param({"20"})
+    int outputFilesPerUnit;
+
+    private File cacheDir;
+    private DefaultExecutorFactory executorFactory;
+    private DefaultCacheFactory cacheFactory;
+    private PersistentCache cache;
+    private ExecutionHistoryStore historyStore;
+    private List<String> keys;
+    private List<AfterExecutionState> executionStates;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        cacheDir = Files.createTempDirectory("execution-history").toFile();
+        executorFactory = new DefaultExecutorFactory();
+        cacheFactory = new DefaultCacheFactory(DefaultFileLockManagerTestHelper.createDefaultFileLockManager(), executorFactory, new NoOpProgressLoggerFactory());
+        cache = cacheFactory.open(cacheDir, "execution history", Collections.emptyMap(), CacheBuilder.LockTarget.DefaultTarget, mode(FileLockManager.LockMode.OnDemand), null, null);
+        Interner<String> stringInterner = Interners.newWeakInterner();
+        if (store.equals("btree")) {
+            historyStore = new DefaultExecutionHistoryStore(() -> cache, new DefaultInMemoryCacheDecoratorFactory(true, new TestCrossBuildInMemoryCacheFactory()), stringInterner, CLASS_LOADER_HASHER);
+        } else {
+            historyStore = new LogStructuredExecutionHistoryStore(() -> cache, stringInterner, CLASS_LOADER_HASHER, executorFactory);
+        }
+
+        keys = new ArrayList<>(units);
+        executionStates = new ArrayList<>(units);
+        for (int unit = 0; unit < units; unit++) {
+            String key = ":project" + unit / 50 + ":task" + unit % 50;
+            AfterExecutionState executionState = executionState(unit);
+            keys.add(key);
+            executionStates.add(executionState);
+            historyStore.store(key, true, executionState);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (historyStore instanceof Closeable) {
+            ((Closeable) historyStore).close();
+        }
+        cache.close();
+        cacheFactory.close();
+        executorFactory.stop();
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    @Benchmark
+    public Optional<?> load() {
+        return historyStore.load(keys.get(ThreadLocalRandom.current().nextInt(units)));
+    }
+
+    @Benchmark
+    public void store() {
+        int unit = ThreadLocalRandom.current().nextInt(units);
+        historyStore.store(keys.get(unit), true, executionStates.get(unit));
+    }
+
+    @Benchmark
+    public Optional<?> loadAndStore() {
+        int unit = ThreadLocalRandom.current().nextInt(units);
+        Optional<?> previousState = historyStore.load(keys.get(unit));
+        historyStore.store(keys.get(unit), true, executionStates.get(unit));
+        return previousState;
+    }
+
+    private AfterExecutionState executionState(int unit) {
+        String outputDir = "/build/project" + unit / 50 + "/task" + unit % 50;
+        List<FileSystemLocationSnapshot> outputFiles = new ArrayList<>(outputFilesPerUnit);
+        for (int file = 0; file < outputFilesPerUnit; file++) {
+            String name = "Output" + file + ".class";
+            String path = outputDir + "/" + name;
+            outputFiles.add(new RegularFileSnapshot(path, name, Hashing.hashString(path), DefaultFileMetadata.file(file, 1234, AccessType.DIRECT)));
+        }
+        outputFiles.sort(Comparator.comparing(FileSystemLocationSnapshot::getName, PathUtil.getPathComparator(CaseSensitivity.CASE_SENSITIVE)));
+        DirectorySnapshot outputs = new DirectorySnapshot(outputDir, "task" + unit % 50, AccessType.DIRECT, Hashing.hashString(outputDir), outputFiles);
+        CurrentFileCollectionFingerprint inputFingerprint = DefaultCurrentFileCollectionFingerprint.from(outputs, AbsolutePathFingerprintingStrategy.DEFAULT, null);
+        return new DefaultAfterExecutionState(
+            new DefaultBeforeExecutionState(
+                ImplementationSnapshot.of("org.gradle.Task" + unit % 50, Hashing.signature("implementation")),
+                ImmutableList.of(),
+                ImmutableSortedMap.of("input", new StringValueSnapshot("value" + unit)),
+                ImmutableSortedMap.of("sources", inputFingerprint),
+                ImmutableSortedMap.<String, FileSystemSnapshot>of("outputs", outputs),
+                null
+            ),
+            ImmutableSortedMap.<String, FileSystemSnapshot>of("outputs", outputs),
+            new OriginMetadata("build-id", Duration.ofMillis(unit)),
+            false
+        );
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.gradle.internal.execution.history.OverlappingOutputDetector;
+import org.gradle.internal.execution.history.OverlappingOutputs;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nullable;
+
+import static org.gradle.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
+
+/**
+ * Detects overlapping outputs in an output directory with 100k files, of which some have been removed since the last execution.
+ *
+ * Removed files don't cause overlaps, so the detector has to look at all the changed directories.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+public class OverlappingOutputDetectorBenchmark {
+    private static final String ROOT = "/build/classes";
+
+    @Param({"100000"})
+    int files;
+
+    @Param({"100"})
+    int filesPerDirectory;
+
+    @Param({"1", "100", "10000"})
+    int removedFiles;
+
+    private final OverlappingOutputDetector detector = new DefaultOverlappingOutputDetector();
+    private ImmutableSortedMap<String, FileSystemSnapshot> previous;
+    private ImmutableSortedMap<String, FileSystemSnapshot> current;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        previous = ImmutableSortedMap.of("classes", outputDirectory(0));
+        current = ImmutableSortedMap.of("classes", outputDirectory(removedFiles));
+    }
+
+    @Benchmark
+    @Nullable
+    public OverlappingOutputs detect() {
+        return detector.detect(previous, current);
+    }
+
+    /**
+     * Creates the output directory, without every {@code files / removedFiles}-th file.
+     */
+    private FileSystemSnapshot outputDirectory(int removedFiles) {
+        int removeEvery = removedFiles == 0 ? Integer.MAX_VALUE : files / removedFiles;
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        builder.enterDirectory(AccessType.DIRECT, ROOT, "classes", INCLUDE_EMPTY_DIRS);
+        int directories = files / filesPerDirectory;
+        for (int directory = 0; directory < directories; directory++) {
+            String directoryName = "package" + directory;
+            String directoryPath = ROOT + "/" + directoryName;
+            builder.enterDirectory(AccessType.DIRECT, directoryPath, directoryName, INCLUDE_EMPTY_DIRS);
+            for (int file = 0; file < filesPerDirectory; file++) {
+                int index = directory * filesPerDirectory + file;
+                if (index % removeEvery == 0) {
+                    continue;
+                }
+                String fileName = "Class" + file + ".class";
+                String filePath = directoryPath + "/" + fileName;
+                builder.visitLeafElement(new RegularFileSnapshot(filePath, fileName, Hashing.hashString(filePath), DefaultFileMetadata.file(index, 1234, AccessType.DIRECT)));
+            }
+            builder.leaveDirectory();
+        }
+        builder.leaveDirectory();
+        return builder.getResult();
+    }
+}
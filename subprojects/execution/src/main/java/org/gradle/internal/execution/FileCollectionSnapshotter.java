@@ -32,8 +32,22 @@ interface Result {
         boolean containsArchiveTrees();
     }
 
+    interface ResolvedRoots {
+        /**
+         * Snapshot the resolved roots.
+         *
+         * Does not access the state the file collection has been resolved from, so the roots can be snapshot on any thread.
+         */
+        Result snapshot();
+    }
+
     /**
      * Snapshot the roots of a file collection.
      */
     Result snapshot(FileCollection fileCollection);
+
+    /**
+     * Resolve the roots of a file collection without snapshotting them.
+     */
+    ResolvedRoots resolveRoots(FileCollection fileCollection);
 }
@@ -27,17 +27,35 @@
 import org.gradle.internal.hash.Hashing;
 import org.slf4j.Logger;
 
+import javax.annotation.Nullable;
+
 public class DefaultCachingStateFactory implements CachingStateFactory {
     private final Logger logger;
+    @Nullable
+    private final String contentHashIdentifier;
 
     public DefaultCachingStateFactory(Logger logger) {
+        this(logger, null);
+    }
+
+    /**
+     * @param contentHashIdentifier identifies how file contents are hashed when not hashed the default way.
+     * The fingerprints in the cache key contain content hashes, so keys are kept apart per way of hashing.
+     */
+    public DefaultCachingStateFactory(Logger logger, @Nullable String contentHashIdentifier) {
         this.logger = logger;
+        this.contentHashIdentifier = contentHashIdentifier;
     }
 
     @Override
     public final CachingState createCachingState(BeforeExecutionState beforeExecutionState, ImmutableList<CachingDisabledReason> cachingDisabledReasons) {
         Hasher cacheKeyHasher = Hashing.newHasher();
 
+        if (contentHashIdentifier != null) {
+            logger.warn("Appending content hash identifier to build cache key: {}", contentHashIdentifier);
+            cacheKeyHasher.putString(contentHashIdentifier);
+        }
+
         logger.warn("Appending implementation to build cache key: {}",
             beforeExecutionState.getImplementation());
         beforeExecutionState.getImplementation().appendToHasher(cacheKeyHasher);
@@ -46,11 +46,7 @@ public DefaultExecutionHistoryStore(
         Interner<String> stringInterner,
         ClassLoaderHierarchyHasher classLoaderHasher
     ) {
-        DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
-            new FileCollectionFingerprintSerializer(stringInterner),
-            new FileSystemSnapshotSerializer(stringInterner),
-            classLoaderHasher
-        );
+        DefaultPreviousExecutionStateSerializer serializer = createSerializer(stringInterner, classLoaderHasher);
 
         CacheDecorator inMemoryCacheDecorator = inMemoryCacheDecoratorFactory.decorator(10000, false);
         this.store = cache.get().createCache(
@@ -66,7 +62,24 @@ public Optional<PreviousExecutionState> load(String key) {
 
     @Override
     public void store(String key, boolean successful, AfterExecutionState executionState) {
-        store.put(key, new DefaultPreviousExecutionState(
+        store.put(key, toPreviousExecutionState(successful, executionState));
+    }
+
+    @Override
+    public void remove(String key) {
+        store.remove(key);
+    }
+
+    static DefaultPreviousExecutionStateSerializer createSerializer(Interner<String> stringInterner, ClassLoaderHierarchyHasher classLoaderHasher) {
+        return new DefaultPreviousExecutionStateSerializer(
+            new FileCollectionFingerprintSerializer(stringInterner),
+            new FileSystemSnapshotSerializer(stringInterner),
+            classLoaderHasher
+        );
+    }
+
+    static PreviousExecutionState toPreviousExecutionState(boolean successful, AfterExecutionState executionState) {
+        return new DefaultPreviousExecutionState(
             executionState.getOriginMetadata(),
             executionState.getImplementation(),
             executionState.getAdditionalImplementations(),
@@ -74,12 +87,7 @@ public void store(String key, boolean successful, AfterExecutionState executionS
             prepareForSerialization(executionState.getInputFileProperties()),
             executionState.getOutputFilesProducedByWork(),
             successful
-        ));
-    }
-
-    @Override
-    public void remove(String key) {
-        store.remove(key);
+        );
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
@@ -30,6 +30,9 @@
 import org.gradle.internal.snapshot.SnapshotVisitResult;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.gradle.internal.snapshot.SnapshotUtil.getRootHashes;
@@ -56,13 +59,92 @@ public OverlappingOutputs detect(ImmutableSortedMap<String, FileSystemSnapshot>
 
     @Nullable
     private static OverlappingOutputs detect(String propertyName, FileSystemSnapshot previous, FileSystemSnapshot before) {
-        Map<String, FileSystemLocationSnapshot> previousIndex = SnapshotUtil.index(previous);
-        OverlappingOutputsDetectingVisitor outputsDetectingVisitor = new OverlappingOutputsDetectingVisitor(previousIndex);
-        before.accept(outputsDetectingVisitor);
-        String overlappingPath = outputsDetectingVisitor.getOverlappingPath();
+        Map<String, FileSystemLocationSnapshot> previousRoots = SnapshotUtil.rootIndex(previous);
+        OverlappingOutputsDetectingVisitor fallbackVisitor = null;
+        String overlappingPath = null;
+        for (FileSystemLocationSnapshot root : roots(before)) {
+            FileSystemLocationSnapshot previousRoot = previousRoots.get(root.getAbsolutePath());
+            if (previousRoot != null) {
+                overlappingPath = findNewContent(root, previousRoot, true);
+            } else {
+                // The root may have been captured as part of another root before, so look up every entry instead
+                if (fallbackVisitor == null) {
+                    fallbackVisitor = new OverlappingOutputsDetectingVisitor(SnapshotUtil.index(previous));
+                }
+                root.accept(fallbackVisitor);
+                overlappingPath = fallbackVisitor.getOverlappingPath();
+            }
+            if (overlappingPath != null) {
+                break;
+            }
+        }
         return overlappingPath == null ? null : new OverlappingOutputs(propertyName, overlappingPath);
     }
 
+    private static List<FileSystemLocationSnapshot> roots(FileSystemSnapshot snapshot) {
+        List<FileSystemLocationSnapshot> roots = new ArrayList<>();
+        snapshot.accept(root -> {
+            roots.add(root);
+            return SnapshotVisitResult.SKIP_SUBTREE;
+        });
+        return roots;
+    }
+
+    /**
+     * Compares the current snapshot with the previous snapshot of the same location, and returns the first location with new content.
+     *
+     * Directories with the same hash as before have the same contents, so only the subtrees which have changed are compared entry by entry.
+     * Visits entries in the same order as {@link OverlappingOutputsDetectingVisitor}, so the same overlapping path is found.
+     */
+    @Nullable
+    private static String findNewContent(FileSystemLocationSnapshot current, @Nullable FileSystemLocationSnapshot previous, boolean isRoot) {
+        return current.accept(new FileSystemLocationSnapshotTransformer<String>() {
+            @Override
+            public String visitDirectory(DirectorySnapshot directorySnapshot) {
+                if (!(previous instanceof DirectorySnapshot)) {
+                    return directorySnapshot.getAbsolutePath();
+                }
+                DirectorySnapshot previousDirectory = (DirectorySnapshot) previous;
+                if (directorySnapshot.getHash().equals(previousDirectory.getHash())) {
+                    return null;
+                }
+                Map<String, FileSystemLocationSnapshot> previousChildren = new HashMap<>(previousDirectory.getChildren().size() * 2);
+                for (FileSystemLocationSnapshot previousChild : previousDirectory.getChildren()) {
+                    previousChildren.put(previousChild.getName(), previousChild);
+                }
+                for (FileSystemLocationSnapshot child : directorySnapshot.getChildren()) {
+                    String overlappingPath = findNewContent(child, previousChildren.get(child.getName()), false);
+                    if (overlappingPath != null) {
+                        return overlappingPath;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public String visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                return hasNewContent(fileSnapshot, previous) ? fileSnapshot.getAbsolutePath() : null;
+            }
+
+            @Override
+            public String visitMissing(MissingFileSnapshot missingSnapshot) {
+                // If the root has gone missing then we don't have overlaps
+                if (isRoot) {
+                    return null;
+                }
+                return hasNewContent(missingSnapshot, previous) ? missingSnapshot.getAbsolutePath() : null;
+            }
+        });
+    }
+
+    private static boolean hasNewContent(FileSystemLocationSnapshot snapshot, @Nullable FileSystemLocationSnapshot previousSnapshot) {
+        // Created since last execution, possibly by another task
+        if (previousSnapshot == null) {
+            return true;
+        }
+        return !snapshot.isContentUpToDate(previousSnapshot);
+    }
+
     private static class OverlappingOutputsDetectingVisitor extends RootTrackingFileSystemSnapshotHierarchyVisitor {
         private final Map<String, FileSystemLocationSnapshot> previousSnapshots;
         private String overlappingPath;
@@ -106,12 +188,7 @@ public Boolean visitMissing(MissingFileSnapshot missingSnapshot) {
         }
 
         private boolean hasNewContent(FileSystemLocationSnapshot snapshot) {
-            FileSystemLocationSnapshot previousSnapshot = previousSnapshots.get(snapshot.getAbsolutePath());
-            // Created since last execution, possibly by another task
-            if (previousSnapshot == null) {
-                return true;
-            }
-            return !snapshot.isContentUpToDate(previousSnapshot);
+            return DefaultOverlappingOutputDetector.hasNewContent(snapshot, previousSnapshots.get(snapshot.getAbsolutePath()));
         }
 
         @Nullable
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import org.gradle.cache.PersistentCache;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Keeps the execution history in an append-only log instead of an indexed cache.
+ *
+ * Storing or removing the history of a unit of work appends a record to the log, and an in-memory index points to the latest record of every unit of work.
+ * The index is rebuilt by scanning the log when the store is first used.
+ * When most of the log consists of outdated records, the live records are copied to a new log in the background, which then replaces the old one.
+ *
+ * The log is only accessed while holding the file lock of the execution history cache.
+ * Other processes using the same cache may append to the log or replace it in between,
+ * which is detected by the length and the identity of the log file.
+ * Before appending, the log file is always checked. Loads only check it when it hasn't been checked for a short while,
+ * so they may miss history which another process stored just before.
+ */
+public class LogStructuredExecutionHistoryStore implements ExecutionHistoryStore, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredExecutionHistoryStore.class);
+
+    private static final int MAGIC = 0x4748534c;
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Magic number, format version and the generation of the log, which changes whenever the log is replaced.
+     */
+    private static final int HEADER_LENGTH = 16;
+    /**
+     * Length and CRC-32 checksum of the payload.
+     */
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final byte STORE_RECORD = 1;
+    private static final byte REMOVE_RECORD = 2;
+    private static final long DEFAULT_MINIMUM_LENGTH_TO_COMPACT = 8 * 1024 * 1024;
+    private static final long DEFAULT_REFRESH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Supplier<PersistentCache> cache;
+    private final Path logFile;
+    private final Serializer<PreviousExecutionState> serializer;
+    private final ManagedExecutor compactionExecutor;
+    private final long minimumLengthToCompact;
+    private final long refreshIntervalNanos;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // All of the following are guarded by the lock
+    private FileChannel channel;
+    private Object fileKey;
+    private long generation;
+    private long logLength;
+    private LogIndex index = new LogIndex();
+    private volatile long lastRefreshNanos;
+
+    public LogStructuredExecutionHistoryStore(
+        Supplier<PersistentCache> cache,
+        Interner<String> stringInterner,
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        ExecutorFactory executorFactory
+    ) {
+        this(cache, stringInterner, classLoaderHasher, executorFactory, DEFAULT_MINIMUM_LENGTH_TO_COMPACT, DEFAULT_REFRESH_INTERVAL_NANOS);
+    }
+
+    @VisibleForTesting
+    LogStructuredExecutionHistoryStore(
+        Supplier<PersistentCache> cache,
+        Interner<String> stringInterner,
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        ExecutorFactory executorFactory,
+        long minimumLengthToCompact,
+        long refreshIntervalNanos
+    ) {
+        this.cache = cache;
+        this.logFile = new File(cache.get().getBaseDir(), "executionHistory.log").toPath();
+        this.serializer = DefaultExecutionHistoryStore.createSerializer(stringInterner, classLoaderHasher);
+        this.compactionExecutor = executorFactory.create("Execution history compaction");
+        this.minimumLengthToCompact = minimumLengthToCompact;
+        this.refreshIntervalNanos = refreshIntervalNanos;
+    }
+
+    @Override
+    public Optional<PreviousExecutionState> load(String key) {
+        return cache.get().withFileLock(() -> {
+            refreshIfNotRecentlyRefreshed();
+            lock.readLock().lock();
+            try {
+                RecordLocation location = index.get(key);
+                if (location == null) {
+                    return Optional.empty();
+                }
+                byte[] payload = readPayload(channel, location);
+                if (payload == null) {
+                    LOGGER.debug("Ignoring corrupt execution history for {}", key);
+                    return Optional.empty();
+                }
+                return Optional.of(decodeState(payload));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void store(String key, boolean successful, AfterExecutionState executionState) {
+        byte[] payload = encodeStoreRecord(key, DefaultExecutionHistoryStore.toPreviousExecutionState(successful, executionState));
+        cache.get().withFileLock(() -> {
+            refreshIfChanged();
+            append(payload);
+        });
+        scheduleCompactionIfNecessary();
+    }
+
+    @Override
+    public void remove(String key) {
+        cache.get().withFileLock(() -> {
+            refreshIfChanged();
+            lock.writeLock().lock();
+            try {
+                if (index.get(key) != null) {
+                    append(encodeRecordStart(REMOVE_RECORD, key).toByteArray());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        scheduleCompactionIfNecessary();
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactionExecutor.stop();
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Picks up the changes other processes made to the log, unless the log has been checked for changes very recently.
+     *
+     * Only used for reading, since appending to an outdated log would overwrite the records of other processes.
+     */
+    private void refreshIfNotRecentlyRefreshed() {
+        lock.readLock().lock();
+        try {
+            if (channel != null && System.nanoTime() - lastRefreshNanos < refreshIntervalNanos) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        refreshIfChanged();
+    }
+
+    /**
+     * Picks up the changes other processes made to the log since this process accessed it.
+     */
+    private void refreshIfChanged() {
+        try {
+            long refreshStartedNanos = System.nanoTime();
+            BasicFileAttributes attributes = readAttributes();
+            lock.readLock().lock();
+            try {
+                if (isUpToDate(attributes)) {
+                    lastRefreshNanos = refreshStartedNanos;
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
+                // Other threads may have appended to the log in the meantime
+                attributes = readAttributes();
+                if (!isUpToDate(attributes)) {
+                    if (attributes != null && channel != null && isSameLog(attributes) && attributes.size() > logLength) {
+                        logLength = scan(channel, logLength, attributes.size(), index);
+                    } else {
+                        reopen();
+                    }
+                }
+                lastRefreshNanos = refreshStartedNanos;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isUpToDate(@Nullable BasicFileAttributes attributes) {
+        return channel != null
+            && attributes != null
+            && attributes.size() == logLength
+            && Objects.equals(attributes.fileKey(), fileKey);
+    }
+
+    private boolean isSameLog(BasicFileAttributes attributes) throws IOException {
+        if (attributes.fileKey() != null) {
+            return attributes.fileKey().equals(fileKey);
+        }
+        // The file system doesn't identify files, so check whether the log has been replaced by looking at its generation
+        try (FileChannel currentLog = FileChannel.open(logFile, READ)) {
+            Long currentGeneration = readGeneration(currentLog);
+            return currentGeneration != null && currentGeneration == generation;
+        }
+    }
+
+    private void reopen() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Files.createDirectories(logFile.getParent());
+        channel = FileChannel.open(logFile, READ, WRITE, CREATE);
+        index = new LogIndex();
+        Long existingGeneration = readGeneration(channel);
+        if (existingGeneration == null) {
+            generation = ThreadLocalRandom.current().nextLong();
+            channel.truncate(0);
+            writeFully(channel, header(generation), 0);
+            logLength = HEADER_LENGTH;
+        } else {
+            generation = existingGeneration;
+            logLength = scan(channel, HEADER_LENGTH, channel.size(), index);
+        }
+        fileKey = Files.readAttributes(logFile, BasicFileAttributes.class).fileKey();
+    }
+
+    private void append(byte[] payload) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + payload.length);
+            record.putInt(payload.length);
+            record.putInt(checksum(payload));
+            record.put(payload);
+            record.flip();
+            long offset = logLength;
+            writeFully(channel, record, offset);
+            logLength += record.limit();
+            index.apply(payload, offset, record.limit());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scheduleCompactionIfNecessary() {
+        boolean worthCompacting;
+        lock.readLock().lock();
+        try {
+            worthCompacting = logLength >= minimumLengthToCompact && index.getLiveLength() * 2 < logLength;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (worthCompacting && compactionScheduled.compareAndSet(false, true)) {
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies the live records to a new log and replaces the current log with it.
+     *
+     * Most of the copying happens without holding any locks, so the store can be used in the meantime.
+     * The copy reads from its own channel to the log, which stays open even when the store reopens the log in the meantime.
+     * The records appended while copying are carried over before the logs are swapped.
+     */
+    @VisibleForTesting
+    void compact() {
+        File compactedFile = null;
+        FileChannel compacted = null;
+        LogSnapshot snapshot = null;
+        try {
+            snapshot = cache.get().withFileLock(() -> {
+                refreshIfChanged();
+                lock.readLock().lock();
+                try {
+                    // The log file has just been checked while holding the file lock, so it is the log the index points into
+                    return new LogSnapshot(FileChannel.open(logFile, READ), generation, logLength, index.liveRecordsInLogOrder());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            });
+
+            compactedFile = File.createTempFile(logFile.getFileName().toString(), ".compacting", logFile.getParent().toFile());
+            compacted = FileChannel.open(compactedFile.toPath(), READ, WRITE);
+            long compactedGeneration = ThreadLocalRandom.current().nextLong();
+            writeFully(compacted, header(compactedGeneration), 0);
+            LogIndex compactedIndex = new LogIndex();
+            long compactedLength = HEADER_LENGTH;
+            for (Map.Entry<String, RecordLocation> record : snapshot.liveRecords) {
+                RecordLocation location = record.getValue();
+                transferFully(snapshot.channel, location.offset, location.length, compacted, compactedLength);
+                compactedIndex.put(record.getKey(), new RecordLocation(compactedLength, location.length));
+                compactedLength += location.length;
+            }
+
+            FileChannel compactedChannel = compacted;
+            Path compactedPath = compactedFile.toPath();
+            long copiedLength = compactedLength;
+            LogSnapshot copiedSnapshot = snapshot;
+            long originalLength = snapshot.logLength;
+            boolean swapped = cache.get().withFileLock(() -> {
+                refreshIfChanged();
+                lock.writeLock().lock();
+                try {
+                    if (generation != copiedSnapshot.generation || logLength < copiedSnapshot.logLength) {
+                        // The log has been replaced or truncated in the meantime
+                        return false;
+                    }
+                    long appendedLength = logLength - copiedSnapshot.logLength;
+                    transferFully(channel, copiedSnapshot.logLength, appendedLength, compactedChannel, copiedLength);
+                    long newLength = scan(compactedChannel, copiedLength, copiedLength + appendedLength, compactedIndex);
+                    compactedChannel.force(false);
+                    Files.move(compactedPath, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    channel.close();
+                    channel = compactedChannel;
+                    generation = compactedGeneration;
+                    logLength = newLength;
+                    index = compactedIndex;
+                    fileKey = Files.readAttributes(logFile, BasicFileAttributes.class).fileKey();
+                    LOGGER.debug("Compacted the execution history from {} to {} bytes", originalLength + appendedLength, newLength);
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+            if (swapped) {
+                compacted = null;
+                compactedFile = null;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Unable to compact the execution history in {}", logFile, e);
+        } finally {
+            if (snapshot != null) {
+                try {
+                    snapshot.channel.close();
+                } catch (IOException e) {
+                    LOGGER.info("Unable to close {}", logFile, e);
+                }
+            }
+            if (compacted != null) {
+                try {
+                    compacted.close();
+                } catch (IOException e) {
+                    LOGGER.info("Unable to close {}", compactedFile, e);
+                }
+            }
+            if (compactedFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                compactedFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Applies the records between the given offsets to the index, and truncates the log at the first incomplete or corrupt record.
+     *
+     * @return the end of the last valid record
+     */
+    private static long scan(FileChannel log, long from, long to, LogIndex index) throws IOException {
+        long offset = from;
+        log.position(from);
+        // Not closing the stream, since that would close the channel
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log), 64 * 1024));
+        try {
+            while (to - offset >= RECORD_HEADER_LENGTH) {
+                int payloadLength = input.readInt();
+                int expectedChecksum = input.readInt();
+                if (payloadLength <= 0 || payloadLength > to - offset - RECORD_HEADER_LENGTH) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                input.readFully(payload);
+                if (checksum(payload) != expectedChecksum) {
+                    break;
+                }
+                int recordLength = RECORD_HEADER_LENGTH + payloadLength;
+                index.apply(payload, offset, recordLength);
+                offset += recordLength;
+            }
+        } catch (EOFException e) {
+            // The log is shorter than expected, keep what has been read
+        }
+        if (offset < to) {
+            LOGGER.info("Dropping {} bytes of incomplete or corrupt execution history", to - offset);
+            log.truncate(offset);
+        }
+        return offset;
+    }
+
+    @Nullable
+    private static byte[] readPayload(FileChannel log, RecordLocation location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        while (record.hasRemaining()) {
+            if (log.read(record, location.offset + record.position()) < 0) {
+                return null;
+            }
+        }
+        record.flip();
+        int payloadLength = record.getInt();
+        int expectedChecksum = record.getInt();
+        if (payloadLength != location.length - RECORD_HEADER_LENGTH) {
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        record.get(payload);
+        return checksum(payload) == expectedChecksum ? payload : null;
+    }
+
+    @Nullable
+    private static Long readGeneration(FileChannel log) throws IOException {
+        if (log.size() < HEADER_LENGTH) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining()) {
+            if (log.read(header, header.position()) < 0) {
+                return null;
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            LOGGER.info("Ignoring execution history with an unknown format");
+            return null;
+        }
+        return header.getLong();
+    }
+
+    private static ByteBuffer header(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putLong(generation);
+        header.flip();
+        return header;
+    }
+
+    @Nullable
+    private BasicFileAttributes readAttributes() throws IOException {
+        try {
+            return Files.readAttributes(logFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private byte[] encodeStoreRecord(String key, PreviousExecutionState state) {
+        ByteArrayOutputStream payload = encodeRecordStart(STORE_RECORD, key);
+        KryoBackedEncoder encoder = new KryoBackedEncoder(payload);
+        try {
+            serializer.write(encoder, state);
+            encoder.flush();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not serialize the execution history of " + key, e);
+        }
+        return payload.toByteArray();
+    }
+
+    private static ByteArrayOutputStream encodeRecordStart(byte recordType, String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(1024);
+        payload.write(recordType);
+        payload.write(keyBytes.length >>> 24);
+        payload.write(keyBytes.length >>> 16);
+        payload.write(keyBytes.length >>> 8);
+        payload.write(keyBytes.length);
+        payload.write(keyBytes, 0, keyBytes.length);
+        return payload;
+    }
+
+    private PreviousExecutionState decodeState(byte[] payload) {
+        int valueOffset = 5 + ByteBuffer.wrap(payload, 1, 4).getInt();
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(payload, valueOffset, payload.length - valueOffset));
+        try {
+            return serializer.read(decoder);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the execution history", e);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel log, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += log.write(buffer, offset);
+        }
+    }
+
+    private static void transferFully(FileChannel source, long position, long count, FileChannel target, long targetPosition) throws IOException {
+        long transferred = 0;
+        target.position(targetPosition);
+        while (transferred < count) {
+            long transferredNow = source.transferTo(position + transferred, count - transferred, target);
+            if (transferredNow <= 0) {
+                throw new EOFException("Unexpected end of the execution history log");
+            }
+            transferred += transferredNow;
+        }
+    }
+
+    private static class LogSnapshot {
+        private final FileChannel channel;
+        private final long generation;
+        private final long logLength;
+        private final List<Map.Entry<String, RecordLocation>> liveRecords;
+
+        public LogSnapshot(FileChannel channel, long generation, long logLength, List<Map.Entry<String, RecordLocation>> liveRecords) {
+            this.channel = channel;
+            this.generation = generation;
+            this.logLength = logLength;
+            this.liveRecords = liveRecords;
+        }
+    }
+
+    /**
+     * Points to the latest record of every key, and keeps track of how much of the log is still live.
+     */
+    private static class LogIndex {
+        private final Map<String, RecordLocation> locations = new HashMap<>();
+        private long liveLength;
+
+        @Nullable
+        public RecordLocation get(String key) {
+            return locations.get(key);
+        }
+
+        public void put(String key, RecordLocation location) {
+            RecordLocation previous = locations.put(key, location);
+            liveLength += location.length;
+            if (previous != null) {
+                liveLength -= previous.length;
+            }
+        }
+
+        public void apply(byte[] payload, long offset, int recordLength) {
+            String key = new String(payload, 5, ByteBuffer.wrap(payload, 1, 4).getInt(), StandardCharsets.UTF_8);
+            if (payload[0] == STORE_RECORD) {
+                put(key, new RecordLocation(offset, recordLength));
+            } else {
+                RecordLocation previous = locations.remove(key);
+                if (previous != null) {
+                    liveLength -= previous.length;
+                }
+            }
+        }
+
+        public long getLiveLength() {
+            return liveLength;
+        }
+
+        public List<Map.Entry<String, RecordLocation>> liveRecordsInLogOrder() {
+            List<Map.Entry<String, RecordLocation>> records = new ArrayList<>(locations.size());
+            locations.forEach((key, location) -> records.add(new AbstractMap.SimpleImmutableEntry<>(key, location)));
+            records.sort(Comparator.comparingLong(record -> record.getValue().offset));
+            return records;
+        }
+    }
+
+    private static class RecordLocation {
+        private final long offset;
+        private final int length;
+
+        public RecordLocation(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -30,9 +30,16 @@
 import org.gradle.internal.execution.UnitOfWork.ValueSupplier;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class DefaultInputFingerprinter implements InputFingerprinter {
@@ -40,15 +47,32 @@ public class DefaultInputFingerprinter implements InputFingerprinter {
     private final FileCollectionSnapshotter snapshotter;
     private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
     private final ValueSnapshotter valueSnapshotter;
+    @Nullable
+    private final BuildOperationExecutor buildOperationExecutor;
 
     public DefaultInputFingerprinter(
         FileCollectionSnapshotter snapshotter,
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
         ValueSnapshotter valueSnapshotter
+    ) {
+        this(snapshotter, fingerprinterRegistry, valueSnapshotter, null);
+    }
+
+    /**
+     * Creates an input fingerprinter which fingerprints the input file properties of a unit of work concurrently via the given executor.
+     * The file collections are still resolved one after another on the calling thread, only snapshotting and hashing their roots happens concurrently.
+     * Input file properties are fingerprinted one after another when no executor is given.
+     */
+    public DefaultInputFingerprinter(
+        FileCollectionSnapshotter snapshotter,
+        FileCollectionFingerprinterRegistry fingerprinterRegistry,
+        ValueSnapshotter valueSnapshotter,
+        @Nullable BuildOperationExecutor buildOperationExecutor
     ) {
         this.snapshotter = snapshotter;
         this.fingerprinterRegistry = fingerprinterRegistry;
         this.valueSnapshotter = valueSnapshotter;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
@@ -59,7 +83,7 @@ public Result fingerprintInputProperties(
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints,
         Consumer<InputVisitor> inputs
     ) {
-        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, previousFingerprints, snapshotter, fingerprinterRegistry, valueSnapshotter, knownCurrentValueSnapshots, knownCurrentFingerprints);
+        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, previousFingerprints, snapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor, knownCurrentValueSnapshots, knownCurrentFingerprints);
         inputs.accept(visitor);
         return visitor.complete();
     }
@@ -70,12 +94,15 @@ private static class InputCollectingVisitor implements InputVisitor {
         private final FileCollectionSnapshotter snapshotter;
         private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
         private final ValueSnapshotter valueSnapshotter;
+        @Nullable
+        private final BuildOperationExecutor buildOperationExecutor;
         private final ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots;
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints;
 
         private final ImmutableSortedMap.Builder<String, ValueSnapshot> valueSnapshotsBuilder = ImmutableSortedMap.naturalOrder();
         private final ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder = ImmutableSortedMap.naturalOrder();
         private final ImmutableSet.Builder<String> propertiesRequiringIsEmptyCheck = ImmutableSet.builder();
+        private final List<InputFileFingerprinting> inputFileFingerprintings = new ArrayList<>();
 
         public InputCollectingVisitor(
             ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots,
@@ -83,6 +110,7 @@ public InputCollectingVisitor(
             FileCollectionSnapshotter snapshotter,
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
             ValueSnapshotter valueSnapshotter,
+            @Nullable BuildOperationExecutor buildOperationExecutor,
             ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots,
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints
         ) {
@@ -91,6 +119,7 @@ public InputCollectingVisitor(
             this.snapshotter = snapshotter;
             this.fingerprinterRegistry = fingerprinterRegistry;
             this.valueSnapshotter = valueSnapshotter;
+            this.buildOperationExecutor = buildOperationExecutor;
             this.knownCurrentValueSnapshots = knownCurrentValueSnapshots;
             this.knownCurrentFingerprints = knownCurrentFingerprints;
         }
@@ -129,19 +158,33 @@ public void visitInputFileProperty(String propertyName, InputBehavior behavior,
                 value.getDirectorySensitivity(),
                 value.getLineEndingNormalization());
             FileCollectionFingerprinter fingerprinter = fingerprinterRegistry.getFingerprinter(normalizationSpec);
-            try {
-                FileCollectionSnapshotter.Result result = snapshotter.snapshot(value.getFiles());
-                CurrentFileCollectionFingerprint fingerprint = fingerprinter.fingerprint(result.getSnapshot(), previousFingerprint);
-                fingerprintsBuilder.put(propertyName, fingerprint);
-                if (result.containsArchiveTrees()) {
-                    propertiesRequiringIsEmptyCheck.add(propertyName);
+            if (buildOperationExecutor == null) {
+                try {
+                    FileCollectionSnapshotter.Result result = snapshotter.snapshot(value.getFiles());
+                    CurrentFileCollectionFingerprint fingerprint = fingerprinter.fingerprint(result.getSnapshot(), previousFingerprint);
+                    fingerprintsBuilder.put(propertyName, fingerprint);
+                    if (result.containsArchiveTrees()) {
+                        propertiesRequiringIsEmptyCheck.add(propertyName);
+                    }
+                } catch (Exception e) {
+                    throw new InputFileFingerprintingException(propertyName, e);
                 }
-            } catch (Exception e) {
-                throw new InputFileFingerprintingException(propertyName, e);
+            } else {
+                // Resolving the file collection may require access to the project state, so only snapshotting the resolved roots is deferred
+                InputFileFingerprinting fingerprinting = new InputFileFingerprinting(propertyName, fingerprinter, previousFingerprint);
+                try {
+                    fingerprinting.roots = snapshotter.resolveRoots(value.getFiles());
+                } catch (Exception e) {
+                    fingerprinting.failure = e;
+                }
+                inputFileFingerprintings.add(fingerprinting);
             }
         }
 
         public Result complete() {
+            if (!inputFileFingerprintings.isEmpty()) {
+                fingerprintInputFiles();
+            }
             return new InputFingerprints(
                 knownCurrentValueSnapshots,
                 valueSnapshotsBuilder.build(),
@@ -149,6 +192,69 @@ public Result complete() {
                 fingerprintsBuilder.build(),
                 propertiesRequiringIsEmptyCheck.build());
         }
+
+        private void fingerprintInputFiles() {
+            if (inputFileFingerprintings.size() == 1) {
+                inputFileFingerprintings.get(0).fingerprint();
+            } else {
+                assert buildOperationExecutor != null;
+                buildOperationExecutor.runAll(queue -> inputFileFingerprintings.forEach(queue::add));
+            }
+            // Collect the results in the order the properties have been visited, so the first failing property is reported
+            inputFileFingerprintings.forEach(this::collect);
+        }
+
+        private void collect(InputFileFingerprinting fingerprinting) {
+            if (fingerprinting.failure != null) {
+                throw new InputFileFingerprintingException(fingerprinting.propertyName, fingerprinting.failure);
+            }
+            fingerprintsBuilder.put(fingerprinting.propertyName, fingerprinting.fingerprint);
+            if (fingerprinting.containsArchiveTrees) {
+                propertiesRequiringIsEmptyCheck.add(fingerprinting.propertyName);
+            }
+        }
+
+        private static class InputFileFingerprinting implements RunnableBuildOperation {
+            private final String propertyName;
+            private final FileCollectionFingerprinter fingerprinter;
+            @Nullable
+            private final FileCollectionFingerprint previousFingerprint;
+
+            private FileCollectionSnapshotter.ResolvedRoots roots;
+            private CurrentFileCollectionFingerprint fingerprint;
+            private boolean containsArchiveTrees;
+            @Nullable
+            private Exception failure;
+
+            public InputFileFingerprinting(String propertyName, FileCollectionFingerprinter fingerprinter, @Nullable FileCollectionFingerprint previousFingerprint) {
+                this.propertyName = propertyName;
+                this.fingerprinter = fingerprinter;
+                this.previousFingerprint = previousFingerprint;
+            }
+
+            public void fingerprint() {
+                if (failure != null) {
+                    return;
+                }
+                try {
+                    FileCollectionSnapshotter.Result result = roots.snapshot();
+                    fingerprint = fingerprinter.fingerprint(result.getSnapshot(), previousFingerprint);
+                    containsArchiveTrees = result.containsArchiveTrees();
+                } catch (Exception e) {
+                    failure = e;
+                }
+            }
+
+            @Override
+            public void run(BuildOperationContext context) {
+                fingerprint();
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Fingerprint input file property '" + propertyName + "'");
+            }
+        }
     }
 
     @VisibleForTesting
@@ -31,6 +31,7 @@
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.NOPLogger;
 
+import javax.annotation.Nullable;
 import java.util.Formatter;
 import java.util.List;
 
@@ -43,15 +44,30 @@
 
     private final BuildCacheController buildCache;
     private final boolean buildScansEnabled;
+    @Nullable
+    private final String contentHashIdentifier;
     private final Step<? super CachingContext, ? extends UpToDateResult> delegate;
 
     public ResolveCachingStateStep(
         BuildCacheController buildCache,
         boolean buildScansEnabled,
         Step<? super CachingContext, ? extends UpToDateResult> delegate
+    ) {
+        this(buildCache, buildScansEnabled, null, delegate);
+    }
+
+    /**
+     * @param contentHashIdentifier identifies how file contents are hashed when not hashed the default way, see {@link DefaultCachingStateFactory}.
+     */
+    public ResolveCachingStateStep(
+        BuildCacheController buildCache,
+        boolean buildScansEnabled,
+        @Nullable String contentHashIdentifier,
+        Step<? super CachingContext, ? extends UpToDateResult> delegate
     ) {
         this.buildCache = buildCache;
         this.buildScansEnabled = buildScansEnabled;
+        this.contentHashIdentifier = contentHashIdentifier;
         this.delegate = delegate;
     }
 
@@ -81,7 +97,7 @@ private CachingState calculateCachingState(UnitOfWork work, BeforeExecutionState
         Logger logger = buildCache.isEmitDebugLogging()
             ? LOGGER
             : NOPLogger.NOP_LOGGER;
-        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger);
+        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger, contentHashIdentifier);
 
         ImmutableList.Builder<CachingDisabledReason> cachingDisabledReasonsBuilder = ImmutableList.builder();
         if (!buildCache.isEnabled()) {
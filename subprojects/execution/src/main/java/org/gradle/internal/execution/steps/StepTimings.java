@@ -0,0 +1,267 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.steps;
+
+import com.google.common.collect.ImmutableMap;
+import org.gradle.api.internal.GeneratedSubclasses;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.Cache;
+import org.gradle.internal.Deferrable;
+import org.gradle.internal.Try;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.execution.UnitOfWork;
+import org.gradle.internal.execution.UnitOfWork.Identity;
+import org.gradle.internal.operations.BuildOperationProgressEventEmitter;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the time spent in the steps of the execution engine.
+ *
+ * The time spent in a step does not include the time spent in the steps it delegates to.
+ * The time spent in each step while executing a unit of work is reported as {@link ProgressDetails} of the current build operation.
+ * When the execution is deferred, the time is reported once the deferred execution has finished.
+ * The time spent in each step for each type of work during the build is logged when the build finishes.
+ */
+public class StepTimings implements Stoppable {
+    private static final Logger LOGGER = Logging.getLogger(StepTimings.class);
+
+    public static final StepTimings DISABLED = new StepTimings(null);
+
+    private final BuildOperationProgressEventEmitter progressEventEmitter;
+    private final ThreadLocal<Frame> currentFrame = new ThreadLocal<>();
+    private final Map<String, Map<String, Timing>> timingsByWorkType = new ConcurrentHashMap<>();
+
+    public StepTimings(@Nullable BuildOperationProgressEventEmitter progressEventEmitter) {
+        this.progressEventEmitter = progressEventEmitter;
+    }
+
+    private boolean isEnabled() {
+        return progressEventEmitter != null;
+    }
+
+    public <C extends Context, R extends Result> Step<C, R> timed(Step<C, R> step) {
+        return isEnabled()
+            ? new TimedStep<>(step)
+            : step;
+    }
+
+    public <C extends Context, R extends Result> DeferredExecutionAwareStep<C, R> timed(DeferredExecutionAwareStep<C, R> step) {
+        return isEnabled()
+            ? new TimedDeferredExecutionAwareStep<>(step)
+            : step;
+    }
+
+    private Frame enter(UnitOfWork work) {
+        Frame parent = currentFrame.get();
+        Frame frame = new Frame(parent, work);
+        currentFrame.set(frame);
+        return frame;
+    }
+
+    private Frame resume(Frame suspended) {
+        Frame frame = new Frame(currentFrame.get(), suspended.work, suspended.stepDurations);
+        currentFrame.set(frame);
+        return frame;
+    }
+
+    private void leave(Frame frame, String stepName, long startTime) {
+        record(frame, stepName, startTime);
+        if (frame.isExecutionRoot()) {
+            executionFinished(frame.work, frame.stepDurations);
+        }
+    }
+
+    private void record(Frame frame, String stepName, long startTime) {
+        long duration = System.nanoTime() - startTime;
+        currentFrame.set(frame.parent);
+        frame.stepDurations.merge(stepName, duration - frame.nestedDuration, Long::sum);
+        if (frame.parent != null) {
+            frame.parent.nestedDuration += duration;
+        }
+    }
+
+    private void executionFinished(UnitOfWork work, Map<String, Long> stepDurations) {
+        String workType = workTypeOf(work);
+        Map<String, Timing> timings = timingsByWorkType.computeIfAbsent(workType, key -> new ConcurrentHashMap<>());
+        stepDurations.forEach((stepName, duration) -> timings.computeIfAbsent(stepName, key -> new Timing()).record(duration));
+        ImmutableMap<String, Long> reportedStepDurations = ImmutableMap.copyOf(stepDurations);
+        progressEventEmitter.emitNowForCurrent(new ProgressDetails() {
+            @Override
+            public String getWorkType() {
+                return workType;
+            }
+
+            @Override
+            public Map<String, Long> getStepDurationsNanos() {
+                return reportedStepDurations;
+            }
+        });
+    }
+
+    /**
+     * Uses the type of the first implementation of the work, which for tasks is the task type.
+     */
+    private static String workTypeOf(UnitOfWork work) {
+        String[] workType = new String[1];
+        work.visitImplementations(new UnitOfWork.ImplementationVisitor() {
+            @Override
+            public void visitImplementation(Class<?> implementation) {
+                if (workType[0] == null) {
+                    workType[0] = GeneratedSubclasses.unpack(implementation).getName();
+                }
+            }
+
+            @Override
+            public void visitImplementation(ImplementationSnapshot implementation) {
+                if (workType[0] == null) {
+                    workType[0] = implementation.getClassIdentifier();
+                }
+            }
+        });
+        return workType[0] == null
+            ? GeneratedSubclasses.unpackType(work).getName()
+            : workType[0];
+    }
+
+    @Override
+    public void stop() {
+        if (!isEnabled() || timingsByWorkType.isEmpty()) {
+            return;
+        }
+        LOGGER.lifecycle("EXECUTION STEP STATISTICS");
+        SortedMap<String, Map<String, Timing>> sortedTimings = new TreeMap<>(timingsByWorkType);
+        sortedTimings.forEach((workType, timings) -> {
+            LOGGER.lifecycle(workType + ":");
+            new TreeMap<>(timings).forEach((stepName, timing) ->
+                LOGGER.lifecycle(String.format("  %s: %,.2fms total in %d executions", stepName, timing.totalDuration.sum() / 1_000_000d, timing.count.sum())));
+        });
+        timingsByWorkType.clear();
+    }
+
+    /**
+     * The time spent in each step of the execution engine while executing a unit of work.
+     */
+    public interface ProgressDetails {
+        String getWorkType();
+
+        /**
+         * The time spent in each step, not including the time spent in the steps it delegates to.
+         */
+        Map<String, Long> getStepDurationsNanos();
+    }
+
+    private static class Frame {
+        private final Frame parent;
+        private final UnitOfWork work;
+        private final Map<String, Long> stepDurations;
+        private long nestedDuration;
+
+        public Frame(@Nullable Frame parent, UnitOfWork work) {
+            this(parent, work, parent != null && parent.work == work
+                ? parent.stepDurations
+                : new LinkedHashMap<>());
+        }
+
+        public Frame(@Nullable Frame parent, UnitOfWork work, Map<String, Long> stepDurations) {
+            this.parent = parent;
+            this.work = work;
+            this.stepDurations = stepDurations;
+        }
+
+        public boolean isExecutionRoot() {
+            return parent == null || parent.work != work;
+        }
+    }
+
+    private static class Timing {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalDuration = new LongAdder();
+
+        public void record(long duration) {
+            count.increment();
+            totalDuration.add(duration);
+        }
+    }
+
+    private class TimedStep<C extends Context, R extends Result> implements Step<C, R> {
+        private final Step<C, R> delegate;
+        protected final String stepName;
+
+        public TimedStep(Step<C, R> delegate) {
+            this.delegate = delegate;
+            this.stepName = delegate.getClass().getSimpleName();
+        }
+
+        @Override
+        public R execute(UnitOfWork work, C context) {
+            Frame frame = enter(work);
+            long startTime = System.nanoTime();
+            try {
+                return delegate.execute(work, context);
+            } finally {
+                leave(frame, stepName, startTime);
+            }
+        }
+    }
+
+    private class TimedDeferredExecutionAwareStep<C extends Context, R extends Result> extends TimedStep<C, R> implements DeferredExecutionAwareStep<C, R> {
+        private final DeferredExecutionAwareStep<C, R> delegate;
+
+        public TimedDeferredExecutionAwareStep(DeferredExecutionAwareStep<C, R> delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <T> Deferrable<Try<T>> executeDeferred(UnitOfWork work, C context, Cache<Identity, Try<T>> cache) {
+            Frame frame = enter(work);
+            long startTime = System.nanoTime();
+            Deferrable<Try<T>> result;
+            try {
+                result = delegate.executeDeferred(work, context, cache);
+            } catch (Throwable t) {
+                leave(frame, stepName, startTime);
+                throw t;
+            }
+            if (!frame.isExecutionRoot() || result.getCompleted().isPresent()) {
+                leave(frame, stepName, startTime);
+                return result;
+            }
+            record(frame, stepName, startTime);
+            // The execution continues when the result is requested, and is reported once it has finished.
+            // The time spent outside of the nested steps is attributed to this step.
+            return Deferrable.deferred(() -> {
+                Frame resumedFrame = resume(frame);
+                long resumeTime = System.nanoTime();
+                try {
+                    return result.completeAndGet();
+                } finally {
+                    leave(resumedFrame, stepName, resumeTime);
+                }
+            });
+        }
+    }
+}
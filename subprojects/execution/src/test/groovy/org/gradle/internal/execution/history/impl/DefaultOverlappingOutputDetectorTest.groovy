@@ -21,6 +21,7 @@ import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.file.impl.DefaultFileMetadata
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.snapshot.MissingFileSnapshot
 import org.gradle.internal.snapshot.RegularFileSnapshot
@@ -82,4 +83,68 @@ class DefaultOverlappingOutputDetectorTest extends Specification {
         "directory"      | new DirectorySnapshot("/absolute/path", "path", AccessType.DIRECT, TestHashCodes.hashCodeFrom(123), [])
         "broken symlink" | new MissingFileSnapshot("/absolute/path", "path", AccessType.VIA_SYMLINK)
     }
+
+    def "only compares the contents of directories which have changed"() {
+        def unchangedFile = file("/absolute/unchanged/file", 1)
+        def changedFile = file("/absolute/changed/file", 2)
+        def previousOutputFiles = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x10, [
+                directory("/absolute/changed", 0x20, [changedFile]),
+                directory("/absolute/unchanged", 0x30, [unchangedFile])
+            ])
+        )
+        def outputFilesBeforeExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x11, [
+                directory("/absolute/changed", 0x21, [changedFile, file("/absolute/changed/stale", 3)]),
+                // Same hash as before, so the contents are not compared
+                directory("/absolute/unchanged", 0x30, [file("/absolute/unchanged/another", 4), unchangedFile])
+            ])
+        )
+
+        when:
+        def overlaps = detector.detect(previousOutputFiles, outputFilesBeforeExecution)
+
+        then:
+        overlaps.propertyName == "output"
+        overlaps.overlappedFilePath == "/absolute/changed/stale"
+    }
+
+    def "detects no overlap when files have been removed"() {
+        def remainingFile = file("/absolute/remaining", 1)
+        def previousOutputFiles = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x10, [file("/absolute/removed", 2), remainingFile])
+        )
+        def outputFilesBeforeExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x11, [remainingFile])
+        )
+
+        expect:
+        detector.detect(previousOutputFiles, outputFilesBeforeExecution) == null
+    }
+
+    def "detects overlap in root previously captured as part of another root"() {
+        def previousOutputFiles = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x10, [
+                directory("/absolute/sub", 0x20, [file("/absolute/sub/file", 1)])
+            ])
+        )
+        def outputFilesBeforeExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute/sub", 0x21, [file("/absolute/sub/file", 1), file("/absolute/sub/stale", 2)])
+        )
+
+        when:
+        def overlaps = detector.detect(previousOutputFiles, outputFilesBeforeExecution)
+
+        then:
+        overlaps.propertyName == "output"
+        overlaps.overlappedFilePath == "/absolute/sub/stale"
+    }
+
+    private static DirectorySnapshot directory(String path, int hash, List<FileSystemLocationSnapshot> children) {
+        new DirectorySnapshot(path, path.substring(path.lastIndexOf('/') + 1), AccessType.DIRECT, TestHashCodes.hashCodeFrom(hash), children)
+    }
+
+    private static RegularFileSnapshot file(String path, int hash) {
+        new RegularFileSnapshot(path, path.substring(path.lastIndexOf('/') + 1), TestHashCodes.hashCodeFrom(hash), DefaultFileMetadata.file(0L, 0L, AccessType.DIRECT))
+    }
 }
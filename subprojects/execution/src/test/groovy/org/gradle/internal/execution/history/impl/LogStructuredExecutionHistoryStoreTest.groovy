@@ -0,0 +1,244 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import com.google.common.collect.Interners
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.execution.history.AfterExecutionState
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.gradle.internal.snapshot.impl.StringValueSnapshot
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.time.Duration
+
+@CleanupTestDirectory
+class LogStructuredExecutionHistoryStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheDir = temporaryFolder.createDir("executionHistory")
+    def logFile = cacheDir.file("executionHistory.log")
+    def cache = Stub(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+    }
+    def executorFactory = new DefaultExecutorFactory()
+    def stores = []
+
+    def cleanup() {
+        stores*.close()
+        executorFactory.stop()
+    }
+
+    def "loads stored history"() {
+        def store = createStore()
+
+        when:
+        store.store("first", true, executionState("first value"))
+        store.store("second", false, executionState("second value"))
+
+        then:
+        inputValue(store, "first") == "first value"
+        store.load("first").get().successful
+        inputValue(store, "second") == "second value"
+        !store.load("second").get().successful
+        !store.load("unknown").present
+
+        and:
+        def reopenedStore = createStore()
+        inputValue(reopenedStore, "first") == "first value"
+        inputValue(reopenedStore, "second") == "second value"
+    }
+
+    def "loads latest history and forgets removed history"() {
+        def store = createStore()
+
+        when:
+        store.store("first", true, executionState("old value"))
+        store.store("first", true, executionState("new value"))
+        store.store("second", true, executionState("value"))
+        store.remove("second")
+
+        then:
+        inputValue(store, "first") == "new value"
+        !store.load("second").present
+        inputValue(createStore(), "first") == "new value"
+        !createStore().load("second").present
+    }
+
+    def "compaction keeps the latest history only"() {
+        def store = createStore()
+        10.times { index ->
+            store.store("first", true, executionState("value ${index}"))
+        }
+        store.store("second", true, executionState("value"))
+        store.store("removed", true, executionState("value"))
+        store.remove("removed")
+        def lengthBeforeCompaction = logFile.length()
+
+        when:
+        store.compact()
+
+        then:
+        logFile.length() < lengthBeforeCompaction
+        inputValue(store, "first") == "value 9"
+        inputValue(store, "second") == "value"
+        !store.load("removed").present
+
+        when:
+        store.store("third", true, executionState("value"))
+
+        then:
+        inputValue(createStore(), "first") == "value 9"
+        inputValue(createStore(), "third") == "value"
+    }
+
+    def "sees history stored by other processes"() {
+        def store = createStore()
+        def otherStore = createStore()
+
+        when:
+        store.store("first", true, executionState("value"))
+        otherStore.store("first", true, executionState("other value"))
+        otherStore.store("second", true, executionState("other value"))
+
+        then:
+        inputValue(store, "first") == "other value"
+        inputValue(store, "second") == "other value"
+
+        when:
+        otherStore.compact()
+        otherStore.store("third", true, executionState("other value"))
+
+        then:
+        inputValue(store, "first") == "other value"
+        inputValue(store, "third") == "other value"
+    }
+
+    def "loads only look for history stored by other processes after the refresh interval"() {
+        def store = createStore(Long.MAX_VALUE)
+        def otherStore = createStore()
+
+        when:
+        store.store("first", true, executionState("value"))
+        otherStore.store("first", true, executionState("other value"))
+
+        then:
+        inputValue(store, "first") == "value"
+
+        when:
+        store.store("second", true, executionState("value"))
+
+        then:
+        inputValue(store, "first") == "other value"
+        inputValue(otherStore, "second") == "value"
+    }
+
+    def "compacts a log which another process has replaced"() {
+        def store = createStore()
+        10.times { index ->
+            store.store("first", true, executionState("value ${index}"))
+        }
+        def otherStore = createStore()
+        otherStore.store("second", true, executionState("other value"))
+        otherStore.compact()
+
+        when:
+        store.compact()
+
+        then:
+        inputValue(store, "first") == "value 9"
+        inputValue(store, "second") == "other value"
+        inputValue(createStore(), "first") == "value 9"
+    }
+
+    def "drops incomplete history at the end of the log"() {
+        def store = createStore()
+        store.store("first", true, executionState("value"))
+        store.store("second", true, executionState("value"))
+        store.close()
+
+        when:
+        def log = new RandomAccessFile(logFile, "rw")
+        log.setLength(log.length() - 3)
+        log.close()
+        def reopenedStore = createStore()
+
+        then:
+        inputValue(reopenedStore, "first") == "value"
+        !reopenedStore.load("second").present
+
+        when:
+        reopenedStore.store("second", true, executionState("new value"))
+
+        then:
+        inputValue(createStore(), "second") == "new value"
+    }
+
+    def "starts over when the log has an unknown format"() {
+        logFile.text = "unknown format"
+        def store = createStore()
+
+        expect:
+        !store.load("first").present
+
+        when:
+        store.store("first", true, executionState("value"))
+
+        then:
+        inputValue(createStore(), "first") == "value"
+    }
+
+    private LogStructuredExecutionHistoryStore createStore(long refreshIntervalNanos = 0) {
+        def store = new LogStructuredExecutionHistoryStore(
+            { cache },
+            Interners.newStrongInterner(),
+            Stub(ClassLoaderHierarchyHasher),
+            executorFactory,
+            Long.MAX_VALUE,
+            refreshIntervalNanos
+        )
+        stores << store
+        return store
+    }
+
+    private static String inputValue(LogStructuredExecutionHistoryStore store, String key) {
+        (store.load(key).get().inputProperties["input"] as StringValueSnapshot).value
+    }
+
+    private AfterExecutionState executionState(String inputValue) {
+        Stub(AfterExecutionState) {
+            getOriginMetadata() >> new OriginMetadata("build-id", Duration.ofMillis(10))
+            getImplementation() >> ImplementationSnapshot.of("Work", TestHashCodes.hashCodeFrom(1234))
+            getAdditionalImplementations() >> ImmutableList.of()
+            getInputProperties() >> ImmutableSortedMap.of("input", new StringValueSnapshot(inputValue))
+            getInputFileProperties() >> ImmutableSortedMap.of()
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of()
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
 import org.gradle.internal.fingerprint.DirectorySensitivity
 import org.gradle.internal.fingerprint.FileCollectionFingerprint
 import org.gradle.internal.fingerprint.LineEndingSensitivity
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.snapshot.ValueSnapshot
 import org.gradle.internal.snapshot.ValueSnapshotter
@@ -202,6 +203,81 @@ class DefaultInputFingerprinterTest extends Specification {
         ex.cause == failure
     }
 
+    def "resolves input file properties before fingerprinting them via build operations when an executor is given"() {
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, buildOperationExecutor)
+        def fileInputRoots = Mock(FileCollectionSnapshotter.ResolvedRoots)
+        def otherInput = Mock(FileCollection)
+        def otherInputRoots = Mock(FileCollectionSnapshotter.ResolvedRoots)
+        def otherInputSnapshotResult = Mock(FileCollectionSnapshotter.Result)
+        def otherInputSnapshot = Mock(FileSystemSnapshot)
+        def otherInputFingerprint = Mock(CurrentFileCollectionFingerprint)
+
+        when:
+        def result = fingerprintInputProperties { visitor ->
+            visitor.visitInputFileProperty(
+                "file",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(fileInput, FileNormalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { fileInput }))
+            visitor.visitInputFileProperty(
+                "other",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(otherInput, FileNormalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { otherInput }))
+        }
+
+        then:
+        1 * snapshotter.resolveRoots(fileInput) >> fileInputRoots
+        1 * snapshotter.resolveRoots(otherInput) >> otherInputRoots
+        0 * _
+
+        then:
+        1 * fileInputRoots.snapshot() >> fileInputSnapshotResult
+        _ * fileInputSnapshotResult.containsArchiveTrees() >> false
+        1 * fileInputSnapshotResult.snapshot >> fileInputSnapshot
+        1 * fingerprinter.fingerprint(fileInputSnapshot, null) >> fileInputFingerprint
+        1 * otherInputRoots.snapshot() >> otherInputSnapshotResult
+        _ * otherInputSnapshotResult.containsArchiveTrees() >> true
+        1 * otherInputSnapshotResult.snapshot >> otherInputSnapshot
+        1 * fingerprinter.fingerprint(otherInputSnapshot, null) >> otherInputFingerprint
+        0 * _
+
+        then:
+        result.fileFingerprints as Map == ["file": fileInputFingerprint, "other": otherInputFingerprint]
+        result.propertiesRequiringIsEmptyCheck == (["other"] as Set)
+        buildOperationExecutor.log.descriptors*.displayName == ["Fingerprint input file property 'file'", "Fingerprint input file property 'other'"]
+    }
+
+    def "reports the first failing input file property when resolving or fingerprinting via build operations"() {
+        inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, new TestBuildOperationExecutor())
+        def firstFailure = new UncheckedIOException(new IOException("First"))
+        def secondFailure = new UncheckedIOException(new IOException("Second"))
+        def fileInputRoots = Mock(FileCollectionSnapshotter.ResolvedRoots)
+        def otherInput = Mock(FileCollection)
+
+        when:
+        fingerprintInputProperties { visitor ->
+            visitor.visitInputFileProperty(
+                "file",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(fileInput, FileNormalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { fileInput }))
+            visitor.visitInputFileProperty(
+                "other",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(otherInput, FileNormalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { otherInput }))
+        }
+
+        then:
+        1 * snapshotter.resolveRoots(fileInput) >> fileInputRoots
+        1 * snapshotter.resolveRoots(otherInput) >> { throw secondFailure }
+        1 * fileInputRoots.snapshot() >> { throw firstFailure }
+        0 * _
+
+        then:
+        def ex = thrown InputFingerprinter.InputFileFingerprintingException
+        ex.propertyName == "file"
+        ex.cause == firstFailure
+    }
+
     private Result fingerprintInputProperties(
         ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots = ImmutableSortedMap.of(),
         ImmutableSortedMap<String, FileCollectionFingerprint> previousFingerprints = ImmutableSortedMap.of(),
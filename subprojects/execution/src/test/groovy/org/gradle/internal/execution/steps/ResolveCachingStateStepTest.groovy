@@ -18,9 +18,13 @@ package org.gradle.internal.execution.steps
 
 import com.google.common.collect.ImmutableList
 import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.internal.execution.UnitOfWork
 import org.gradle.internal.execution.caching.CachingDisabledReason
 import org.gradle.internal.execution.caching.CachingDisabledReasonCategory
+import org.gradle.internal.execution.history.BeforeExecutionState
+import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.reflect.validation.TypeValidationProblem
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
 
 import java.time.Duration
 
@@ -74,4 +78,28 @@ class ResolveCachingStateStepTest extends StepSpec<ValidationFinishedContext> {
             context.cachingState.whenDisabled().map { it.disabledReasons }.get() as List == [disabledReason]
         }) >> delegateResult
     }
+
+    def "cache key depends on how file contents are hashed"() {
+        def beforeExecutionState = Stub(BeforeExecutionState, defaultResponse: GuavaImmutablesResponse.INSTANCE) {
+            getImplementation() >> ImplementationSnapshot.of("WorkType", TestHashCodes.hashCodeFrom(1234))
+            getDetectedOverlappingOutputs() >> Optional.empty()
+        }
+        def keys = []
+        _ * buildCache.enabled >> true
+        _ * context.beforeExecutionState >> Optional.of(beforeExecutionState)
+        _ * context.validationProblems >> ImmutableList.of()
+        _ * work.shouldDisableCaching(null) >> Optional.empty()
+
+        when:
+        new ResolveCachingStateStep(buildCache, false, null, delegate).execute(work, context)
+        new ResolveCachingStateStep(buildCache, false, "murmur3", delegate).execute(work, context)
+        new ResolveCachingStateStep(buildCache, false, null, delegate).execute(work, context)
+        then:
+        3 * delegate.execute(work, _) >> { UnitOfWork work, CachingContext context ->
+            keys << context.cachingState.whenEnabled().get().key
+            delegateResult
+        }
+        keys[0] != keys[1]
+        keys[0].hashCode == keys[2].hashCode
+    }
 }
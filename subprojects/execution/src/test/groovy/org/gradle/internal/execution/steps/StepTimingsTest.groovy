@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.steps
+
+import org.gradle.cache.Cache
+import org.gradle.internal.Deferrable
+import org.gradle.internal.Try
+import org.gradle.internal.execution.UnitOfWork
+import org.gradle.internal.operations.BuildOperationProgressEventEmitter
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class StepTimingsTest extends Specification {
+    def progressEventEmitter = Mock(BuildOperationProgressEventEmitter)
+    def timings = new StepTimings(progressEventEmitter)
+    def work = Stub(UnitOfWork) {
+        visitImplementations(_ as UnitOfWork.ImplementationVisitor) >> { UnitOfWork.ImplementationVisitor visitor -> visitor.visitImplementation(StepTimingsTest) }
+    }
+    def context = Stub(Context)
+    def result = Stub(Result)
+
+    def "reports time spent in each step without the time spent in the steps it delegates to"() {
+        def step = timings.timed(new DelegatingStep(timings.timed(new SleepingStep(result))))
+        StepTimings.ProgressDetails details = null
+
+        when:
+        def actualResult = step.execute(work, context)
+
+        then:
+        actualResult == result
+        1 * progressEventEmitter.emitNowForCurrent(_ as StepTimings.ProgressDetails) >> { arguments -> details = arguments[0] }
+        0 * _
+
+        details.workType == StepTimingsTest.name
+        details.stepDurationsNanos.keySet() as List == ["SleepingStep", "DelegatingStep"]
+        details.stepDurationsNanos["SleepingStep"] >= TimeUnit.MILLISECONDS.toNanos(SleepingStep.SLEEP_MILLIS)
+        details.stepDurationsNanos["DelegatingStep"] < details.stepDurationsNanos["SleepingStep"]
+    }
+
+    def "reports each execution separately"() {
+        def step = timings.timed(new SleepingStep(result))
+
+        when:
+        step.execute(work, context)
+        step.execute(work, context)
+
+        then:
+        2 * progressEventEmitter.emitNowForCurrent({ StepTimings.ProgressDetails details -> details.stepDurationsNanos.keySet() == ["SleepingStep"] as Set })
+    }
+
+    def "reports deferred execution once it has finished"() {
+        def step = timings.timed(new DeferringStep(timings.timed(new SleepingStep(result))))
+
+        when:
+        def deferred = step.executeDeferred(work, context, Stub(Cache))
+
+        then:
+        0 * progressEventEmitter.emitNowForCurrent(_)
+
+        when:
+        deferred.completeAndGet()
+        deferred.completeAndGet()
+
+        then:
+        1 * progressEventEmitter.emitNowForCurrent({ StepTimings.ProgressDetails details -> details.stepDurationsNanos.keySet() == ["DeferringStep", "SleepingStep"] as Set })
+        0 * _
+    }
+
+    def "reports execution which completes without being deferred right away"() {
+        def step = timings.timed(new DeferringStep(timings.timed(new SleepingStep(result)), true))
+
+        when:
+        step.executeDeferred(work, context, Stub(Cache))
+
+        then:
+        1 * progressEventEmitter.emitNowForCurrent({ StepTimings.ProgressDetails details -> details.stepDurationsNanos.keySet() == ["DeferringStep"] as Set })
+        0 * _
+    }
+
+    def "does not wrap steps when disabled"() {
+        def step = new SleepingStep(result)
+
+        expect:
+        StepTimings.DISABLED.timed(step).is(step)
+    }
+
+    private static class DelegatingStep implements Step<Context, Result> {
+        private final Step<Context, Result> delegate
+
+        DelegatingStep(Step<Context, Result> delegate) {
+            this.delegate = delegate
+        }
+
+        @Override
+        Result execute(UnitOfWork work, Context context) {
+            delegate.execute(work, context)
+        }
+    }
+
+    private static class DeferringStep extends DelegatingStep implements DeferredExecutionAwareStep<Context, Result> {
+        private final boolean completed
+
+        DeferringStep(Step<Context, Result> delegate, boolean completed = false) {
+            super(delegate)
+            this.completed = completed
+        }
+
+        @Override
+        <T> Deferrable<Try<T>> executeDeferred(UnitOfWork work, Context context, Cache<UnitOfWork.Identity, Try<T>> cache) {
+            completed
+                ? Deferrable.completed(Try.successful(null))
+                : Deferrable.deferred {
+                    execute(work, context)
+                    Try.successful(null)
+                }
+        }
+    }
+
+    private static class SleepingStep implements Step<Context, Result> {
+        static final long SLEEP_MILLIS = 20
+        private final Result result
+
+        SleepingStep(Result result) {
+            this.result = result
+        }
+
+        @Override
+        Result execute(UnitOfWork work, Context context) {
+            Thread.sleep(SLEEP_MILLIS)
+            result
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch
+
+import com.gradle.enterprise.testing.annotations.LocalOnly
+import org.gradle.integtests.fixtures.BuildOperationsFixture
+import org.gradle.internal.watch.vfs.BuildFinishedFileSystemWatchingBuildOperationType
+
+@LocalOnly
+class PersistedVirtualFileSystemIntegrationTest extends AbstractFileSystemWatchingIntegrationTest {
+
+    def operations = new BuildOperationsFixture(executer, temporaryFolder)
+
+    def setup() {
+        executer.requireDaemon()
+        executer.beforeExecute {
+            withBuildJvmOpts("-Dorg.gradle.vfs.persist=true")
+        }
+        buildFile << """
+            task myTask {
+                def inputFile = file("input.txt")
+                def outputFile = file("build/output.txt")
+                inputs.file(inputFile)
+                outputs.file(outputFile)
+                doLast {
+                    outputFile.text = inputFile.text
+                }
+            }
+        """
+        file("input.txt").text = "input"
+    }
+
+    def "keeps watching the restored state after the daemon has been restarted"() {
+        when:
+        withWatchFs().run("myTask")
+        then:
+        executedAndNotSkipped(":myTask")
+
+        when:
+        executer.withArguments("--stop").run()
+        withWatchFs().run("myTask", "--info")
+        def restoredMatcher = result.output =~ /Restored (\d+) snapshots of the virtual file system in (\d+) watched hierarchies/
+        def finishedResult = operations.first(BuildFinishedFileSystemWatchingBuildOperationType).result
+        then:
+        skipped(":myTask")
+        restoredMatcher.find()
+        (restoredMatcher.group(1) as int) > 0
+        (restoredMatcher.group(2) as int) > 0
+        !result.output.contains("Found existing snapshot")
+        !result.output.contains("Stopping file watching and invalidating VFS after an error happened")
+        finishedResult.watchingEnabled
+        !finishedResult.stoppedWatchingDuringTheBuild
+        finishedResult.statistics.numberOfWatchedHierarchies > 0
+        finishedResult.statistics.retainedRegularFiles > 0
+
+        when:
+        file("input.txt").text = "changed"
+        waitForChangesToBePickedUp()
+        withWatchFs().run("myTask")
+        then:
+        executedAndNotSkipped(":myTask")
+        file("build/output.txt").text == "changed"
+    }
+}
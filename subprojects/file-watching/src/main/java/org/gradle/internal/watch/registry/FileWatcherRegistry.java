@@ -82,6 +82,11 @@ enum Type {
     @CheckReturnValue
     SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchMode watchMode, int maximumNumberOfWatchedHierarchies, List<File> unsupportedFileSystems);
 
+    /**
+     * The registered watchable hierarchies, most recently used first.
+     */
+    Collection<File> getWatchableHierarchies();
+
     /**
      * Get statistics about the received changes.
      */
@@ -106,6 +106,13 @@ public interface FileWatcherUpdater {
     @CheckReturnValue
     SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchMode watchMode, int maximumNumberOfWatchedHierarchies, List<File> unsupportedFileSystems);
 
+    /**
+     * The registered watchable hierarchies, most recently used first.
+     *
+     * @see FileWatcherRegistry#getWatchableHierarchies()
+     */
+    Collection<File> getWatchableHierarchies();
+
     /**
      * The files actually being watched right now.
      *
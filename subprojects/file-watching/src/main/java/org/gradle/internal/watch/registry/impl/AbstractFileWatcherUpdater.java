@@ -17,6 +17,7 @@
 package org.gradle.internal.watch.registry.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.gradle.internal.file.FileHierarchySet;
 import org.gradle.internal.file.FileMetadata;
@@ -108,6 +109,11 @@ public SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchM
         return newRoot;
     }
 
+    @Override
+    public Collection<File> getWatchableHierarchies() {
+        return watchableHierarchies.stream().collect(ImmutableList.toImmutableList());
+    }
+
     @Override
     public FileHierarchySet getWatchedFiles() {
         return watchedFiles;
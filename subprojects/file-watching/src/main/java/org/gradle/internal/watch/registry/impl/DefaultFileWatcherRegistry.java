@@ -153,6 +153,11 @@ public void virtualFileSystemContentsChanged(Collection<FileSystemLocationSnapsh
         fileWatcherUpdater.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, root);
     }
 
+    @Override
+    public Collection<File> getWatchableHierarchies() {
+        return fileWatcherUpdater.getWatchableHierarchies();
+    }
+
     @Override
     public SnapshotHierarchy updateVfsOnBuildStarted(SnapshotHierarchy root, WatchMode watchMode, List<File> unsupportedFileSystems) {
         return fileWatcherUpdater.updateVfsOnBuildStarted(root, watchMode, unsupportedFileSystems);
@@ -23,4 +23,14 @@ public interface FileSystemWatchingStatistics {
     int getRetainedRegularFiles();
     int getRetainedDirectories();
     int getRetainedMissingFiles();
+
+    /**
+     * The number of hierarchies dropped from the virtual file system to stay within its retention budget.
+     */
+    int getEvictedHierarchies();
+
+    /**
+     * The number of files, directories and missing files dropped from the virtual file system to stay within its retention budget.
+     */
+    int getEvictedEntries();
 }
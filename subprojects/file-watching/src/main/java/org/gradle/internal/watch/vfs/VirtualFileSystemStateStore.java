@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs;
+
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the contents of the virtual file system across daemon restarts.
+ */
+public interface VirtualFileSystemStateStore {
+    VirtualFileSystemStateStore NONE = new VirtualFileSystemStateStore() {
+        @Override
+        public SnapshotHierarchy restore(SnapshotHierarchy root, Predicate<File> watchableHierarchyRegistrar, SnapshotHierarchy.NodeDiffListener diffListener) {
+            return root;
+        }
+
+        @Override
+        public void persist(SnapshotHierarchy root, Collection<File> watchableHierarchies) {
+        }
+    };
+
+    /**
+     * Adds the persisted snapshots which are still up-to-date with the file system to the given hierarchy.
+     *
+     * The watchable hierarchies which have been persisted are passed to the registrar first, least recently used first.
+     * Only snapshots within the hierarchies the registrar accepted are restored,
+     * since anything else in the virtual file system wouldn't be watched.
+     */
+    SnapshotHierarchy restore(SnapshotHierarchy root, Predicate<File> watchableHierarchyRegistrar, SnapshotHierarchy.NodeDiffListener diffListener);
+
+    /**
+     * Persists the snapshots of the given hierarchy within the given watchable hierarchies, which are ordered most recently used first.
+     *
+     * Only called while the hierarchy is kept up-to-date by watching the file system.
+     */
+    void persist(SnapshotHierarchy root, Collection<File> watchableHierarchies);
+}
@@ -28,13 +28,26 @@
 public class DefaultFileSystemWatchingStatistics implements FileSystemWatchingStatistics {
     private final FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics;
     private final VirtualFileSystemStatistics vfsStatistics;
+    private final int evictedHierarchies;
+    private final int evictedEntries;
 
     public DefaultFileSystemWatchingStatistics(
         FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics,
         SnapshotHierarchy vfsRoot
+    ) {
+        this(fileWatchingStatistics, vfsRoot, 0, 0);
+    }
+
+    public DefaultFileSystemWatchingStatistics(
+        FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics,
+        SnapshotHierarchy vfsRoot,
+        int evictedHierarchies,
+        int evictedEntries
     ) {
         this.fileWatchingStatistics = fileWatchingStatistics;
         this.vfsStatistics = getStatistics(vfsRoot);
+        this.evictedHierarchies = evictedHierarchies;
+        this.evictedEntries = evictedEntries;
     }
 
     @Override
@@ -62,6 +75,16 @@ public int getRetainedMissingFiles() {
         return vfsStatistics.getRetained(FileType.Missing);
     }
 
+    @Override
+    public int getEvictedHierarchies() {
+        return evictedHierarchies;
+    }
+
+    @Override
+    public int getEvictedEntries() {
+        return evictedEntries;
+    }
+
     private static VirtualFileSystemStatistics getStatistics(SnapshotHierarchy root) {
         EnumMultiset<FileType> retained = EnumMultiset.create(FileType.class);
         root.rootSnapshots()
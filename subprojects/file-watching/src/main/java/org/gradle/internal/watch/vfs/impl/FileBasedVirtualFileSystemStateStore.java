@@ -0,0 +1,386 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Lists;
+import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Persists the virtual file system to a single file.
+ *
+ * Only the snapshots within the watchable hierarchies are persisted, together with the hierarchies themselves.
+ * When restoring, the hierarchies are registered for watching before any snapshot is restored,
+ * so the restored snapshots are watched like the ones created by the build.
+ *
+ * Restoring the state doesn't hash anything. Instead, every persisted location is checked against its current metadata:
+ * regular files by their length and modification time, directories by their modification time, which changes
+ * whenever children are added or removed, and missing files by still being missing.
+ * Locations which don't match anymore are left out of the restored hierarchy, so they are snapshotted again when queried.
+ * The parts of an outdated directory which still match are restored on their own.
+ */
+public class FileBasedVirtualFileSystemStateStore implements VirtualFileSystemStateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileBasedVirtualFileSystemStateStore.class);
+
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * Changes to a file shortly before the state has been persisted may not be visible in its modification time,
+     * since many file systems store modification times with a coarse resolution.
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION_MILLIS = 2000;
+    private static final long UNKNOWN_MODIFICATION_TIME = Long.MIN_VALUE;
+
+    private enum EntryType {
+        DIRECTORY,
+        REGULAR_FILE,
+        MISSING,
+        END_OF_DIRECTORY,
+        END
+    }
+
+    private final File stateFile;
+    private final Stat stat;
+    private final Interner<String> stringInterner;
+
+    public FileBasedVirtualFileSystemStateStore(File stateFile, Stat stat, Interner<String> stringInterner) {
+        this.stateFile = stateFile;
+        this.stat = stat;
+        this.stringInterner = stringInterner;
+    }
+
+    @Override
+    public SnapshotHierarchy restore(SnapshotHierarchy root, Predicate<File> watchableHierarchyRegistrar, SnapshotHierarchy.NodeDiffListener diffListener) {
+        if (!stateFile.isFile()) {
+            return root;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (input.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring virtual file system state in {} with an unknown format", stateFile);
+                return root;
+            }
+            return new StateReader(input, input.readLong(), diffListener).readInto(root, watchableHierarchyRegistrar);
+        } catch (Exception e) {
+            LOGGER.info("Unable to restore the virtual file system state from {}", stateFile, e);
+            return root;
+        }
+    }
+
+    @Override
+    public void persist(SnapshotHierarchy root, Collection<File> watchableHierarchies) {
+        File stateDir = stateFile.getParentFile();
+        File tempFile = null;
+        try {
+            Files.createDirectories(stateDir.toPath());
+            tempFile = File.createTempFile(stateFile.getName(), ".tmp", stateDir);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(System.currentTimeMillis());
+                FileHierarchySet persistedHierarchies = FileHierarchySet.empty();
+                output.writeInt(watchableHierarchies.size());
+                // Least recently used first, so registering them in order when restoring keeps the usage order
+                for (File watchableHierarchy : Lists.reverse(new ArrayList<>(watchableHierarchies))) {
+                    output.writeUTF(watchableHierarchy.getAbsolutePath());
+                    persistedHierarchies = persistedHierarchies.plus(watchableHierarchy);
+                }
+                Iterator<FileSystemLocationSnapshot> rootSnapshots = root.rootSnapshots().iterator();
+                while (rootSnapshots.hasNext()) {
+                    FileSystemLocationSnapshot rootSnapshot = rootSnapshots.next();
+                    if (persistedHierarchies.contains(rootSnapshot.getAbsolutePath())) {
+                        writeEntry(output, rootSnapshot, rootSnapshot.getAbsolutePath());
+                    }
+                }
+                writeEntryType(output, EntryType.END);
+            }
+            // Other daemons may persist their state at the same time, the last one wins
+            Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.info("Unable to persist the virtual file system state to {}", stateFile, e);
+            if (tempFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static void writeEntry(DataOutputStream output, FileSystemLocationSnapshot snapshot, String path) throws IOException {
+        snapshot.accept(new FileSystemLocationSnapshot.FileSystemLocationSnapshotVisitor() {
+            @Override
+            public void visitDirectory(DirectorySnapshot directorySnapshot) {
+                try {
+                    writeEntryType(output, EntryType.DIRECTORY);
+                    output.writeUTF(path);
+                    writeAccessType(output, directorySnapshot.getAccessType());
+                    writeHashCode(output, directorySnapshot.getHash());
+                    output.writeLong(directoryModificationTime(directorySnapshot.getAbsolutePath()));
+                    for (FileSystemLocationSnapshot child : directorySnapshot.getChildren()) {
+                        writeEntry(output, child, child.getName());
+                    }
+                    writeEntryType(output, EntryType.END_OF_DIRECTORY);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                try {
+                    writeEntryType(output, EntryType.REGULAR_FILE);
+                    output.writeUTF(path);
+                    writeAccessType(output, fileSnapshot.getAccessType());
+                    writeHashCode(output, fileSnapshot.getHash());
+                    output.writeLong(fileSnapshot.getMetadata().getLastModified());
+                    output.writeLong(fileSnapshot.getMetadata().getLength());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void visitMissing(MissingFileSnapshot missingSnapshot) {
+                try {
+                    writeEntryType(output, EntryType.MISSING);
+                    output.writeUTF(path);
+                    writeAccessType(output, missingSnapshot.getAccessType());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static long directoryModificationTime(String absolutePath) {
+        try {
+            return Files.getLastModifiedTime(new File(absolutePath).toPath()).toMillis();
+        } catch (IOException e) {
+            return UNKNOWN_MODIFICATION_TIME;
+        }
+    }
+
+    private static void writeEntryType(DataOutputStream output, EntryType type) throws IOException {
+        output.writeByte(type.ordinal());
+    }
+
+    private static void writeAccessType(DataOutputStream output, AccessType accessType) throws IOException {
+        output.writeByte(accessType.ordinal());
+    }
+
+    private static void writeHashCode(DataOutputStream output, HashCode hashCode) throws IOException {
+        byte[] bytes = hashCode.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private class StateReader {
+        private final DataInputStream input;
+        private final long persistedAt;
+        private final SnapshotHierarchy.NodeDiffListener diffListener;
+        private SnapshotHierarchy root;
+        private int restoredSnapshots;
+
+        public StateReader(DataInputStream input, long persistedAt, SnapshotHierarchy.NodeDiffListener diffListener) {
+            this.input = input;
+            this.persistedAt = persistedAt;
+            this.diffListener = diffListener;
+        }
+
+        public SnapshotHierarchy readInto(SnapshotHierarchy initialRoot, Predicate<File> watchableHierarchyRegistrar) throws IOException {
+            root = initialRoot;
+            List<File> persistedHierarchies = new ArrayList<>();
+            int numberOfHierarchies = input.readInt();
+            for (int i = 0; i < numberOfHierarchies; i++) {
+                persistedHierarchies.add(new File(input.readUTF()));
+            }
+            // All hierarchies are registered before restoring anything, so no restored snapshot is found in a hierarchy while registering it
+            FileHierarchySet registeredHierarchies = FileHierarchySet.empty();
+            int numberOfRegisteredHierarchies = 0;
+            for (File watchableHierarchy : persistedHierarchies) {
+                if (watchableHierarchy.isDirectory() && watchableHierarchyRegistrar.test(watchableHierarchy)) {
+                    registeredHierarchies = registeredHierarchies.plus(watchableHierarchy);
+                    numberOfRegisteredHierarchies++;
+                }
+            }
+            while (true) {
+                EntryType type = readEntryType();
+                if (type == EntryType.END) {
+                    break;
+                }
+                String absolutePath = stringInterner.intern(input.readUTF());
+                if (!registeredHierarchies.contains(absolutePath)) {
+                    skipEntry(type);
+                    continue;
+                }
+                FileSystemLocationSnapshot snapshot = readEntry(type, absolutePath, stringInterner.intern(PathUtil.getFileName(absolutePath)));
+                if (snapshot != null) {
+                    restore(snapshot);
+                }
+            }
+            LOGGER.info("Restored {} snapshots of the virtual file system in {} watched hierarchies from {}", restoredSnapshots, numberOfRegisteredHierarchies, stateFile);
+            return root;
+        }
+
+        private void skipEntry(EntryType type) throws IOException {
+            input.readByte();
+            switch (type) {
+                case DIRECTORY:
+                    readHashCode();
+                    input.readLong();
+                    while (true) {
+                        EntryType childType = readEntryType();
+                        if (childType == EntryType.END_OF_DIRECTORY) {
+                            break;
+                        }
+                        input.readUTF();
+                        skipEntry(childType);
+                    }
+                    break;
+                case REGULAR_FILE:
+                    readHashCode();
+                    input.readLong();
+                    input.readLong();
+                    break;
+                case MISSING:
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected entry type " + type);
+            }
+        }
+
+        /**
+         * Reads the entry and returns its snapshot when it still matches the file system.
+         *
+         * When an entry doesn't match anymore, the parts of it which still do are restored separately and {@code null} is returned.
+         */
+        @Nullable
+        private FileSystemLocationSnapshot readEntry(EntryType type, String absolutePath, String name) throws IOException {
+            AccessType accessType = AccessType.values()[input.readByte()];
+            switch (type) {
+                case DIRECTORY:
+                    HashCode merkleHash = readHashCode();
+                    long directoryLastModified = input.readLong();
+                    boolean upToDate = isDirectoryUpToDate(absolutePath, accessType, directoryLastModified);
+                    List<FileSystemLocationSnapshot> children = new ArrayList<>();
+                    while (true) {
+                        EntryType childType = readEntryType();
+                        if (childType == EntryType.END_OF_DIRECTORY) {
+                            break;
+                        }
+                        String childName = stringInterner.intern(input.readUTF());
+                        String childPath = stringInterner.intern(absolutePath + File.separatorChar + childName);
+                        FileSystemLocationSnapshot child = readEntry(childType, childPath, childName);
+                        if (child == null) {
+                            upToDate = false;
+                        } else {
+                            children.add(child);
+                        }
+                    }
+                    if (upToDate) {
+                        return new DirectorySnapshot(absolutePath, name, accessType, merkleHash, children);
+                    }
+                    children.forEach(this::restore);
+                    return null;
+                case REGULAR_FILE:
+                    HashCode contentHash = readHashCode();
+                    long lastModified = input.readLong();
+                    long length = input.readLong();
+                    return isRegularFileUpToDate(absolutePath, accessType, lastModified, length)
+                        ? new RegularFileSnapshot(absolutePath, name, contentHash, DefaultFileMetadata.file(lastModified, length, accessType))
+                        : null;
+                case MISSING:
+                    return isMissingFileUpToDate(absolutePath, accessType)
+                        ? new MissingFileSnapshot(absolutePath, name, accessType)
+                        : null;
+                default:
+                    throw new IllegalStateException("Unexpected entry type " + type + " for " + absolutePath);
+            }
+        }
+
+        private void restore(FileSystemLocationSnapshot snapshot) {
+            root = root.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+            restoredSnapshots++;
+        }
+
+        private boolean isDirectoryUpToDate(String absolutePath, AccessType accessType, long lastModified) {
+            if (lastModified == UNKNOWN_MODIFICATION_TIME || lastModified >= persistedAt - MODIFICATION_TIME_RESOLUTION_MILLIS) {
+                return false;
+            }
+            FileMetadata metadata = stat.stat(new File(absolutePath));
+            return metadata.getType() == FileType.Directory
+                && metadata.getAccessType() == accessType
+                && directoryModificationTime(absolutePath) == lastModified;
+        }
+
+        private boolean isRegularFileUpToDate(String absolutePath, AccessType accessType, long lastModified, long length) {
+            if (lastModified >= persistedAt - MODIFICATION_TIME_RESOLUTION_MILLIS) {
+                return false;
+            }
+            FileMetadata metadata = stat.stat(new File(absolutePath));
+            return metadata.getType() == FileType.RegularFile
+                && metadata.getAccessType() == accessType
+                && metadata.getLastModified() == lastModified
+                && metadata.getLength() == length;
+        }
+
+        private boolean isMissingFileUpToDate(String absolutePath, AccessType accessType) {
+            FileMetadata metadata = stat.stat(new File(absolutePath));
+            return metadata.getType() == FileType.Missing
+                && metadata.getAccessType() == accessType;
+        }
+
+        private EntryType readEntryType() throws IOException {
+            return EntryType.values()[input.readByte()];
+        }
+
+        private HashCode readHashCode() throws IOException {
+            byte[] bytes = new byte[input.readUnsignedByte()];
+            input.readFully(bytes);
+            return HashCode.fromBytes(bytes);
+        }
+    }
+}
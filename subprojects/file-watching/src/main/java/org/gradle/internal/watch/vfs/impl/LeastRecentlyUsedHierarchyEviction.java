@@ -0,0 +1,231 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.gradle.internal.watch.registry.impl.WatchableHierarchies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckReturnValue;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.gradle.internal.snapshot.SnapshotVisitResult.CONTINUE;
+
+/**
+ * Keeps the number of entries the virtual file system retains between builds within a budget.
+ *
+ * Everything retained between builds is in a watched hierarchy.
+ * When the budget is exceeded at the end of a build, whole hierarchies are dropped from the virtual file system,
+ * least recently used first, until the retained entries fit into the budget again.
+ * Hierarchies used by the current build are never dropped, so the budget may still be exceeded when the current build alone exceeds it.
+ *
+ * The entries of a hierarchy are counted once and the count is kept until snapshots in the hierarchy are stored or invalidated,
+ * so only the hierarchies which changed since the end of the last build are counted again.
+ */
+public class LeastRecentlyUsedHierarchyEviction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeastRecentlyUsedHierarchyEviction.class);
+
+    private final int maximumNumberOfRetainedEntries;
+
+    /**
+     * Hierarchies in usage order, least recent first.
+     */
+    private final Set<File> hierarchies = new LinkedHashSet<>();
+    private final Set<File> hierarchiesUsedByCurrentBuild = new HashSet<>();
+
+    /**
+     * Number of entries in the hierarchies which did not change since they have been counted.
+     */
+    private final Map<File, Integer> entriesPerHierarchy = new HashMap<>();
+
+    private int evictedHierarchies;
+    private int evictedEntries;
+
+    public LeastRecentlyUsedHierarchyEviction(int maximumNumberOfRetainedEntries) {
+        this.maximumNumberOfRetainedEntries = maximumNumberOfRetainedEntries;
+    }
+
+    public static LeastRecentlyUsedHierarchyEviction unlimited() {
+        return new LeastRecentlyUsedHierarchyEviction(Integer.MAX_VALUE);
+    }
+
+    public void hierarchyUsed(File hierarchy) {
+        hierarchies.remove(hierarchy);
+        hierarchies.add(hierarchy);
+        hierarchiesUsedByCurrentBuild.add(hierarchy);
+    }
+
+    /**
+     * Tracks a hierarchy restored from a previous daemon, without counting it as used by the current build.
+     */
+    public void hierarchyRestored(File hierarchy) {
+        hierarchies.add(hierarchy);
+    }
+
+    /**
+     * Drops the counts of the hierarchies containing the changed snapshots, so they are counted again at the end of the build.
+     */
+    public void snapshotsChanged(Collection<FileSystemLocationSnapshot> removedSnapshots, Collection<FileSystemLocationSnapshot> addedSnapshots) {
+        removedSnapshots.forEach(snapshot -> locationChanged(snapshot.getAbsolutePath()));
+        addedSnapshots.forEach(snapshot -> locationChanged(snapshot.getAbsolutePath()));
+    }
+
+    /**
+     * Drops the counts of all hierarchies, for when the virtual file system has been updated without reporting the changed snapshots.
+     */
+    public void allHierarchiesChanged() {
+        entriesPerHierarchy.clear();
+    }
+
+    /**
+     * Stops tracking the hierarchies which are not watched anymore, since nothing is retained in them.
+     */
+    private void retainWatchedHierarchies(Collection<File> watchedHierarchies) {
+        Set<File> watched = new HashSet<>(watchedHierarchies);
+        for (Iterator<File> iterator = hierarchies.iterator(); iterator.hasNext(); ) {
+            File hierarchy = iterator.next();
+            if (!watched.contains(hierarchy)) {
+                iterator.remove();
+                entriesPerHierarchy.remove(hierarchy);
+                locationChanged(hierarchy.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Drops the least recently used hierarchies until the retained entries fit into the budget.
+     *
+     * @param watchedHierarchies the hierarchies which are still watched, only queried when there is a budget.
+     */
+    @CheckReturnValue
+    public SnapshotHierarchy evictOnBuildFinished(SnapshotHierarchy root, Supplier<Collection<File>> watchedHierarchies, WatchableHierarchies.Invalidator invalidator) {
+        evictedHierarchies = 0;
+        evictedEntries = 0;
+        try {
+            if (maximumNumberOfRetainedEntries == Integer.MAX_VALUE) {
+                return root;
+            }
+            retainWatchedHierarchies(watchedHierarchies.get());
+            int retainedEntries = 0;
+            for (File hierarchy : hierarchies) {
+                // Entries of nested hierarchies are already counted in the enclosing hierarchy
+                if (!isNestedInOtherHierarchy(hierarchy)) {
+                    retainedEntries += entriesIn(hierarchy, root);
+                }
+            }
+            if (retainedEntries <= maximumNumberOfRetainedEntries) {
+                return root;
+            }
+            SnapshotHierarchy newRoot = root;
+            Iterator<File> iterator = hierarchies.iterator();
+            while (retainedEntries > maximumNumberOfRetainedEntries && iterator.hasNext()) {
+                File hierarchy = iterator.next();
+                if (hierarchiesUsedByCurrentBuild.contains(hierarchy)) {
+                    continue;
+                }
+                int entriesInHierarchy = entriesIn(hierarchy, newRoot);
+                iterator.remove();
+                entriesPerHierarchy.remove(hierarchy);
+                if (entriesInHierarchy > 0) {
+                    String hierarchyPath = hierarchy.getAbsolutePath();
+                    newRoot = invalidator.invalidate(hierarchyPath, newRoot);
+                    locationChanged(hierarchyPath);
+                    retainedEntries -= entriesInHierarchy;
+                    evictedHierarchies++;
+                    evictedEntries += entriesInHierarchy;
+                }
+            }
+            LOGGER.info("Virtual file system retained more than {} entries, dropped {} entries in the {} least recently used hierarchies",
+                maximumNumberOfRetainedEntries,
+                evictedEntries,
+                evictedHierarchies
+            );
+            return newRoot;
+        } finally {
+            hierarchiesUsedByCurrentBuild.clear();
+        }
+    }
+
+    /**
+     * The number of hierarchies dropped at the end of the last build.
+     */
+    public int getEvictedHierarchies() {
+        return evictedHierarchies;
+    }
+
+    /**
+     * The number of entries dropped at the end of the last build.
+     */
+    public int getEvictedEntries() {
+        return evictedEntries;
+    }
+
+    private int entriesIn(File hierarchy, SnapshotHierarchy root) {
+        return entriesPerHierarchy.computeIfAbsent(hierarchy, key -> countEntries(root.rootSnapshotsUnder(key.getAbsolutePath())));
+    }
+
+    private boolean isNestedInOtherHierarchy(File hierarchy) {
+        String hierarchyPath = hierarchy.getAbsolutePath();
+        for (File other : hierarchies) {
+            if (!other.equals(hierarchy) && isAncestorOrSelf(other.getAbsolutePath(), hierarchyPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void locationChanged(String absolutePath) {
+        if (entriesPerHierarchy.isEmpty()) {
+            return;
+        }
+        entriesPerHierarchy.keySet().removeIf(hierarchy -> {
+            String hierarchyPath = hierarchy.getAbsolutePath();
+            return isAncestorOrSelf(hierarchyPath, absolutePath) || isAncestorOrSelf(absolutePath, hierarchyPath);
+        });
+    }
+
+    private static boolean isAncestorOrSelf(String ancestor, String path) {
+        if (!path.startsWith(ancestor)) {
+            return false;
+        }
+        return path.length() == ancestor.length()
+            || ancestor.isEmpty()
+            || PathUtil.isFileSeparator(ancestor.charAt(ancestor.length() - 1))
+            || PathUtil.isFileSeparator(path.charAt(ancestor.length()));
+    }
+
+    private static int countEntries(Stream<FileSystemLocationSnapshot> snapshots) {
+        int[] count = new int[1];
+        snapshots.forEach(snapshot -> snapshot.accept(entrySnapshot -> {
+            count[0]++;
+            return CONTINUE;
+        }));
+        return count[0];
+    }
+}
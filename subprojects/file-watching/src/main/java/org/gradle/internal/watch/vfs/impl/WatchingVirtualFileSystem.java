@@ -40,6 +40,7 @@
 import org.gradle.internal.watch.vfs.FileSystemWatchingInformation;
 import org.gradle.internal.watch.vfs.FileSystemWatchingStatistics;
 import org.gradle.internal.watch.vfs.VfsLogging;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.WatchLogging;
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.slf4j.Logger;
@@ -67,6 +68,8 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final WatchableFileSystemDetector watchableFileSystemDetector;
     private final FileChangeListeners fileChangeListeners;
+    private final VirtualFileSystemStateStore stateStore;
+    private final LeastRecentlyUsedHierarchyEviction hierarchyEviction;
     private final List<File> unsupportedFileSystems = new ArrayList<>();
     private Logger warningLogger = LOGGER;
 
@@ -78,6 +81,7 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
     private boolean stateInvalidatedAtStartOfBuild;
+    private boolean stateRestored;
 
     public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
@@ -86,6 +90,19 @@ public WatchingVirtualFileSystem(
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
         WatchableFileSystemDetector watchableFileSystemDetector,
         FileChangeListeners fileChangeListeners
+    ) {
+        this(watcherRegistryFactory, root, daemonDocumentationIndex, locationsWrittenByCurrentBuild, watchableFileSystemDetector, fileChangeListeners, VirtualFileSystemStateStore.NONE, LeastRecentlyUsedHierarchyEviction.unlimited());
+    }
+
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        SnapshotHierarchy root,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        WatchableFileSystemDetector watchableFileSystemDetector,
+        FileChangeListeners fileChangeListeners,
+        VirtualFileSystemStateStore stateStore,
+        LeastRecentlyUsedHierarchyEviction hierarchyEviction
     ) {
         super(root);
         this.watcherRegistryFactory = watcherRegistryFactory;
@@ -93,6 +110,8 @@ public WatchingVirtualFileSystem(
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
         this.watchableFileSystemDetector = watchableFileSystemDetector;
         this.fileChangeListeners = fileChangeListeners;
+        this.stateStore = stateStore;
+        this.hierarchyEviction = hierarchyEviction;
     }
 
     @Override
@@ -102,9 +121,10 @@ protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFuncti
         } else {
             SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener();
             SnapshotHierarchy newRoot = updateFunction.update(diffListener);
-            return withWatcherChangeErrorHandling(newRoot, () -> diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) ->
-                watchRegistry.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, newRoot)
-            ));
+            return withWatcherChangeErrorHandling(newRoot, () -> diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) -> {
+                hierarchyEviction.snapshotsChanged(removedSnapshots, addedSnapshots);
+                watchRegistry.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, newRoot);
+            }));
         }
     }
 
@@ -151,6 +171,10 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                             newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot, watchMode, unsupportedFileSystems);
                         }
                         stateInvalidatedAtStartOfBuild = newRoot != currentRoot;
+                        if (stateInvalidatedAtStartOfBuild) {
+                            // The watch registry doesn't report which snapshots it dropped
+                            hierarchyEviction.allHierarchiesChanged();
+                        }
                         statisticsSinceLastBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events since last build while watching {} locations",
@@ -205,6 +229,7 @@ public BuildOperationDescriptor.Builder description() {
     @Override
     public void registerWatchableHierarchy(File watchableHierarchy) {
         updateRootUnderLock(currentRoot -> {
+            hierarchyEviction.hierarchyUsed(watchableHierarchy);
             if (watchRegistry == null) {
                 watchableHierarchiesRegisteredEarly.add(watchableHierarchy);
                 return currentRoot;
@@ -246,7 +271,8 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                         } else {
                             newRoot = withWatcherChangeErrorHandling(currentRoot, () -> watchRegistry.updateVfsOnBuildFinished(currentRoot, watchMode, maximumNumberOfWatchedHierarchies, unsupportedFileSystems));
                         }
-                        statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
+                        newRoot = evictLeastRecentlyUsedHierarchies(newRoot);
+                        statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot, hierarchyEviction.getEvictedHierarchies(), hierarchyEviction.getEvictedEntries());
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events during the current build while watching {} locations",
                                 statisticsDuringBuild.getNumberOfReceivedEvents(),
@@ -256,6 +282,12 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                                 statisticsDuringBuild.getRetainedDirectories(),
                                 statisticsDuringBuild.getRetainedMissingFiles()
                             );
+                            if (statisticsDuringBuild.getEvictedHierarchies() > 0) {
+                                LOGGER.warn("Dropped information about {} entries in {} least recently used hierarchies to stay within the retention budget",
+                                    statisticsDuringBuild.getEvictedEntries(),
+                                    statisticsDuringBuild.getEvictedHierarchies()
+                                );
+                            }
                             if (stateInvalidatedAtStartOfBuild) {
                                 LOGGER.warn("Parts of the virtual file system have been removed at the start of the build since they didn't support watching");
                             }
@@ -302,6 +334,19 @@ public BuildOperationDescriptor.Builder description() {
         warningLogger = LOGGER;
     }
 
+    /**
+     * Drops hierarchies which haven't been used recently when the virtual file system retains too much.
+     *
+     * Dropping a hierarchy goes through the watch registry, so it also stops watching the hierarchy.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy evictLeastRecentlyUsedHierarchies(SnapshotHierarchy currentRoot) {
+        return withWatcherChangeErrorHandling(currentRoot, () -> hierarchyEviction.evictOnBuildFinished(currentRoot,
+            () -> watchRegistry == null ? ImmutableList.of() : watchRegistry.getWatchableHierarchies(),
+            (location, root) -> updateNotifyingListeners(diffListener -> root.invalidate(location, diffListener))
+        ));
+    }
+
     /**
      * Start watching the known areas of the file system for changes.
      */
@@ -316,7 +361,7 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
             SnapshotHierarchy newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot.empty(), watchMode, unsupportedFileSystems);
             watchableHierarchiesRegisteredEarly.forEach(watchableHierarchy -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot));
             watchableHierarchiesRegisteredEarly.clear();
-            return newRoot;
+            return restoreStateOnce(newRoot);
         } catch (Exception ex) {
             logWatchingError(ex, FILE_WATCHING_ERROR_MESSAGE_DURING_BUILD, null);
             closeUnderLock();
@@ -324,6 +369,37 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
         }
     }
 
+    /**
+     * The persisted state is only restored when watching starts for the first time.
+     * Restarting watching after an error must not bring back state which may have been changed in between.
+     *
+     * The hierarchies which have been watched when the state was persisted are registered before anything is restored,
+     * and the restored snapshots are passed to the watch registry, so they are watched from now on.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy restoreStateOnce(SnapshotHierarchy currentRoot) {
+        if (stateRestored) {
+            return currentRoot;
+        }
+        stateRestored = true;
+        return updateNotifyingListeners(diffListener -> stateStore.restore(
+            currentRoot,
+            watchableHierarchy -> registerRestoredWatchableHierarchy(watchableHierarchy, currentRoot),
+            diffListener
+        ));
+    }
+
+    private boolean registerRestoredWatchableHierarchy(File watchableHierarchy, SnapshotHierarchy currentRoot) {
+        try {
+            watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot);
+        } catch (IllegalStateException e) {
+            LOGGER.info("Not restoring the virtual file system state in {}: {}", watchableHierarchy, e.getMessage());
+            return false;
+        }
+        hierarchyEviction.hierarchyRestored(watchableHierarchy);
+        return true;
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         FileWatcherRegistry watchRegistry = this.watchRegistry;
@@ -487,6 +563,7 @@ private SnapshotHierarchy stopWatchingAndInvalidateHierarchy(SnapshotHierarchy c
                 LOGGER.error("Unable to close file watcher registry", ex);
             }
         }
+        hierarchyEviction.allHierarchiesChanged();
         return currentRoot.empty();
     }
 
@@ -506,6 +583,10 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
     public void close() {
         LOGGER.debug("Closing VFS, dropping state");
         updateRootUnderLock(currentRoot -> {
+            if (watchRegistry != null) {
+                // Only watched state is known to be up-to-date
+                stateStore.persist(currentRoot, watchRegistry.getWatchableHierarchies());
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class FileBasedVirtualFileSystemStateStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def stringInterner = new StringInterner()
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), stringInterner, [], Stub(DirectorySnapshotterStatistics.Collector))
+    def emptyRoot = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+    def stateFile = temporaryFolder.file("state/vfs-state.bin")
+    def stateStore = new FileBasedVirtualFileSystemStateStore(stateFile, TestFiles.fileSystem(), stringInterner)
+
+    def projectDir = temporaryFolder.createDir("project")
+    def first = projectDir.file("first.txt")
+    def second = projectDir.file("sub/second.txt")
+    def missing = temporaryFolder.file("missing.txt")
+
+    def setup() {
+        first.text = "first"
+        second.text = "second"
+        makeOld(first, second, second.parentFile, projectDir)
+    }
+
+    def "restores unchanged snapshots"() {
+        def directorySnapshot = snapshot(projectDir)
+
+        when:
+        persist(directorySnapshot, new MissingFileSnapshot(missing.absolutePath, missing.name, AccessType.DIRECT))
+        def restored = restore()
+
+        then:
+        def restoredDirectory = restored.findSnapshot(projectDir.absolutePath).get() as DirectorySnapshot
+        restoredDirectory.hash == directorySnapshot.hash
+        restored.findSnapshot(second.absolutePath).get().hash == TestFiles.fileHasher().hash(second)
+        restored.findSnapshot(missing.absolutePath).get() instanceof MissingFileSnapshot
+    }
+
+    def "drops changed files"() {
+        persist(snapshot(projectDir))
+
+        when:
+        second.text = "changed"
+        def restored = restore()
+
+        then:
+        !restored.findSnapshot(projectDir.absolutePath).present
+        !restored.findSnapshot(second.absolutePath).present
+        restored.findSnapshot(first.absolutePath).get() instanceof RegularFileSnapshot
+    }
+
+    def "drops directories with added children and keeps their unchanged contents"() {
+        persist(snapshot(projectDir))
+
+        when:
+        projectDir.file("added.txt").text = "added"
+        def restored = restore()
+
+        then:
+        !restored.findSnapshot(projectDir.absolutePath).present
+        restored.findSnapshot(first.absolutePath).get() instanceof RegularFileSnapshot
+        restored.findSnapshot(second.parentFile.absolutePath).get() instanceof DirectorySnapshot
+    }
+
+    def "drops missing files which have been created"() {
+        persist(new MissingFileSnapshot(missing.absolutePath, missing.name, AccessType.DIRECT))
+
+        when:
+        missing.text = "created"
+        def restored = restore()
+
+        then:
+        !restored.findSnapshot(missing.absolutePath).present
+    }
+
+    def "drops files modified shortly before the state has been persisted"() {
+        first.text = "recently modified"
+        makeOld(first.parentFile)
+        persist(snapshot(projectDir))
+
+        when:
+        def restored = restore()
+
+        then:
+        !restored.findSnapshot(first.absolutePath).present
+        restored.findSnapshot(second.absolutePath).present
+    }
+
+    def "only restores snapshots within watchable hierarchies which could be registered"() {
+        def otherDir = temporaryFolder.createDir("other")
+        def otherFile = otherDir.file("other.txt")
+        otherFile.text = "other"
+        def unwatchedDir = temporaryFolder.createDir("unwatched")
+        def unwatchedFile = unwatchedDir.file("unwatched.txt")
+        unwatchedFile.text = "unwatched"
+        makeOld(otherFile, otherDir, unwatchedFile, unwatchedDir)
+        def registeredHierarchies = []
+
+        when:
+        stateStore.persist(store(snapshot(projectDir), snapshot(otherDir), snapshot(unwatchedDir)), [otherDir, projectDir])
+        def restored = stateStore.restore(emptyRoot, { hierarchy ->
+            registeredHierarchies << hierarchy
+            hierarchy != otherDir
+        }, SnapshotHierarchy.NodeDiffListener.NOOP)
+
+        then:
+        registeredHierarchies == [projectDir, otherDir]
+        restored.findSnapshot(projectDir.absolutePath).present
+        !restored.findSnapshot(otherDir.absolutePath).present
+        !restored.findSnapshot(unwatchedDir.absolutePath).present
+    }
+
+    def "notifies the diff listener about restored snapshots"() {
+        def diffListener = Mock(SnapshotHierarchy.NodeDiffListener)
+        persist(snapshot(projectDir))
+
+        when:
+        stateStore.restore(emptyRoot, { true }, diffListener)
+
+        then:
+        1 * diffListener.nodeAdded({ it.rootSnapshots().anyMatch { snapshot -> snapshot.absolutePath == projectDir.absolutePath } })
+    }
+
+    def "restores nothing when the state cannot be read"() {
+        stateFile.text = "corrupt"
+
+        expect:
+        restore().is(emptyRoot)
+    }
+
+    def "restores nothing when no state has been persisted"() {
+        expect:
+        restore().is(emptyRoot)
+    }
+
+    private DirectorySnapshot snapshot(File directory) {
+        directorySnapshotter.snapshot(directory.absolutePath, null) {} as DirectorySnapshot
+    }
+
+    private SnapshotHierarchy restore() {
+        stateStore.restore(emptyRoot, { true }, SnapshotHierarchy.NodeDiffListener.NOOP)
+    }
+
+    private void persist(FileSystemLocationSnapshot... snapshots) {
+        stateStore.persist(store(snapshots), [temporaryFolder.testDirectory])
+    }
+
+    private SnapshotHierarchy store(FileSystemLocationSnapshot... snapshots) {
+        SnapshotHierarchy root = emptyRoot
+        snapshots.each { snapshot ->
+            root = root.store(snapshot.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+        root
+    }
+
+    private static void makeOld(File... files) {
+        long lastModified = System.currentTimeMillis() - 60_000
+        files.each { it.setLastModified(lastModified) }
+    }
+}
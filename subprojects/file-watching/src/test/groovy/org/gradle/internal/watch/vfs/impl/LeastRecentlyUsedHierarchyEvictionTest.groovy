@@ -0,0 +1,172 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.internal.watch.registry.impl.WatchableHierarchies
+import spock.lang.Specification
+
+import java.util.function.Supplier
+import java.util.stream.Stream
+
+class LeastRecentlyUsedHierarchyEvictionTest extends Specification {
+    def rootDir = new File("/root").absoluteFile
+    def first = new File(rootDir, "first")
+    def second = new File(rootDir, "second")
+    def third = new File(rootDir, "third")
+    def nested = new File(first, "nested")
+    def watchedHierarchies = { [first, second, third, nested] } as Supplier<Collection<File>>
+    def invalidator = { String location, SnapshotHierarchy root -> root.invalidate(location, SnapshotHierarchy.NodeDiffListener.NOOP) } as WatchableHierarchies.Invalidator
+
+    def "drops least recently used hierarchies when exceeding the budget"() {
+        def eviction = new LeastRecentlyUsedHierarchyEviction(4)
+        def root = rootWithEntries(first, 2, second, 2, third, 2)
+
+        when:
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(second)
+        eviction.hierarchyUsed(third)
+        root = eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+        then:
+        // All hierarchies have been used by the current build
+        retained(root) == 6
+        eviction.evictedHierarchies == 0
+
+        when:
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(third)
+        root = eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+        then:
+        retained(root) == 4
+        !root.rootSnapshotsUnder(second.absolutePath).findAny().present
+        eviction.evictedHierarchies == 1
+        eviction.evictedEntries == 2
+    }
+
+    def "drops nothing within the budget"() {
+        def eviction = new LeastRecentlyUsedHierarchyEviction(6)
+        def root = rootWithEntries(first, 2, second, 2, third, 2)
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(second)
+        eviction.hierarchyUsed(third)
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+
+        expect:
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator).is(root)
+        eviction.evictedHierarchies == 0
+        eviction.evictedEntries == 0
+    }
+
+    def "drops hierarchies in the order they have been used"() {
+        def eviction = new LeastRecentlyUsedHierarchyEviction(3)
+        def root = rootWithEntries(first, 2, second, 2, third, 2)
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(second)
+        eviction.hierarchyUsed(third)
+        eviction.hierarchyUsed(first)
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+
+        when:
+        eviction.hierarchyUsed(third)
+        root = eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+        then:
+        eviction.evictedHierarchies == 2
+        retained(root) == 2
+        root.rootSnapshotsUnder(third.absolutePath).findAny().present
+    }
+
+    def "counts only the hierarchies which changed since the last build"() {
+        def eviction = new LeastRecentlyUsedHierarchyEviction(6)
+        def root = Mock(SnapshotHierarchy)
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(second)
+
+        when:
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+        then:
+        1 * root.rootSnapshotsUnder(first.absolutePath) >> Stream.of(missingFile(first, 0))
+        1 * root.rootSnapshotsUnder(second.absolutePath) >> Stream.of(missingFile(second, 0))
+        0 * _
+
+        when:
+        eviction.snapshotsChanged([], [missingFile(second, 1)])
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+        then:
+        1 * root.rootSnapshotsUnder(second.absolutePath) >> Stream.of(missingFile(second, 0), missingFile(second, 1))
+        0 * _
+    }
+
+    def "counts the entries of nested hierarchies once"() {
+        def eviction = new LeastRecentlyUsedHierarchyEviction(6)
+        def root = rootWithEntries(first, 2, nested, 2, second, 2)
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(nested)
+        eviction.hierarchyUsed(second)
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+
+        when:
+        eviction.hierarchyUsed(second)
+        root = eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+        then:
+        retained(root) == 6
+        eviction.evictedHierarchies == 0
+    }
+
+    def "does not count hierarchies which are not watched anymore"() {
+        def eviction = new LeastRecentlyUsedHierarchyEviction(4)
+        def root = rootWithEntries(first, 2, second, 2, third, 2)
+        eviction.hierarchyUsed(first)
+        eviction.hierarchyUsed(second)
+        eviction.hierarchyUsed(third)
+        eviction.evictOnBuildFinished(root, watchedHierarchies, invalidator)
+
+        when:
+        // The watch registry dropped the third hierarchy without reporting the removed snapshots
+        root = invalidator.invalidate(third.absolutePath, root)
+        eviction.hierarchyUsed(first)
+        root = eviction.evictOnBuildFinished(root, { [first, second] } as Supplier<Collection<File>>, invalidator)
+        then:
+        retained(root) == 4
+        eviction.evictedHierarchies == 0
+    }
+
+    private static SnapshotHierarchy rootWithEntries(Object... hierarchiesAndEntries) {
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+        hierarchiesAndEntries.collate(2).each { File hierarchy, int entries ->
+            entries.times { index ->
+                def snapshot = missingFile(hierarchy, index)
+                root = root.store(snapshot.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+            }
+        }
+        return root
+    }
+
+    private static MissingFileSnapshot missingFile(File hierarchy, int index) {
+        def missingFile = new File(hierarchy, "missing${index}")
+        return new MissingFileSnapshot(missingFile.absolutePath, missingFile.name, AccessType.DIRECT)
+    }
+
+    private static int retained(SnapshotHierarchy root) {
+        int count = 0
+        root.rootSnapshots().forEach { count++ }
+        return count
+    }
+}
@@ -17,8 +17,10 @@
 package org.gradle.internal.watch.vfs.impl
 
 import net.rubygrapefruit.platform.NativeException
+import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.watch.registry.FileWatcherRegistry
@@ -27,10 +29,13 @@ import org.gradle.internal.watch.registry.WatchMode
 import org.gradle.internal.watch.registry.impl.DaemonDocumentationIndex
 import org.gradle.internal.watch.vfs.FileChangeListeners
 import org.gradle.internal.watch.vfs.VfsLogging
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore
 import org.gradle.internal.watch.vfs.WatchLogging
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector
 import spock.lang.Specification
 
+import java.util.function.Predicate
+
 class WatchingVirtualFileSystemTest extends Specification {
     def watcherRegistryFactory = Mock(FileWatcherRegistryFactory)
     def watcherRegistry = Mock(FileWatcherRegistry)
@@ -164,6 +169,49 @@ class WatchingVirtualFileSystemTest extends Specification {
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
 
+    def "registers restored hierarchies before watching the restored snapshots"() {
+        def restoredHierarchy = new File("restored").absoluteFile
+        def restoredSnapshot = new MissingFileSnapshot(new File(restoredHierarchy, "missing").absolutePath, "missing", FileMetadata.AccessType.DIRECT)
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def restoringVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            emptySnapshotHierarchy,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            watchableFileSystemDetector,
+            fileChangeListeners,
+            stateStore,
+            LeastRecentlyUsedHierarchyEviction.unlimited()
+        )
+
+        when:
+        restoringVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> emptySnapshotHierarchy
+        then:
+        1 * stateStore.restore(emptySnapshotHierarchy, _, _) >> { SnapshotHierarchy root, Predicate<File> registrar, SnapshotHierarchy.NodeDiffListener diffListener ->
+            assert registrar.test(restoredHierarchy)
+            root.store(restoredSnapshot.absolutePath, restoredSnapshot, diffListener)
+        }
+        1 * watcherRegistry.registerWatchableHierarchy(restoredHierarchy, emptySnapshotHierarchy)
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], [restoredSnapshot], _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        restoringVirtualFileSystem.root.findSnapshot(restoredSnapshot.absolutePath).present
+
+        when:
+        restoringVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.updateVfsOnBuildStarted(_ as SnapshotHierarchy, WatchMode.ENABLED, []) >> { SnapshotHierarchy root, watchMode, unsupportedFileSystems -> root }
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        restoringVirtualFileSystem.root.findSnapshot(restoredSnapshot.absolutePath).present
+    }
+
     def "detects unsupported file systems on default watch mode"() {
         def unsupportedFileSystems = [new File("unsupported")]
 
@@ -66,6 +66,11 @@ enum ZipCompressionMethod {
      */
     int size();
 
+    /**
+     * The CRC-32 checksum of the uncompressed content, or -1 if not known.
+     */
+    long getCrc();
+
     /**
      * Whether or not the zip entry can safely be read again if any bytes
      * have already been read from it.
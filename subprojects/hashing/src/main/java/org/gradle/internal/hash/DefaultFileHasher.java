@@ -24,18 +24,31 @@
 
 public class DefaultFileHasher implements FileHasher {
     private final StreamHasher streamHasher;
+    private final LargeFileHasher largeFileHasher;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, LargeFileHasher.disabled(streamHasher.getHashFunction()));
+    }
+
+    public DefaultFileHasher(StreamHasher streamHasher, LargeFileHasher largeFileHasher) {
         this.streamHasher = streamHasher;
+        this.largeFileHasher = largeFileHasher;
     }
 
     @Override
     public HashCode hash(File file) {
+        return hash(file, file.length());
+    }
+
+    private HashCode hash(File file, long length) {
+        if (largeFileHasher.isLargeFile(length)) {
+            return largeFileHasher.hash(file);
+        }
         InputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", streamHasher.getHashFunction().getAlgorithm(), file), e);
         }
         try {
             return streamHasher.hash(inputStream);
@@ -50,6 +63,6 @@ public HashCode hash(File file) {
 
     @Override
     public HashCode hash(File file, long length, long lastModified) {
-        return hash(file);
+        return hash(file, length);
     }
 }
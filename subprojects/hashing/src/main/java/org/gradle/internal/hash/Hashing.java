@@ -28,6 +28,7 @@
 import java.nio.ByteOrder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
 
 import static org.gradle.internal.hash.HashCode.Usage.SAFE_TO_REUSE_BYTES;
 
@@ -47,6 +48,8 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3_128 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -143,33 +146,45 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
-    private static abstract class MessageDigestHashFunction implements HashFunction {
-        private final int hexDigits;
-
-        public MessageDigestHashFunction(int hashBits) {
-            this.hexDigits = hashBits / 4;
-        }
+    /**
+     * Murmur3 128-bit (x64 variant) hashing function.
+     *
+     * The function is not cryptographic, but it is a lot faster than the message digest based functions,
+     * which makes it a good fit for hashing file contents.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3_128;
+    }
 
-        public static MessageDigestHashFunction of(String algorithm) {
-            MessageDigest prototype;
-            try {
-                prototype = MessageDigest.getInstance(algorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
-            }
-            int hashBits = prototype.getDigestLength() * 8;
-            try {
-                prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
-            } catch (CloneNotSupportedException e) {
-                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+    /**
+     * Returns the hashing function for the given algorithm, as reported by {@link HashFunction#getAlgorithm()}.
+     * The lookup is case-insensitive.
+     *
+     * @throws IllegalArgumentException when the algorithm is not supported.
+     */
+    public static HashFunction forAlgorithm(String algorithm) {
+        for (HashFunction function : new HashFunction[]{MD5, SHA1, SHA256, SHA512, MURMUR3_128}) {
+            if (function.getAlgorithm().equalsIgnoreCase(algorithm)) {
+                return function;
             }
         }
+        throw new IllegalArgumentException(String.format("Unsupported hashing algorithm: '%s'", algorithm.toUpperCase(Locale.ROOT)));
+    }
 
-        @Override
-        public PrimitiveHasher newPrimitiveHasher() {
-            MessageDigest digest = createDigest();
-            return new MessageDigestHasher(digest);
+    /**
+     * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
+     * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
+     */
+    @SuppressWarnings("RedundantCast")
+    private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
+        return (Buffer) byteBuffer;
+    }
+
+    private static abstract class AbstractHashFunction implements HashFunction {
+        private final int hexDigits;
+
+        public AbstractHashFunction(int hashBits) {
+            this.hexDigits = hashBits / 4;
         }
 
         @Override
@@ -209,8 +224,6 @@ private HashingOutputStream primitiveStreamHasher() {
             return new HashingOutputStream(this, ByteStreams.nullOutputStream());
         }
 
-        protected abstract MessageDigest createDigest();
-
         @Override
         public int getHexDigits() {
             return hexDigits;
@@ -222,6 +235,36 @@ public String toString() {
         }
     }
 
+    private static abstract class MessageDigestHashFunction extends AbstractHashFunction {
+        public MessageDigestHashFunction(int hashBits) {
+            super(hashBits);
+        }
+
+        public static MessageDigestHashFunction of(String algorithm) {
+            MessageDigest prototype;
+            try {
+                prototype = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
+            }
+            int hashBits = prototype.getDigestLength() * 8;
+            try {
+                prototype.clone();
+                return new CloningMessageDigestHashFunction(prototype, hashBits);
+            } catch (CloneNotSupportedException e) {
+                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+            }
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            MessageDigest digest = createDigest();
+            return new MessageDigestHasher(digest);
+        }
+
+        protected abstract MessageDigest createDigest();
+    }
+
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
@@ -298,20 +341,16 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            getDigest().update(bytes);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
         }
 
-        /**
-         * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
-         * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
-         */
-        @SuppressWarnings("RedundantCast")
-        private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
-            return (Buffer) byteBuffer;
-        }
-
         @Override
         public void putInt(int value) {
             buffer.putInt(value);
@@ -353,6 +392,270 @@ public HashCode hash() {
         }
     }
 
+    private static class Murmur3HashFunction extends AbstractHashFunction {
+        public Murmur3HashFunction() {
+            super(128);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "MURMUR3-128";
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new Murmur3Hasher();
+        }
+    }
+
+    /**
+     * Streaming implementation of the x64 variant of MurmurHash3 with 128 bits of output and a seed of 0.
+     * Produces the same results as Guava's {@code Hashing.murmur3_128()}.
+     */
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final int CHUNK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        // Leave room for a long after a partial chunk, so primitives can always be put directly into the buffer
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE + 7).order(ByteOrder.LITTLE_ENDIAN);
+        private long h1;
+        private long h2;
+        private long length;
+        private boolean done;
+
+        private ByteBuffer getBuffer() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+            return buffer;
+        }
+
+        @Override
+        public void putByte(byte b) {
+            getBuffer().put(b);
+            munchIfFull();
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            ByteBuffer buffer = getBuffer();
+            if (len <= buffer.remaining()) {
+                buffer.put(bytes, off, len);
+                munchIfFull();
+                return;
+            }
+            int end = off + len;
+            int bytesToFillChunk = CHUNK_SIZE - buffer.position();
+            buffer.put(bytes, off, bytesToFillChunk);
+            off += bytesToFillChunk;
+            munch();
+            // Process whole chunks straight from the source array
+            while (end - off >= CHUNK_SIZE) {
+                bmix64(getLongLittleEndian(bytes, off), getLongLittleEndian(bytes, off + 8));
+                length += CHUNK_SIZE;
+                off += CHUNK_SIZE;
+            }
+            buffer.put(bytes, off, end - off);
+        }
+
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            ByteBuffer buffer = getBuffer();
+            ByteBuffer source = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+            castBuffer(bytes).position(bytes.limit());
+            if (source.remaining() <= buffer.remaining()) {
+                buffer.put(source);
+                munchIfFull();
+                return;
+            }
+            while (buffer.position() < CHUNK_SIZE) {
+                buffer.put(source.get());
+            }
+            munch();
+            // Process whole chunks straight from the source buffer
+            while (source.remaining() >= CHUNK_SIZE) {
+                bmix64(source.getLong(), source.getLong());
+                length += CHUNK_SIZE;
+            }
+            buffer.put(source);
+        }
+
+        @Override
+        public void putInt(int value) {
+            getBuffer().putInt(value);
+            munchIfFull();
+        }
+
+        @Override
+        public void putLong(long value) {
+            getBuffer().putLong(value);
+            munchIfFull();
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            ByteBuffer buffer = getBuffer();
+            munch();
+            castBuffer(buffer).flip();
+            if (buffer.remaining() > 0) {
+                processRemaining(buffer);
+            }
+            done = true;
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(h1)
+                .putLong(h2)
+                .array();
+            return HashCode.fromBytes(bytes, SAFE_TO_REUSE_BYTES);
+        }
+
+        private void munchIfFull() {
+            if (buffer.remaining() < 8) {
+                munch();
+            }
+        }
+
+        private void munch() {
+            castBuffer(buffer).flip();
+            while (buffer.remaining() >= CHUNK_SIZE) {
+                bmix64(buffer.getLong(), buffer.getLong());
+                length += CHUNK_SIZE;
+            }
+            buffer.compact();
+        }
+
+        private void processRemaining(ByteBuffer bb) {
+            long k1 = 0;
+            long k2 = 0;
+            length += bb.remaining();
+            switch (bb.remaining()) {
+                case 15:
+                    k2 ^= (long) toInt(bb.get(14)) << 48; // fall through
+                case 14:
+                    k2 ^= (long) toInt(bb.get(13)) << 40; // fall through
+                case 13:
+                    k2 ^= (long) toInt(bb.get(12)) << 32; // fall through
+                case 12:
+                    k2 ^= (long) toInt(bb.get(11)) << 24; // fall through
+                case 11:
+                    k2 ^= (long) toInt(bb.get(10)) << 16; // fall through
+                case 10:
+                    k2 ^= (long) toInt(bb.get(9)) << 8; // fall through
+                case 9:
+                    k2 ^= toInt(bb.get(8)); // fall through
+                case 8:
+                    k1 ^= bb.getLong(0);
+                    break;
+                case 7:
+                    k1 ^= (long) toInt(bb.get(6)) << 48; // fall through
+                case 6:
+                    k1 ^= (long) toInt(bb.get(5)) << 40; // fall through
+                case 5:
+                    k1 ^= (long) toInt(bb.get(4)) << 32; // fall through
+                case 4:
+                    k1 ^= (long) toInt(bb.get(3)) << 24; // fall through
+                case 3:
+                    k1 ^= (long) toInt(bb.get(2)) << 16; // fall through
+                case 2:
+                    k1 ^= (long) toInt(bb.get(1)) << 8; // fall through
+                case 1:
+                    k1 ^= toInt(bb.get(0));
+                    break;
+                default:
+                    throw new AssertionError("Should never get here.");
+            }
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+
+        private void bmix64(long k1, long k2) {
+            h1 ^= mixK1(k1);
+
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long getLongLittleEndian(byte[] bytes, int off) {
+            return (bytes[off] & 0xFFL)
+                | (bytes[off + 1] & 0xFFL) << 8
+                | (bytes[off + 2] & 0xFFL) << 16
+                | (bytes[off + 3] & 0xFFL) << 24
+                | (bytes[off + 4] & 0xFFL) << 32
+                | (bytes[off + 5] & 0xFFL) << 40
+                | (bytes[off + 6] & 0xFFL) << 48
+                | (bytes[off + 7] & 0xFFL) << 56;
+        }
+
+        private static int toInt(byte value) {
+            return value & 0xFF;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
 
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hashes the contents of large files by reading them through a file channel into direct buffers, instead of copying the contents through a heap buffer.
+ *
+ * By default, the hash is the same as the one produced by {@link DefaultStreamHasher} with the same hash function.
+ * When a chunk size is configured, the file is split into chunks of that size, the chunks are hashed in parallel,
+ * and the hashes of the chunks are combined into the hash of the file.
+ * Such a tree hash is different from the hash of the whole content, so it must not be mixed with hashes produced by {@link DefaultStreamHasher}.
+ *
+ * Chunks are hashed in the fork/join pool of the calling thread, or in the common pool when not called from a fork/join pool.
+ *
+ * Like {@link DefaultStreamHasher}, the hash is of the content the file has when it is opened, not of the length it had when it was decided to hash it with this hasher.
+ */
+public class LargeFileHasher {
+    private static final HashCode CHUNKED_SIGNATURE = Hashing.signature(LargeFileHasher.class.getName() + ":CHUNKED");
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Queue<ByteBuffer> buffers = new ArrayBlockingQueue<>(16);
+    private final HashFunction hashFunction;
+    private final long threshold;
+    private final long chunkSize;
+
+    /**
+     * Creates a hasher that is never used.
+     */
+    public static LargeFileHasher disabled(HashFunction hashFunction) {
+        return new LargeFileHasher(hashFunction, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * @param hashFunction the hash function to use for hashing file contents.
+     * @param threshold files with at least this many bytes are hashed by this hasher.
+     * @param chunkSize the size of the chunks to hash in parallel, or {@code 0} to hash the whole file sequentially.
+     */
+    public LargeFileHasher(HashFunction hashFunction, long threshold, long chunkSize) {
+        if (chunkSize < 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 0 and " + Integer.MAX_VALUE + ", but was " + chunkSize);
+        }
+        this.hashFunction = hashFunction;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Whether files of the given length should be hashed by this hasher.
+     */
+    public boolean isLargeFile(long length) {
+        return length >= threshold;
+    }
+
+    /**
+     * Whether this hasher produces tree hashes that differ from the hashes of {@link DefaultStreamHasher}.
+     */
+    public boolean isChunked() {
+        return chunkSize > 0;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Identifies how file contents are hashed by this hasher together with a {@link DefaultStreamHasher} using the same hash function,
+     * or {@code null} when they are hashed with the default hash function and without chunks.
+     *
+     * State containing content hashes, like persistent caches and build cache keys, must be kept apart by this identifier, so hashes created in different ways never mix.
+     */
+    @Nullable
+    public String getContentHashIdentifier() {
+        String algorithm = hashFunction == Hashing.defaultFunction()
+            ? null
+            : hashFunction.getAlgorithm().toLowerCase(Locale.ROOT);
+        if (!isChunked()) {
+            return algorithm;
+        }
+        String chunked = "chunked-" + chunkSize;
+        return algorithm == null ? chunked : algorithm + "-" + chunked;
+    }
+
+    public HashCode hash(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            return isChunked()
+                ? hashChunks(channel, length)
+                : hashWholeFile(channel, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", hashFunction.getAlgorithm(), file), e);
+        }
+    }
+
+    private HashCode hashWholeFile(FileChannel channel, long length) throws IOException {
+        PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+        hasher.putHash(DefaultStreamHasher.SIGNATURE);
+        hashRegion(channel, 0, length, hasher);
+        return hasher.hash();
+    }
+
+    private HashCode hashChunks(FileChannel channel, long length) {
+        List<HashChunkTask> chunks = new ArrayList<>();
+        for (long position = 0; position < length; position += chunkSize) {
+            chunks.add(new HashChunkTask(channel, position, Math.min(chunkSize, length - position)));
+        }
+        ForkJoinTask.invokeAll(chunks);
+
+        PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+        hasher.putHash(CHUNKED_SIGNATURE);
+        hasher.putLong(chunkSize);
+        hasher.putLong(length);
+        for (HashChunkTask chunk : chunks) {
+            hasher.putHash(chunk.join());
+        }
+        return hasher.hash();
+    }
+
+    private void hashRegion(FileChannel channel, long position, long size, PrimitiveHasher hasher) throws IOException {
+        ByteBuffer buffer = takeBuffer();
+        try {
+            long end = position + size;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException(String.format("File was truncated to %d bytes while hashing its first %d bytes.", position, end));
+                }
+                position += read;
+                buffer.flip();
+                hasher.putBytes(buffer);
+            }
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        // Retain buffer if there is capacity in the queue, otherwise discard
+        buffers.offer(buffer);
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
+    private class HashChunkTask extends RecursiveTask<HashCode> {
+        private final FileChannel channel;
+        private final long position;
+        private final long size;
+
+        public HashChunkTask(FileChannel channel, long position, long size) {
+            this.channel = channel;
+            this.position = position;
+            this.size = size;
+        }
+
+        @Override
+        protected HashCode compute() {
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            try {
+                hashRegion(channel, position, size, hasher);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return hasher.hash();
+        }
+    }
+}
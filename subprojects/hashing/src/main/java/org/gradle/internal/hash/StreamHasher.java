@@ -20,6 +20,11 @@
 import java.io.OutputStream;
 
 public interface StreamHasher {
+    /**
+     * Returns the hash function used to hash the contents of streams.
+     */
+    HashFunction getHashFunction();
+
     /**
      * Returns the hash of the given input stream. The stream will not be closed by the method.
      */
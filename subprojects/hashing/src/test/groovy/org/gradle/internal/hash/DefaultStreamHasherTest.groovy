@@ -36,4 +36,15 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "can hash input with a different hash function"() {
+        def input = new ByteArrayInputStream("hello".bytes)
+        def hasher = new DefaultStreamHasher(Hashing.murmur3())
+        when:
+        def hash = hasher.hash(input)
+        then:
+        hasher.hashFunction == Hashing.murmur3()
+        hash != new DefaultStreamHasher().hash(new ByteArrayInputStream("hello".bytes))
+        hash == new DefaultStreamHasher(Hashing.murmur3()).hash(new ByteArrayInputStream("hello".bytes))
+    }
 }
@@ -18,6 +18,9 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
 import static java.lang.Thread.currentThread
 import static java.util.concurrent.CompletableFuture.supplyAsync
 import static java.util.concurrent.Executors.newFixedThreadPool
@@ -109,6 +112,90 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 produces the same hashes as Guava for #length bytes'() {
+        given:
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+
+        expect:
+        Hashing.murmur3().hashBytes(bytes).toByteArray() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).asBytes()
+
+        where:
+        length << [0, 1, 7, 8, 9, 15, 16, 17, 31, 32, 33, 100, 8192, 65537]
+    }
+
+    def 'murmur3 produces the same hashes as Guava when fed in pieces'() {
+        given:
+        def bytes = new byte[1000]
+        new Random(1234L).nextBytes(bytes)
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        def guavaHasher = com.google.common.hash.Hashing.murmur3_128().newHasher()
+        def offset = 0
+        [1, 3, 16, 5, 40, 2, 7, 300, 11].each { len ->
+            hasher.putBytes(bytes, offset, len)
+            guavaHasher.putBytes(bytes, offset, len)
+            offset += len
+            hasher.putInt(len)
+            guavaHasher.putInt(len)
+            hasher.putByte(bytes[offset])
+            guavaHasher.putByte(bytes[offset])
+            hasher.putLong(offset)
+            guavaHasher.putLong(offset)
+        }
+
+        then:
+        hasher.hash().toByteArray() == guavaHasher.hash().asBytes()
+    }
+
+    def 'murmur3 encodes primitives in little endian order like MD5 does'() {
+        given:
+        def bytes = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putInt(42).putLong(1234L).array()
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putInt(42)
+        hasher.putLong(1234L)
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+    }
+
+    def 'cannot call murmur3 hash multiple times'() {
+        given:
+        def hasher = Hashing.murmur3().newHasher()
+        hasher.putInt(1)
+        hasher.hash()
+
+        when:
+        hasher.hash()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def 'can look up hash function by algorithm'() {
+        expect:
+        Hashing.forAlgorithm(algorithm) == function
+
+        where:
+        algorithm     | function
+        "MD5"         | Hashing.md5()
+        "sha-1"       | Hashing.sha1()
+        "SHA-256"     | Hashing.sha256()
+        "murmur3-128" | Hashing.murmur3()
+    }
+
+    def 'fails to look up unknown algorithm'() {
+        when:
+        Hashing.forAlgorithm("crc32")
+
+        then:
+        def ex = thrown(IllegalArgumentException)
+        ex.message == "Unsupported hashing algorithm: 'CRC32'"
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
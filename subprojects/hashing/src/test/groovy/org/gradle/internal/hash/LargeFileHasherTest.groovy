@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+class LargeFileHasherTest extends Specification {
+    @TempDir
+    File tmpDir
+
+    def "hash of #length bytes read through a channel is the same as the stream hash with #hashFunction"() {
+        given:
+        def file = fileWithRandomContent(length)
+        def streamHasher = new DefaultStreamHasher(hashFunction)
+
+        expect:
+        new DefaultFileHasher(streamHasher, new LargeFileHasher(hashFunction, 0, 0)).hash(file) == new DefaultFileHasher(streamHasher).hash(file)
+
+        where:
+        [hashFunction, length] << [[Hashing.md5(), Hashing.murmur3()], [0, 1, 17, 100_000, 2_500_000]].combinations()
+    }
+
+    def "only hashes files above the threshold"() {
+        given:
+        def largeFileHasher = Spy(new LargeFileHasher(Hashing.md5(), 1000, 0))
+        def fileHasher = new DefaultFileHasher(new DefaultStreamHasher(), largeFileHasher)
+
+        when:
+        fileHasher.hash(fileWithRandomContent(999))
+
+        then:
+        0 * largeFileHasher.hash(_)
+
+        when:
+        fileHasher.hash(fileWithRandomContent(1000))
+
+        then:
+        1 * largeFileHasher.hash(_)
+    }
+
+    def "chunked hash is stable and depends on content and chunk size"() {
+        given:
+        def file = fileWithRandomContent(100_000)
+        def hasher = new LargeFileHasher(Hashing.md5(), 0, 4096)
+
+        when:
+        def hash = hasher.hash(file)
+
+        then:
+        hash == hasher.hash(file)
+        hash != new LargeFileHasher(Hashing.md5(), 0, 8192).hash(file)
+        hash != new DefaultFileHasher(new DefaultStreamHasher()).hash(file)
+
+        when:
+        file.bytes = file.bytes.tap { it[50_000]++ }
+
+        then:
+        hash != hasher.hash(file)
+    }
+
+    def "hashes the current content of a file that shrank after its length was determined with #chunkSize byte chunks"() {
+        given:
+        def file = fileWithRandomContent(100_000)
+        def length = file.length()
+        def lastModified = file.lastModified()
+        def shrunkFile = new File(tmpDir, "shrunk.bin")
+        shrunkFile.bytes = Arrays.copyOf(file.bytes, 50_000)
+        def fileHasher = new DefaultFileHasher(new DefaultStreamHasher(Hashing.md5()), new LargeFileHasher(Hashing.md5(), 0, chunkSize))
+
+        when:
+        new RandomAccessFile(file, "rw").withCloseable { it.setLength(50_000) }
+        def hash = fileHasher.hash(file, length, lastModified)
+
+        then:
+        hash == fileHasher.hash(shrunkFile)
+
+        where:
+        chunkSize << [0, 4096]
+    }
+
+    def "content hash identifier of #hashFunction with #chunkSize byte chunks is #identifier"() {
+        expect:
+        new LargeFileHasher(hashFunction, 0, chunkSize).contentHashIdentifier == identifier
+
+        where:
+        hashFunction      | chunkSize | identifier
+        Hashing.md5()     | 0         | null
+        Hashing.md5()     | 4096      | "chunked-4096"
+        Hashing.murmur3() | 0         | "murmur3-128"
+        Hashing.murmur3() | 4096      | "murmur3-128-chunked-4096"
+    }
+
+    def "fails for missing file"() {
+        given:
+        def file = new File(tmpDir, "missing")
+
+        when:
+        new LargeFileHasher(Hashing.md5(), 0, 0).hash(file)
+
+        then:
+        def ex = thrown(UncheckedIOException)
+        ex.message == "Failed to create MD5 hash for file '${file}'."
+    }
+
+    private File fileWithRandomContent(int length) {
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+        def file = new File(tmpDir, "file-${length}.bin")
+        file.bytes = bytes
+        return file
+    }
+}
@@ -26,6 +26,7 @@
 import javax.annotation.Nullable;
 import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.Set;
 
@@ -60,6 +61,10 @@ public CachingTaskDependencyResolveContext(Collection<? extends WorkDependencyRe
 
     public Set<T> getDependencies(@Nullable Task task, Object dependencies) {
         Preconditions.checkState(this.task == null);
+        if (dependencies == TaskDependencyContainer.EMPTY || dependencies instanceof DefaultTaskDependency && ((DefaultTaskDependency) dependencies).isEmpty()) {
+            // Most tasks have no finalizers or ordering constraints, so avoid walking and caching these
+            return Collections.emptySet();
+        }
         this.task = task;
         try {
             walker.add(dependencies);
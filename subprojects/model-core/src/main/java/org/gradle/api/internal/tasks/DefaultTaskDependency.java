@@ -162,6 +162,13 @@ private static void addAllFirst(Deque<Object> queue, Object[] items) {
         }
     }
 
+    /**
+     * Returns true when no values have been added to this dependency. A value which resolves to no tasks, such as an empty collection, still counts as a value.
+     */
+    public boolean isEmpty() {
+        return immutableValues.isEmpty() && (mutableValues == null || mutableValues.isEmpty());
+    }
+
     public Set<Object> getMutableValues() {
         if (mutableValues == null) {
             mutableValues = new TaskDependencySet();
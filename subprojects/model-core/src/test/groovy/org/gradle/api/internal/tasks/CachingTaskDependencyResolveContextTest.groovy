@@ -110,6 +110,16 @@ class CachingTaskDependencyResolveContextTest extends Specification {
         tasks == [target] as LinkedHashSet
     }
 
+    def doesNotWalkTaskDependencyWithoutValues() {
+        def empty = new DefaultTaskDependency()
+        def nonEmpty = new DefaultTaskDependency().add(target)
+
+        expect:
+        context.getDependencies(task, empty).isEmpty()
+        context.getDependencies(task, TaskDependencyContainer.EMPTY).isEmpty()
+        context.getDependencies(task, nonEmpty) == [target] as LinkedHashSet
+    }
+
     def throwsExceptionForUnresolvableObject() {
         when:
         context.getDependencies(task, dependency)
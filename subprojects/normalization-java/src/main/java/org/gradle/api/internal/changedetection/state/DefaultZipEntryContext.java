@@ -19,18 +19,26 @@
 import org.gradle.api.internal.file.archive.ZipEntry;
 import org.gradle.internal.file.FilePathUtil;
 import org.gradle.internal.fingerprint.hashing.ZipEntryContext;
+import org.gradle.internal.hash.HashCode;
 
+import javax.annotation.Nullable;
 import java.util.function.Supplier;
 
 public class DefaultZipEntryContext implements ZipEntryContext {
     private final ZipEntry entry;
     private final String fullName;
     private final String rootParentName;
+    private final HashCode rootParentHash;
 
     public DefaultZipEntryContext(ZipEntry entry, String fullName, String rootParentName) {
+        this(entry, fullName, rootParentName, null);
+    }
+
+    public DefaultZipEntryContext(ZipEntry entry, String fullName, String rootParentName, @Nullable HashCode rootParentHash) {
         this.entry = entry;
         this.fullName = fullName;
         this.rootParentName = rootParentName;
+        this.rootParentHash = rootParentHash;
     }
 
     @Override
@@ -48,6 +56,12 @@ public String getRootParentName() {
         return rootParentName;
     }
 
+    @Nullable
+    @Override
+    public HashCode getRootParentHash() {
+        return rootParentHash;
+    }
+
     @Override
     public Supplier<String[]> getRelativePathSegments() {
         return new ZipEntryRelativePath(entry);
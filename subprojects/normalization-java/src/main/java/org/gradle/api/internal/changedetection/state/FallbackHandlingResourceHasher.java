@@ -91,7 +91,7 @@ private static Optional<ZipEntryContext> withFallbackSafety(ZipEntryContext zipE
             LOGGER.debug(zipEntryContext.getFullName() + " is too large (" + entry.size() + ") for safe fallback - skipping.");
             return Optional.empty();
         } else {
-            return Optional.of(new DefaultZipEntryContext(new CachingZipEntry(entry), zipEntryContext.getFullName(), zipEntryContext.getRootParentName()));
+            return Optional.of(new DefaultZipEntryContext(new CachingZipEntry(entry), zipEntryContext.getFullName(), zipEntryContext.getRootParentName(), zipEntryContext.getRootParentHash()));
         }
     }
 
@@ -155,6 +155,11 @@ public int size() {
             return delegate.size();
         }
 
+        @Override
+        public long getCrc() {
+            return delegate.getCrc();
+        }
+
         @Override
         public boolean canReopen() {
             return true;
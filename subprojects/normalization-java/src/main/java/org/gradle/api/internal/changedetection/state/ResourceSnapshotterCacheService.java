@@ -19,6 +19,8 @@
 import org.gradle.internal.fingerprint.hashing.FileSystemLocationSnapshotHasher;
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContextHasher;
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext;
+import org.gradle.internal.fingerprint.hashing.ZipEntryContext;
+import org.gradle.internal.fingerprint.hashing.ZipEntryContextHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 
@@ -31,4 +33,10 @@ public interface ResourceSnapshotterCacheService {
 
     @Nullable
     HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, RegularFileSnapshotContextHasher hasher, HashCode configurationHash) throws IOException;
+
+    /**
+     * Hashes a zip entry, caching the result by the content hash of the archive containing it when the archive is being hashed via {@link #hashFile(RegularFileSnapshotContext, RegularFileSnapshotContextHasher, HashCode)}.
+     */
+    @Nullable
+    HashCode hashZipEntry(ZipEntryContext zipEntryContext, ZipEntryContextHasher hasher, HashCode configurationHash) throws IOException;
 }
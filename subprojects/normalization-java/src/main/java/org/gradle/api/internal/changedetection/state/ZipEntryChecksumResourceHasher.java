@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext;
+import org.gradle.internal.fingerprint.hashing.ResourceHasher;
+import org.gradle.internal.fingerprint.hashing.ZipEntryContext;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Hashes {@link ZipEntry}s by the CRC-32 checksum and size recorded in the archive, without reading their content.
+ *
+ * For archives read via their central directory, hashing an entry doesn't require decompressing anything.
+ * Entries without a known checksum, and regular files, are hashed by the delegate.
+ */
+public class ZipEntryChecksumResourceHasher implements ResourceHasher {
+    private final ResourceHasher delegate;
+
+    public ZipEntryChecksumResourceHasher(ResourceHasher delegate) {
+        this.delegate = delegate;
+    }
+
+    @Nullable
+    @Override
+    public HashCode hash(RegularFileSnapshotContext fileSnapshotContext) throws IOException {
+        return delegate.hash(fileSnapshotContext);
+    }
+
+    @Nullable
+    @Override
+    public HashCode hash(ZipEntryContext zipEntryContext) throws IOException {
+        ZipEntry entry = zipEntryContext.getEntry();
+        long crc = entry.getCrc();
+        int size = entry.size();
+        if (crc < 0 || size < 0) {
+            return delegate.hash(zipEntryContext);
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putLong(crc);
+        hasher.putInt(size);
+        return hasher.hash();
+    }
+
+    @Override
+    public void appendConfigurationToHasher(Hasher hasher) {
+        delegate.appendConfigurationToHasher(hasher);
+        hasher.putString(getClass().getName());
+    }
+}
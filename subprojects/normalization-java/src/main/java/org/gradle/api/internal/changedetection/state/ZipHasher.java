@@ -45,12 +45,17 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
 
 public class ZipHasher implements RegularFileSnapshotContextHasher, ConfigurableNormalizer {
 
     private static final Set<String> KNOWN_ZIP_EXTENSIONS = ImmutableSet.of("zip", "jar", "war", "rar", "ear", "apk", "aar", "klib");
     private static final Logger LOGGER = LoggerFactory.getLogger(ZipHasher.class);
     private static final HashCode EMPTY_HASH_MARKER = Hashing.signature(ZipHasher.class);
+    private static final HashingExceptionReporter DEBUG_LOGGING_REPORTER =
+        (s, e) -> LOGGER.debug("Malformed archive '{}'. Falling back to full content hash instead of entry hashing.", s.getName(), e);
+    private static final int MINIMUM_ENTRIES_FOR_PARALLEL_HASHING = 1000;
+    private static final int ENTRIES_PER_PARALLEL_TASK = 100;
 
     public static boolean isZipFile(final String name) {
         return KNOWN_ZIP_EXTENSIONS.contains(FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT));
@@ -58,17 +63,28 @@ public static boolean isZipFile(final String name) {
 
     private final ResourceHasher resourceHasher;
     private final HashingExceptionReporter hashingExceptionReporter;
+    private final int minimumEntriesForParallelHashing;
 
     public ZipHasher(ResourceHasher resourceHasher) {
-        this(
-            resourceHasher,
-            (s, e) -> LOGGER.debug("Malformed archive '{}'. Falling back to full content hash instead of entry hashing.", s.getName(), e)
-        );
+        this(resourceHasher, DEBUG_LOGGING_REPORTER);
     }
 
     public ZipHasher(ResourceHasher resourceHasher, HashingExceptionReporter hashingExceptionReporter) {
+        this(resourceHasher, hashingExceptionReporter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a hasher which hashes the entries of archives with many entries in parallel.
+     * The resource hasher needs to be thread-safe for that.
+     */
+    public static ZipHasher hashingLargeArchivesInParallel(ResourceHasher resourceHasher) {
+        return new ZipHasher(resourceHasher, DEBUG_LOGGING_REPORTER, MINIMUM_ENTRIES_FOR_PARALLEL_HASHING);
+    }
+
+    private ZipHasher(ResourceHasher resourceHasher, HashingExceptionReporter hashingExceptionReporter, int minimumEntriesForParallelHashing) {
         this.resourceHasher = resourceHasher;
         this.hashingExceptionReporter = hashingExceptionReporter;
+        this.minimumEntriesForParallelHashing = minimumEntriesForParallelHashing;
     }
 
     @Nullable
@@ -86,7 +102,7 @@ public void appendConfigurationToHasher(Hasher hasher) {
     @Nullable
     private HashCode hashZipContents(RegularFileSnapshot zipFileSnapshot) {
         try {
-            List<FileSystemLocationFingerprint> fingerprints = fingerprintZipEntries(zipFileSnapshot.getAbsolutePath());
+            List<FileSystemLocationFingerprint> fingerprints = fingerprintZipEntries(zipFileSnapshot);
             if (fingerprints.isEmpty()) {
                 return null;
             }
@@ -99,33 +115,71 @@ private HashCode hashZipContents(RegularFileSnapshot zipFileSnapshot) {
         }
     }
 
-    private List<FileSystemLocationFingerprint> fingerprintZipEntries(String zipFile) throws IOException {
+    private List<FileSystemLocationFingerprint> fingerprintZipEntries(RegularFileSnapshot zipFileSnapshot) throws IOException {
+        String zipFile = zipFileSnapshot.getAbsolutePath();
         try (ZipInput input = FileZipInput.create(new File(zipFile))) {
             List<FileSystemLocationFingerprint> fingerprints = Lists.newArrayList();
-            fingerprintZipEntries("", zipFile, fingerprints, input);
+            List<ZipEntryContext> reopenableEntries = Lists.newArrayList();
+            fingerprintZipEntries("", zipFile, zipFileSnapshot.getHash(), fingerprints, reopenableEntries, input);
+            if (reopenableEntries.size() >= minimumEntriesForParallelHashing) {
+                fingerprintZipEntriesInParallel(reopenableEntries, fingerprints);
+            } else {
+                for (ZipEntryContext zipEntryContext : reopenableEntries) {
+                    fingerprintZipEntry(zipEntryContext, fingerprints);
+                }
+            }
             return fingerprints;
         }
     }
 
-    private void fingerprintZipEntries(String parentName, String rootParentName, List<FileSystemLocationFingerprint> fingerprints, ZipInput input) throws IOException {
+    /**
+     * Entries which can be reopened are collected in {@code reopenableEntries}, so they can be hashed in parallel once all entries are known.
+     * The fingerprints are sorted before hashing, so the order in which they are added doesn't matter.
+     */
+    private void fingerprintZipEntries(
+        String parentName,
+        String rootParentName,
+        HashCode rootParentHash,
+        List<FileSystemLocationFingerprint> fingerprints,
+        List<ZipEntryContext> reopenableEntries,
+        ZipInput input
+    ) throws IOException {
         fingerprints.add(newZipMarker(parentName));
         for (ZipEntry zipEntry : input) {
             if (zipEntry.isDirectory()) {
                 continue;
             }
             String fullName = parentName.isEmpty() ? zipEntry.getName() : parentName + "/" + zipEntry.getName();
-            ZipEntryContext zipEntryContext = new DefaultZipEntryContext(zipEntry, fullName, rootParentName);
+            ZipEntryContext zipEntryContext = new DefaultZipEntryContext(zipEntry, fullName, rootParentName, rootParentHash);
             if (isZipFile(zipEntry.getName())) {
                 zipEntryContext.getEntry().withInputStream(inputStream -> {
-                    fingerprintZipEntries(fullName, rootParentName, fingerprints, new StreamZipInput(inputStream));
+                    fingerprintZipEntries(fullName, rootParentName, rootParentHash, fingerprints, reopenableEntries, new StreamZipInput(inputStream));
                     return null;
                 });
+            } else if (zipEntry.canReopen()) {
+                reopenableEntries.add(zipEntryContext);
             } else {
                 fingerprintZipEntry(zipEntryContext, fingerprints);
             }
         }
     }
 
+    private void fingerprintZipEntriesInParallel(List<ZipEntryContext> zipEntryContexts, List<FileSystemLocationFingerprint> fingerprints) {
+        List<ForkJoinTask<List<FileSystemLocationFingerprint>>> tasks = Lists.newArrayList();
+        for (List<ZipEntryContext> batch : Lists.partition(zipEntryContexts, ENTRIES_PER_PARALLEL_TASK)) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                List<FileSystemLocationFingerprint> batchFingerprints = Lists.newArrayListWithCapacity(batch.size());
+                for (ZipEntryContext zipEntryContext : batch) {
+                    fingerprintZipEntry(zipEntryContext, batchFingerprints);
+                }
+                return batchFingerprints;
+            }));
+        }
+        for (ForkJoinTask<List<FileSystemLocationFingerprint>> task : ForkJoinTask.invokeAll(tasks)) {
+            fingerprints.addAll(task.join());
+        }
+    }
+
     private void fingerprintZipEntry(ZipEntryContext zipEntryContext, List<FileSystemLocationFingerprint> fingerprints) throws IOException {
         HashCode hash = resourceHasher.hash(zipEntryContext);
         if (hash != null) {
@@ -19,6 +19,7 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
+import org.gradle.api.internal.changedetection.state.CachingZipEntryResourceHasher;
 import org.gradle.api.internal.changedetection.state.DefaultRegularFileSnapshotContext;
 import org.gradle.api.internal.changedetection.state.IgnoringResourceHasher;
 import org.gradle.api.internal.changedetection.state.LineEndingNormalizingResourceHasher;
@@ -28,6 +29,7 @@
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.RuntimeClasspathResourceHasher;
+import org.gradle.api.internal.changedetection.state.ZipEntryChecksumResourceHasher;
 import org.gradle.api.internal.changedetection.state.ZipHasher;
 import org.gradle.internal.RelativePathSupplier;
 import org.gradle.internal.file.FileType;
@@ -107,13 +109,18 @@ public static ClasspathFingerprintingStrategy runtimeClasspath(
         RuntimeClasspathResourceHasher runtimeClasspathResourceHasher,
         ResourceSnapshotterCacheService cacheService,
         Interner<String> stringInterner,
-        LineEndingSensitivity lineEndingSensitivity
+        LineEndingSensitivity lineEndingSensitivity,
+        boolean useArchiveEntryChecksums
     ) {
-        ResourceHasher resourceHasher = LineEndingNormalizingResourceHasher.wrap(runtimeClasspathResourceHasher, lineEndingSensitivity);
+        // The unnormalized content hashes of zip entries are cached below all normalizations, so they are shared between normalizations
+        ResourceHasher contentHasher = useArchiveEntryChecksums
+            ? new ZipEntryChecksumResourceHasher(runtimeClasspathResourceHasher)
+            : new CachingZipEntryResourceHasher(runtimeClasspathResourceHasher, cacheService);
+        ResourceHasher resourceHasher = LineEndingNormalizingResourceHasher.wrap(contentHasher, lineEndingSensitivity);
         resourceHasher = propertiesFileHasher(resourceHasher, propertiesFileFilters);
         resourceHasher = metaInfAwareClasspathResourceHasher(resourceHasher, manifestAttributeResourceEntryFilter);
         resourceHasher = ignoringResourceHasher(resourceHasher, classpathResourceFilter);
-        ZipHasher zipHasher = new ZipHasher(resourceHasher);
+        ZipHasher zipHasher = ZipHasher.hashingLargeArchivesInParallel(resourceHasher);
         return new ClasspathFingerprintingStrategy(CLASSPATH_IDENTIFIER, USE_FILE_HASH, resourceHasher, zipHasher, cacheService, stringInterner);
     }
 
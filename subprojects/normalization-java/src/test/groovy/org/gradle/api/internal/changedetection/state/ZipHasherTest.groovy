@@ -148,6 +148,44 @@ class ZipHasherTest extends Specification {
         hash1 == hash2
     }
 
+    def "hashing the entries of large archives in parallel produces the same hash"() {
+        given:
+        def content = tmpDir.createDir("content")
+        1500.times { index ->
+            content.file("dir${index % 10}/Class${index}.class") << "class ${index}"
+        }
+        def innerContent = tmpDir.createDir("inner")
+        innerContent.file("foo") << "Foo"
+        innerContent.zipTo(content.file("lib/inner.jar"))
+        def jarfile = tmpDir.file("large.jar")
+        content.zipTo(jarfile)
+        def parallelZipHasher = ZipHasher.hashingLargeArchivesInParallel(resourceHasher(ResourceEntryFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING))
+
+        expect:
+        parallelZipHasher.hash(snapshotContext(jarfile)) == zipHasher.hash(snapshotContext(jarfile))
+    }
+
+    def "hashing archives by entry checksums detects changed entries"() {
+        given:
+        def checksumZipHasher = new ZipHasher(new ZipEntryChecksumResourceHasher(new RuntimeClasspathResourceHasher()))
+        def content = tmpDir.createDir("content")
+        content.file("foo/Foo.class") << "Foo"
+        content.file("foo/Bar.class") << "Bar"
+        def jarfile = tmpDir.file("test.jar")
+        content.zipTo(jarfile)
+        def copiedJarfile = tmpDir.file("copy.jar")
+        content.zipTo(copiedJarfile)
+        def originalHash = checksumZipHasher.hash(snapshotContext(jarfile))
+
+        when:
+        content.file("foo/Bar.class").text = "Changed"
+        content.zipTo(jarfile)
+
+        then:
+        checksumZipHasher.hash(snapshotContext(copiedJarfile)) == originalHash
+        checksumZipHasher.hash(snapshotContext(jarfile)) != originalHash
+    }
+
     def createJarWithAttributes(TestFile jarfile, Map<String, String> attributes) {
         def manifest = new Manifest()
         def mainAttributes = manifest.getMainAttributes()
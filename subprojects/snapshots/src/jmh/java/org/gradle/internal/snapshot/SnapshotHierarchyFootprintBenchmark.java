@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Measures the heap retained by a virtual file system holding a large synthetic tree,
+ * similar to the source trees of a build with thousands of projects.
+ *
+ * The retained heap is reported as the {@code retainedBytesPerFile} secondary result.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyFootprintBenchmark {
+    private static final String ROOT_PATH = new File(System.getProperty("java.io.tmpdir"), "synthetic-build").getAbsolutePath();
+    private static final int DIRECTORIES_PER_LEVEL = 4;
+
+    @Param({"1000", "3000"})
+    int projects;
+
+    @Param({"10"})
+    int filesPerDirectory;
+
+    @Param({"2"})
+    int depth;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long retainedBytesPerFile;
+        private int files;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytesPerFile = 0;
+            files = 0;
+        }
+    }
+
+    @Benchmark
+    public SnapshotHierarchy storeLargeTree(Footprint footprint) {
+        // Paths are built and interned like when snapshotting the file system
+        Interner<String> interner = Interners.newWeakInterner();
+        long usedBefore = usedHeapAfterGc();
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        for (int project = 0; project < projects; project++) {
+            String projectPath = interner.intern(ROOT_PATH + File.separatorChar + "project" + project);
+            DirectorySnapshot projectSnapshot = directory(interner, projectPath, "project" + project, depth, footprint);
+            root = root.store(projectPath, projectSnapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        long usedAfter = usedHeapAfterGc();
+        footprint.retainedBytesPerFile = (usedAfter - usedBefore) / footprint.files;
+        return root;
+    }
+
+    private DirectorySnapshot directory(Interner<String> interner, String absolutePath, String name, int depth, Footprint footprint) {
+        List<FileSystemLocationSnapshot> children = new ArrayList<>();
+        if (depth > 0) {
+            for (int i = 0; i < DIRECTORIES_PER_LEVEL; i++) {
+                String childName = interner.intern("dir" + i);
+                children.add(directory(interner, interner.intern(absolutePath + File.separatorChar + childName), childName, depth - 1, footprint));
+            }
+        }
+        for (int i = 0; i < filesPerDirectory; i++) {
+            String childName = interner.intern("SomeSourceFile" + i + ".java");
+            String childPath = interner.intern(absolutePath + File.separatorChar + childName);
+            HashCode hash = Hashing.hashString(childPath);
+            children.add(new RegularFileSnapshot(childPath, childName, hash, DefaultFileMetadata.file(i, childPath.length(), AccessType.DIRECT)));
+            footprint.files++;
+        }
+        children.sort(Comparator.comparing(FileSystemLocationSnapshot::getName, PathUtil.getPathComparator(CaseSensitivity.CASE_SENSITIVE)));
+        return new DirectorySnapshot(absolutePath, name, AccessType.DIRECT, Hashing.hashString(absolutePath), children);
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memoryBean.getHeapMemoryUsage().getUsed();
+    }
+}
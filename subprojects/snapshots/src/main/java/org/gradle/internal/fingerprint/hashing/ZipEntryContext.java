@@ -17,7 +17,9 @@
 package org.gradle.internal.fingerprint.hashing;
 
 import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.internal.hash.HashCode;
 
+import javax.annotation.Nullable;
 import java.util.function.Supplier;
 
 public interface ZipEntryContext {
@@ -27,5 +29,11 @@ public interface ZipEntryContext {
 
     String getRootParentName();
 
+    /**
+     * The content hash of the outermost archive containing the entry, or {@code null} if it is unknown.
+     */
+    @Nullable
+    HashCode getRootParentHash();
+
     Supplier<String[]> getRelativePathSegments();
 }
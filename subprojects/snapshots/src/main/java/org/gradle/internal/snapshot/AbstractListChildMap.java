@@ -16,15 +16,35 @@
 
 package org.gradle.internal.snapshot;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+/**
+ * A child map with the paths and children kept in two arrays sorted by path.
+ *
+ * The VFS keeps one child map per directory, so not allocating an {@link Entry} per child saves a considerable amount of heap.
+ */
 public abstract class AbstractListChildMap<T> implements ChildMap<T> {
-    protected final List<Entry<T>> entries;
+    protected final String[] paths;
+    protected final Object[] children;
+
+    protected AbstractListChildMap(String[] paths, Object[] children) {
+        this.paths = paths;
+        this.children = children;
+    }
 
     protected AbstractListChildMap(List<Entry<T>> entries) {
-        this.entries = entries;
+        int size = entries.size();
+        this.paths = new String[size];
+        this.children = new Object[size];
+        for (int i = 0; i < size; i++) {
+            Entry<T> entry = entries.get(i);
+            paths[i] = entry.getPath();
+            children[i] = entry.getValue();
+        }
     }
 
     @Override
@@ -34,13 +54,19 @@ public boolean isEmpty() {
 
     @Override
     public Stream<Entry<T>> stream() {
-        return entries.stream();
+        return IntStream.range(0, paths.length)
+            .mapToObj(index -> new Entry<>(paths[index], getChild(index)));
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T getChild(int index) {
+        return (T) children[index];
     }
 
     protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSensitivity caseSensitivity) {
         return SearchUtil.binarySearch(
-            entries,
-            candidate -> targetPath.compareToFirstSegment(candidate.getPath(), caseSensitivity)
+            Arrays.asList(paths),
+            candidate -> targetPath.compareToFirstSegment(candidate, caseSensitivity)
         );
     }
 
@@ -48,9 +74,8 @@ protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSen
     public <RESULT> ChildMap<RESULT> invalidate(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, InvalidationHandler<T, RESULT> handler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            Entry<T> entry = entries.get(childIndex);
-            String childPath = entry.getPath();
-            return entry.withNode(targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
+            String childPath = paths[childIndex];
+            return Entry.withNode(childPath, getChild(childIndex), targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
 
                 @SuppressWarnings("unchecked")
                 @Override
@@ -84,10 +109,10 @@ public ChildMap<RESULT> withRemovedChild() {
     public ChildMap<T> store(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, StoreHandler<T> storeHandler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            return entries.get(childIndex).handlePath(targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
+            return Entry.handlePath(paths[childIndex], getChild(childIndex), targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
                 @Override
                 public ChildMap<T> withReplacedChild(T newChild) {
-                    return withReplacedChild(entries.get(childIndex).getPath(), newChild);
+                    return withReplacedChild(paths[childIndex], newChild);
                 }
 
                 @Override
@@ -107,25 +132,38 @@ public ChildMap<T> withNewChild(String newChildPath, T newChild) {
     }
 
     protected ChildMap<T> withNewChild(int insertBefore, String path, T newChild) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.add(insertBefore, new Entry<>(path, newChild));
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        int size = paths.length;
+        String[] newPaths = new String[size + 1];
+        Object[] newChildren = new Object[size + 1];
+        System.arraycopy(paths, 0, newPaths, 0, insertBefore);
+        System.arraycopy(children, 0, newChildren, 0, insertBefore);
+        newPaths[insertBefore] = path;
+        newChildren[insertBefore] = newChild;
+        System.arraycopy(paths, insertBefore, newPaths, insertBefore + 1, size - insertBefore);
+        System.arraycopy(children, insertBefore, newChildren, insertBefore + 1, size - insertBefore);
+        return ChildMapFactory.childMapFromSorted(newPaths, newChildren);
     }
 
     protected ChildMap<T> withReplacedChild(int childIndex, String newPath, T newChild) {
-        Entry<T> oldEntry = entries.get(childIndex);
-        if (oldEntry.getPath().equals(newPath) && oldEntry.getValue().equals(newChild)) {
+        if (paths[childIndex].equals(newPath) && children[childIndex].equals(newChild)) {
             return this;
         }
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.set(childIndex, new Entry<>(newPath, newChild));
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        String[] newPaths = paths.clone();
+        Object[] newChildren = children.clone();
+        newPaths[childIndex] = newPath;
+        newChildren[childIndex] = newChild;
+        return ChildMapFactory.childMapFromSorted(newPaths, newChildren);
     }
 
     protected ChildMap<T> withRemovedChild(int childIndex) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.remove(childIndex);
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        int size = paths.length;
+        String[] newPaths = new String[size - 1];
+        Object[] newChildren = new Object[size - 1];
+        System.arraycopy(paths, 0, newPaths, 0, childIndex);
+        System.arraycopy(children, 0, newChildren, 0, childIndex);
+        System.arraycopy(paths, childIndex + 1, newPaths, childIndex, size - childIndex - 1);
+        System.arraycopy(children, childIndex + 1, newChildren, childIndex, size - childIndex - 1);
+        return ChildMapFactory.childMapFromSorted(newPaths, newChildren);
     }
 
     @Override
@@ -139,16 +177,18 @@ public boolean equals(Object o) {
 
         AbstractListChildMap<?> that = (AbstractListChildMap<?>) o;
 
-        return entries.equals(that.entries);
+        return Arrays.equals(paths, that.paths) && Arrays.equals(children, that.children);
     }
 
     @Override
     public int hashCode() {
-        return entries.hashCode();
+        return 31 * Arrays.hashCode(paths) + Arrays.hashCode(children);
     }
 
     @Override
     public String toString() {
-        return entries.toString();
+        return stream()
+            .map(Entry::toString)
+            .collect(Collectors.joining(", ", "[", "]"));
     }
 }
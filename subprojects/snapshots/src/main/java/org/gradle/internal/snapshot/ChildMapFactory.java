@@ -52,6 +52,21 @@ public static <T> ChildMap<T> childMapFromSorted(List<ChildMap.Entry<T>> sortedE
         }
     }
 
+    @SuppressWarnings("unchecked")
+    static <T> ChildMap<T> childMapFromSorted(String[] sortedPaths, Object[] children) {
+        int size = sortedPaths.length;
+        switch (size) {
+            case 0:
+                return EmptyChildMap.getInstance();
+            case 1:
+                return new SingletonChildMap<>(sortedPaths[0], (T) children[0]);
+            default:
+                return (size < MINIMUM_CHILD_COUNT_FOR_BINARY_SEARCH)
+                    ? new MediumChildMap<>(sortedPaths, children)
+                    : new LargeChildMap<>(sortedPaths, children);
+        }
+    }
+
     static <T> ChildMap<T> childMap(CaseSensitivity caseSensitivity, ChildMap.Entry<T> entry1, ChildMap.Entry<T> entry2) {
         int compared = PathUtil.getPathComparator(caseSensitivity).compare(entry1.getPath(), entry2.getPath());
         List<ChildMap.Entry<T>> sortedEntries = compared < 0
@@ -24,7 +24,6 @@
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static org.gradle.internal.snapshot.ChildMapFactory.childMapFromSorted;
 import static org.gradle.internal.snapshot.SnapshotVisitResult.CONTINUE;
@@ -39,9 +38,7 @@ public class DirectorySnapshot extends AbstractFileSystemLocationSnapshot {
     private final HashCode contentHash;
 
     public DirectorySnapshot(String absolutePath, String name, AccessType accessType, HashCode contentHash, List<FileSystemLocationSnapshot> children) {
-        this(absolutePath, name, accessType, contentHash, childMapFromSorted(children.stream()
-            .map(it -> new ChildMap.Entry<>(it.getName(), it))
-            .collect(Collectors.toList())));
+        this(absolutePath, name, accessType, contentHash, childMapOf(children));
     }
 
     public DirectorySnapshot(String absolutePath, String name, AccessType accessType, HashCode contentHash, ChildMap<FileSystemLocationSnapshot> children) {
@@ -50,6 +47,18 @@ public DirectorySnapshot(String absolutePath, String name, AccessType accessType
         this.children = children;
     }
 
+    private static ChildMap<FileSystemLocationSnapshot> childMapOf(List<FileSystemLocationSnapshot> children) {
+        int size = children.size();
+        String[] names = new String[size];
+        Object[] snapshots = new Object[size];
+        for (int index = 0; index < size; index++) {
+            FileSystemLocationSnapshot child = children.get(index);
+            names[index] = child.getName();
+            snapshots[index] = child;
+        }
+        return childMapFromSorted(names, snapshots);
+    }
+
     @Override
     public HashCode getHash() {
         return contentHash;
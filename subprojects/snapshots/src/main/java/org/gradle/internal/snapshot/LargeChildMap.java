@@ -24,12 +24,15 @@ public LargeChildMap(List<Entry<T>> children) {
         super(children);
     }
 
+    protected LargeChildMap(String[] paths, Object[] children) {
+        super(paths, children);
+    }
+
     @Override
     public <R> R withNode(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, NodeHandler<T, R> handler) {
         int childIndexWithCommonPrefix = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndexWithCommonPrefix >= 0) {
-            Entry<T> entry = entries.get(childIndexWithCommonPrefix);
-            return entry.withNode(targetPath, caseSensitivity, handler);
+            return Entry.withNode(paths[childIndexWithCommonPrefix], getChild(childIndexWithCommonPrefix), targetPath, caseSensitivity, handler);
         }
         return handler.handleUnrelatedToAnyChild();
     }
@@ -28,8 +28,10 @@
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
 import org.gradle.internal.snapshot.FileSystemLeafSnapshot;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.gradle.internal.snapshot.RelativePathTracker;
@@ -40,20 +42,26 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -62,9 +70,16 @@
 
 /**
  * For creating {@link DirectorySnapshot}s of directories.
+ *
+ * When given a parallel {@link DirectoryWalkerPool}, unfiltered snapshots of directories are taken by walking
+ * sub-directories and hashing files concurrently. The result is the same as when walking the hierarchy sequentially.
  */
 public class DirectorySnapshotter {
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
+    /**
+     * Files of a directory are hashed in batches of this size by separate tasks.
+     */
+    private static final int FILE_BATCH_SIZE = 16;
     private static final SymbolicLinkMapping EMPTY_SYMBOLIC_LINK_MAPPING = new SymbolicLinkMapping() {
 
         @Override
@@ -87,12 +102,18 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final DirectoryWalkerPool walkerPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, DirectoryWalkerPool.SEQUENTIAL);
+    }
+
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, DirectoryWalkerPool walkerPool) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.walkerPool = walkerPool;
     }
 
     /**
@@ -112,9 +133,19 @@ public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner,
      * @return The (possible filtered) snapshot of the directory.
      */
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
+        Path rootPath = Paths.get(absolutePath);
+        if (predicate == null && walkerPool.isParallel()) {
+            BasicFileAttributes rootAttributes = readAttributesIfPossible(rootPath);
+            // Symlinks, files and missing roots are rare, let the sequential walk handle them
+            if (rootAttributes != null && rootAttributes.isDirectory()) {
+                collector.recordVisitHierarchy();
+                DirectorySnapshot result = walkerPool.invoke(new SnapshotDirectoryTask(rootPath, getInternedFileName(rootPath), null, unfilteredSnapshotConsumer));
+                unfilteredSnapshotConsumer.accept(result);
+                return result;
+            }
+        }
         try {
             AtomicBoolean hasBeenFiltered = new AtomicBoolean();
-            Path rootPath = Paths.get(absolutePath);
             PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             FileSystemLocationSnapshot result = visitor.getResult();
@@ -127,6 +158,261 @@ public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable Snapsh
         }
     }
 
+    @Nullable
+    private static BasicFileAttributes readAttributesIfPossible(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFileAttributes symlinkAttributes) {
+        try {
+            return Files.readAttributes(symlink, BasicFileAttributes.class);
+        } catch (IOException ioe) {
+            // We emulate the behavior of `Files.walkFileTree(Path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), PathVisitor)`,
+            // and return the attributes of the symlink if we can't read the attributes of the target of the symlink.
+            return symlinkAttributes;
+        }
+    }
+
+    private static FileSystemLeafSnapshot snapshotFile(FileHasher hasher, Path absoluteFilePath, String internedAbsolutePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
+        if (attrs.isSymbolicLink()) {
+            return new MissingFileSnapshot(internedAbsolutePath, internedName, accessType);
+        } else if (!attrs.isRegularFile()) {
+            throw new UncheckedIOException(new IOException(String.format("Cannot snapshot %s: not a regular file", internedAbsolutePath)));
+        }
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        long fileLength = attrs.size();
+        FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
+        HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+        return new RegularFileSnapshot(internedAbsolutePath, internedName, hash, metadata);
+    }
+
+    private static boolean isNotFileSystemLoopException(@Nullable IOException e) {
+        return e != null && !(e instanceof FileSystemLoopException);
+    }
+
+    private String getInternedFileName(Path path) {
+        Path fileName = path.getFileName();
+        return fileName == null ? "" : stringInterner.intern(fileName.toString());
+    }
+
+    /**
+     * Snapshots a directory without filtering, by forking a task for each sub-directory and for each batch of files.
+     *
+     * Mirrors what {@link PathVisitor} does for {@link Files#walkFileTree(Path, Set, int, java.nio.file.FileVisitor)},
+     * including the statistics recorded for each visited element.
+     * Symlinked directories are walked sequentially by a {@link PathVisitor}.
+     */
+    private class SnapshotDirectoryTask extends RecursiveTask<DirectorySnapshot> {
+        private final Path dir;
+        private final String internedName;
+        private final ParentDirectories parentDirectories;
+        private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer;
+
+        public SnapshotDirectoryTask(Path dir, String internedName, @Nullable ParentDirectories parentDirectories, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
+            this.dir = dir;
+            this.internedName = internedName;
+            this.parentDirectories = new ParentDirectories(dir.toString(), parentDirectories);
+            this.unfilteredSnapshotConsumer = unfilteredSnapshotConsumer;
+        }
+
+        private boolean isRoot() {
+            return parentDirectories.parent == null;
+        }
+
+        /**
+         * Returns the snapshot of the directory, or {@code null} if the directory is excluded.
+         */
+        @Override
+        @Nullable
+        protected DirectorySnapshot compute() {
+            List<SnapshotDirectoryTask> subDirectoryTasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            List<BasicFileAttributes> fileAttributes = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                collector.recordVisitDirectory();
+                if (!isRoot() && defaultExcludes.excludeDir(internedName)) {
+                    return null;
+                }
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        visitEntryFailed(entry, e);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        SnapshotDirectoryTask subDirectoryTask = new SnapshotDirectoryTask(entry, getInternedFileName(entry), parentDirectories, unfilteredSnapshotConsumer);
+                        subDirectoryTask.fork();
+                        subDirectoryTasks.add(subDirectoryTask);
+                    } else {
+                        collector.recordVisitFile();
+                        files.add(entry);
+                        fileAttributes.add(attributes);
+                    }
+                }
+            } catch (DirectoryIteratorException e) {
+                throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), e.getCause());
+            } catch (IOException e) {
+                // Unlistable directories end up here
+                collector.recordVisitFileFailed();
+                if (isNotFileSystemLoopException(e) && (isRoot() || !defaultExcludes.excludeDir(internedName))) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            }
+
+            DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            builder.enterDirectory(AccessType.DIRECT, stringInterner.intern(dir.toString()), internedName, INCLUDE_EMPTY_DIRS);
+            for (FileSystemLocationSnapshot fileSnapshot : snapshotFiles(files, fileAttributes)) {
+                if (fileSnapshot instanceof DirectorySnapshot) {
+                    builder.visitDirectory((DirectorySnapshot) fileSnapshot);
+                } else {
+                    builder.visitLeafElement((FileSystemLeafSnapshot) fileSnapshot);
+                }
+            }
+            for (SnapshotDirectoryTask subDirectoryTask : subDirectoryTasks) {
+                DirectorySnapshot subDirectorySnapshot = subDirectoryTask.join();
+                if (subDirectorySnapshot != null) {
+                    builder.visitDirectory(subDirectorySnapshot);
+                }
+            }
+            return (DirectorySnapshot) builder.leaveDirectory();
+        }
+
+        private List<FileSystemLocationSnapshot> snapshotFiles(List<Path> files, List<BasicFileAttributes> fileAttributes) {
+            if (files.size() <= FILE_BATCH_SIZE) {
+                return new SnapshotFilesTask(this, files, fileAttributes).compute();
+            }
+            List<SnapshotFilesTask> batches = new ArrayList<>();
+            for (int start = 0; start < files.size(); start += FILE_BATCH_SIZE) {
+                int end = Math.min(start + FILE_BATCH_SIZE, files.size());
+                batches.add(new SnapshotFilesTask(this, files.subList(start, end), fileAttributes.subList(start, end)));
+            }
+            ForkJoinTask.invokeAll(batches);
+            List<FileSystemLocationSnapshot> snapshots = new ArrayList<>(files.size());
+            for (SnapshotFilesTask batch : batches) {
+                snapshots.addAll(batch.join());
+            }
+            return snapshots;
+        }
+
+        private void visitEntryFailed(Path entry, IOException exc) {
+            collector.recordVisitFileFailed();
+            if (isNotFileSystemLoopException(exc)) {
+                String internedFileName = getInternedFileName(entry);
+                boolean excluded = Files.isDirectory(entry)
+                    ? defaultExcludes.excludeDir(internedFileName)
+                    : defaultExcludes.excludeFile(internedFileName);
+                if (!excluded) {
+                    throw new UncheckedIOException(exc);
+                }
+            }
+        }
+
+        @Nullable
+        private FileSystemLocationSnapshot snapshotEntry(Path file, BasicFileAttributes attrs) {
+            String internedFileName = getInternedFileName(file);
+            if (attrs.isSymbolicLink()) {
+                BasicFileAttributes targetAttributes = readAttributesOfSymlinkTarget(file, attrs);
+                if (targetAttributes.isDirectory()) {
+                    return followSymlink(file, internedFileName);
+                }
+                return snapshotResolvedFile(file, internedFileName, targetAttributes, AccessType.VIA_SYMLINK);
+            }
+            return snapshotResolvedFile(file, internedFileName, attrs, AccessType.DIRECT);
+        }
+
+        @Nullable
+        private DirectorySnapshot followSymlink(Path file, String internedFileName) {
+            try {
+                Path targetDir = file.toRealPath();
+                String targetDirString = targetDir.toString();
+                if (parentDirectories.contains(targetDirString) || defaultExcludes.excludeDir(internedFileName)) {
+                    return null;
+                }
+                PathVisitor subtreeVisitor = new PathVisitor(
+                    null,
+                    new AtomicBoolean(),
+                    hasher,
+                    stringInterner,
+                    defaultExcludes,
+                    collector,
+                    EMPTY_SYMBOLIC_LINK_MAPPING.withNewMapping(file.toString(), targetDirString, new RelativePathTracker()),
+                    unfilteredSnapshotConsumer);
+                Files.walkFileTree(targetDir, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, subtreeVisitor);
+                DirectorySnapshot targetSnapshot = (DirectorySnapshot) subtreeVisitor.getResult();
+                return new DirectorySnapshot(
+                    targetSnapshot.getAbsolutePath(),
+                    internedFileName,
+                    AccessType.VIA_SYMLINK,
+                    targetSnapshot.getHash(),
+                    targetSnapshot.getChildren()
+                );
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", file), e);
+            }
+        }
+
+        @Nullable
+        private FileSystemLeafSnapshot snapshotResolvedFile(Path file, String internedFileName, BasicFileAttributes attrs, AccessType accessType) {
+            if (defaultExcludes.excludeFile(internedFileName)) {
+                return null;
+            }
+            return snapshotFile(hasher, file, stringInterner.intern(file.toString()), internedFileName, attrs, accessType);
+        }
+    }
+
+    private static class SnapshotFilesTask extends RecursiveTask<List<FileSystemLocationSnapshot>> {
+        private final SnapshotDirectoryTask directoryTask;
+        private final List<Path> files;
+        private final List<BasicFileAttributes> fileAttributes;
+
+        public SnapshotFilesTask(SnapshotDirectoryTask directoryTask, List<Path> files, List<BasicFileAttributes> fileAttributes) {
+            this.directoryTask = directoryTask;
+            this.files = files;
+            this.fileAttributes = fileAttributes;
+        }
+
+        @Override
+        protected List<FileSystemLocationSnapshot> compute() {
+            List<FileSystemLocationSnapshot> snapshots = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                FileSystemLocationSnapshot snapshot = directoryTask.snapshotEntry(files.get(i), fileAttributes.get(i));
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+            return snapshots;
+        }
+    }
+
+    /**
+     * The chain of directories from the root of a parallel walk, used to detect cycles introduced via symlinks.
+     */
+    private static class ParentDirectories {
+        private final String path;
+        private final ParentDirectories parent;
+
+        public ParentDirectories(String path, @Nullable ParentDirectories parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+
+        public boolean contains(String directory) {
+            for (ParentDirectories current = this; current != null; current = current.parent) {
+                if (current.path.equals(directory)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     private interface SymbolicLinkMapping {
         String remapAbsolutePath(Path path);
         @CheckReturnValue
@@ -402,28 +688,9 @@ private boolean shouldVisitFile(Path file, String internedName) {
             return shouldVisit(file, internedName, false);
         }
 
-        private BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFileAttributes symlinkAttributes) {
-            try {
-                return Files.readAttributes(symlink, BasicFileAttributes.class);
-            } catch (IOException ioe) {
-                // We emulate the behavior of `Files.walkFileTree(Path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), PathVisitor)`,
-                // and return the attributes of the symlink if we can't read the attributes of the target of the symlink.
-                return symlinkAttributes;
-            }
-        }
-
         private FileSystemLeafSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
             String internedRemappedAbsoluteFilePath = intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath));
-            if (attrs.isSymbolicLink()) {
-                return new MissingFileSnapshot(internedRemappedAbsoluteFilePath, internedName, accessType);
-            } else if (!attrs.isRegularFile()) {
-                throw new UncheckedIOException(new IOException(String.format("Cannot snapshot %s: not a regular file", internedRemappedAbsoluteFilePath)));
-            }
-            long lastModified = attrs.lastModifiedTime().toMillis();
-            long fileLength = attrs.size();
-            FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-            HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
-            return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
+            return DirectorySnapshotter.snapshotFile(hasher, absoluteFilePath, internedRemappedAbsoluteFilePath, internedName, attrs, accessType);
         }
 
         /** unlistable directories (and maybe some locked files) will stop here */
@@ -447,10 +714,6 @@ protected FileVisitResult doVisitFileFailed(Path file, IOException exc) {
             }
         }
 
-        private boolean isNotFileSystemLoopException(@Nullable IOException e) {
-            return e != null && !(e instanceof FileSystemLoopException);
-        }
-
         private String intern(String string) {
             return stringInterner.intern(string);
         }
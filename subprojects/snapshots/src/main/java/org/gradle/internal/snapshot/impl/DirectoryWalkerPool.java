@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The work-stealing pool {@link DirectorySnapshotter} uses to walk directory hierarchies in parallel.
+ *
+ * With a parallelism of less than two, no pool is created and hierarchies are walked on the calling thread.
+ */
+public class DirectoryWalkerPool implements Closeable {
+    public static final DirectoryWalkerPool SEQUENTIAL = new DirectoryWalkerPool(null);
+
+    private final ForkJoinPool pool;
+
+    private DirectoryWalkerPool(@Nullable ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static DirectoryWalkerPool withParallelism(int parallelism) {
+        if (parallelism < 2) {
+            return SEQUENTIAL;
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Directory walker Thread " + threadCounter.incrementAndGet());
+            return thread;
+        };
+        return new DirectoryWalkerPool(new ForkJoinPool(parallelism, threadFactory, null, false));
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Runs the task in the pool and waits for its result.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (pool == null) {
+            throw new IllegalStateException("Cannot run tasks in a sequential directory walker pool.");
+        }
+        return pool.invoke(task);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
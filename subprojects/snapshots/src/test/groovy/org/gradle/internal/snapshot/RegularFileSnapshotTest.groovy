@@ -16,8 +16,10 @@
 
 package org.gradle.internal.snapshot
 
+import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 
 class RegularFileSnapshotTest extends AbstractFileSystemLeafSnapshotTest {
@@ -25,4 +27,21 @@ class RegularFileSnapshotTest extends AbstractFileSystemLeafSnapshotTest {
     protected RegularFileSnapshot createInitialRootNode(String absolutePath) {
         return new RegularFileSnapshot(absolutePath, PathUtil.getFileName(absolutePath), TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
     }
+
+    def "compares content and metadata"() {
+        def snapshot = createSnapshot(TestHashCodes.hashCodeFrom(1), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
+
+        expect:
+        snapshot.metadata == DefaultFileMetadata.file(1, 2, AccessType.DIRECT)
+        snapshot.isContentAndMetadataUpToDate(createSnapshot(TestHashCodes.hashCodeFrom(1), DefaultFileMetadata.file(1, 2, AccessType.DIRECT)))
+        snapshot.isContentUpToDate(createSnapshot(TestHashCodes.hashCodeFrom(1), DefaultFileMetadata.file(3, 2, AccessType.DIRECT)))
+        !snapshot.isContentAndMetadataUpToDate(createSnapshot(TestHashCodes.hashCodeFrom(1), DefaultFileMetadata.file(3, 2, AccessType.DIRECT)))
+        !snapshot.isContentAndMetadataUpToDate(createSnapshot(TestHashCodes.hashCodeFrom(1), DefaultFileMetadata.file(1, 3, AccessType.DIRECT)))
+        !snapshot.isContentAndMetadataUpToDate(createSnapshot(TestHashCodes.hashCodeFrom(1), DefaultFileMetadata.file(1, 2, AccessType.VIA_SYMLINK)))
+        !snapshot.isContentAndMetadataUpToDate(createSnapshot(TestHashCodes.hashCodeFrom(2), DefaultFileMetadata.file(1, 2, AccessType.DIRECT)))
+    }
+
+    private static RegularFileSnapshot createSnapshot(HashCode hash, FileMetadata metadata) {
+        return new RegularFileSnapshot("/some/file.txt", "file.txt", hash, metadata)
+    }
 }
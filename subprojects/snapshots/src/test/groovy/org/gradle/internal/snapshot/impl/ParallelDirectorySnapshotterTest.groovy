@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.apache.tools.ant.DirectoryScanner
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.SnapshotVisitorUtil
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class ParallelDirectorySnapshotterTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def fileHasher = new TestFileHasher()
+    def defaultExcludes = DirectoryScanner.getDefaultExcludes() as List
+    def sequentialCollector = new DirectorySnapshotterStatistics.Collector()
+    def parallelCollector = new DirectorySnapshotterStatistics.Collector()
+    def walkerPool = DirectoryWalkerPool.withParallelism(4)
+    def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes, sequentialCollector)
+    def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes, parallelCollector, walkerPool)
+
+    def cleanup() {
+        walkerPool.close()
+    }
+
+    def "parallel snapshot is the same as sequential snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        createTree(rootDir, 3)
+        rootDir.createDir("empty")
+        rootDir.file(".git/config").createFile()
+        rootDir.file("sub/.DS_Store").createFile()
+
+        expect:
+        assertSameSnapshots(rootDir)
+    }
+
+    def "hashes files of large directories in batches"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        100.times { rootDir.file("file${it}.txt") << "content $it" }
+
+        expect:
+        assertSameSnapshots(rootDir)
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "parallel snapshot handles symlinks like sequential snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        createTree(rootDir.createDir("target"), 2)
+        rootDir.file("linked-dir").createLink("target")
+        rootDir.file("linked-file").createLink("target/file0.txt")
+        rootDir.file("broken-link").createLink("missing")
+        rootDir.file("target/cycle").createLink(rootDir)
+
+        expect:
+        assertSameSnapshots(rootDir)
+    }
+
+    def "uses sequential walk for non-directory roots"() {
+        given:
+        def file = tmpDir.file("file.txt") << "content"
+
+        expect:
+        assertSameSnapshots(file)
+    }
+
+    @Requires(TestPrecondition.FILE_PERMISSIONS)
+    def "fails for unreadable directory"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def unreadableDir = rootDir.createDir("unreadable")
+        unreadableDir.makeUnreadable()
+
+        when:
+        parallelSnapshotter.snapshot(rootDir.absolutePath, null) {}
+
+        then:
+        def ex = thrown(UncheckedIOException)
+        ex.message == "java.nio.file.AccessDeniedException: ${unreadableDir}"
+
+        cleanup:
+        unreadableDir.makeReadable()
+    }
+
+    private void assertSameSnapshots(File root) {
+        List<FileSystemLocationSnapshot> sequentialUnfiltered = []
+        List<FileSystemLocationSnapshot> parallelUnfiltered = []
+        def sequential = sequentialSnapshotter.snapshot(root.absolutePath, null) { sequentialUnfiltered.add(it) }
+        def parallel = parallelSnapshotter.snapshot(root.absolutePath, null) { parallelUnfiltered.add(it) }
+
+        assert parallel.hash == sequential.hash
+        assert SnapshotVisitorUtil.getAbsolutePaths(parallel, true) == SnapshotVisitorUtil.getAbsolutePaths(sequential, true)
+        assert parallelUnfiltered*.hash == sequentialUnfiltered*.hash
+        assertSameStatistics(sequentialCollector.collect(), parallelCollector.collect())
+    }
+
+    private static void assertSameStatistics(DirectorySnapshotterStatistics sequential, DirectorySnapshotterStatistics parallel) {
+        assert parallel.visitedHierarchyCount == sequential.visitedHierarchyCount
+        assert parallel.visitedDirectoryCount == sequential.visitedDirectoryCount
+        assert parallel.visitedFiles == sequential.visitedFiles
+        assert parallel.failedFiles == sequential.failedFiles
+    }
+
+    private static void createTree(TestFile dir, int depth) {
+        5.times { dir.file("file${it}.txt") << "content of ${dir.name}/${it}" }
+        if (depth > 0) {
+            3.times { createTree(dir.createDir("dir${it}"), depth - 1) }
+        }
+    }
+}
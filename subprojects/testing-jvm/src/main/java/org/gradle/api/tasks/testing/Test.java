@@ -1211,6 +1211,11 @@ public void setMaxParallelForks(int maxParallelForks) {
         this.maxParallelForks = maxParallelForks;
     }
 
+    @Override
+    protected int maxConcurrentForks() {
+        return getMaxParallelForks();
+    }
+
     /**
      * Returns the classes files to scan for test classes.
      *